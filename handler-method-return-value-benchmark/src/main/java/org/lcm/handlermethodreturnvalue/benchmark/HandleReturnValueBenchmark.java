@@ -0,0 +1,104 @@
+package org.lcm.handlermethodreturnvalue.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.AntDesignProReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandler;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandlerSettings;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的 handleReturnValue()：包装 + RequestResponseBodyMethodProcessor 通过 Jackson 写出响应
+ *
+ * 参数
+ *  (1) payloadBytes：返回值序列化后的大约字节数，从几个字节到几 MB
+ *  (2) factory：SimpleReturnValueFactory 或者 AntDesignProReturnValueFactory
+ *  (3) streamingEnvelope：是否预先编码信封的常量部分，不创建 ReturnValue 对象
+ *
+ * wrapped 为包装后写出，unwrapped 为直接交给 RequestResponseBodyMethodProcessor 写出，两者之差就是包装的开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HandleReturnValueBenchmark {
+
+    @Param({"16", "1024", "65536", "1048576", "8388608"})
+    public int payloadBytes;
+
+    @Param({"Simple", "AntDesignPro"})
+    public String factory;
+
+    @Param({"false", "true"})
+    public boolean streamingEnvelope;
+
+    private RequestResponseBodyMethodProcessor processor;
+    private HandlerMethodReturnValueAnnotatedHandler handler;
+    private Object valueReturnedFromHandlerMethod;
+    private MethodParameter returnType;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private ServletWebRequest webRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ReturnValueFactory<? extends ReturnValue> returnValueFactory =
+                "Simple".equals(factory) ? new SimpleReturnValueFactory() : new AntDesignProReturnValueFactory();
+        ObjectMapper objectMapper = new ObjectMapper();
+        processor = new RequestResponseBodyMethodProcessor(List.of(new MappingJackson2HttpMessageConverter(objectMapper)));
+        HandlerMethodReturnValueAnnotatedHandlerSettings settings = new HandlerMethodReturnValueAnnotatedHandlerSettings();
+        if (streamingEnvelope) {
+            settings.setEnvelopeTemplate(EnvelopeTemplate.of(objectMapper, (PreEncodableReturnValueFactory<?>) returnValueFactory));
+        }
+        handler = new HandlerMethodReturnValueAnnotatedHandler(processor, null, returnValueFactory, settings);
+
+        valueReturnedFromHandlerMethod = Payloads.ofSize(payloadBytes);
+        returnType = Payloads.objectReturnType();
+
+        request = new MockHttpServletRequest("GET", "/payload");
+        response = new MockHttpServletResponse();
+        webRequest = new ServletWebRequest(request, response);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public void wrapped() throws Exception {
+        resetResponse();
+        handler.handleReturnValue(valueReturnedFromHandlerMethod, returnType, new ModelAndViewContainer(), webRequest);
+    }
+
+    @Benchmark
+    public void unwrapped() throws Exception {
+        resetResponse();
+        processor.handleReturnValue(valueReturnedFromHandlerMethod, returnType, new ModelAndViewContainer(), webRequest);
+    }
+
+    // 复用同一个 MockHttpServletResponse，避免每次都重新分配输出缓冲区
+    private void resetResponse() {
+        response.setCommitted(false);
+        response.reset();
+    }
+}
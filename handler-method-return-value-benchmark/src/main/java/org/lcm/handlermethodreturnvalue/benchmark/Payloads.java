@@ -0,0 +1,76 @@
+package org.lcm.handlermethodreturnvalue.benchmark;
+
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的返回值，以及声明这些返回值的 Controller 方法
+ */
+public final class Payloads {
+    // 一个 Item 序列化后大约 50 字节
+    private static final int ITEM_BYTES = 50;
+
+    private Payloads() {
+    }
+
+    public record Item(long id, String name, boolean active) {
+    }
+
+    /**
+     * 序列化后大约 payloadBytes 字节的返回值
+     * 小于一个 Item 时使用 String，否则使用 List<Item>
+     */
+    public static Object ofSize(int payloadBytes) {
+        if (payloadBytes < ITEM_BYTES) {
+            return "x".repeat(Math.max(0, payloadBytes - 2));
+        }
+        return items(payloadBytes / ITEM_BYTES);
+    }
+
+    public static List<Item> items(int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(i, "item-" + i + "-abcdefgh", (i & 1) == 0));
+        }
+        return items;
+    }
+
+    public static Page<Item> page(int count) {
+        return new PageImpl<>(items(count), PageRequest.of(0, Math.max(1, count)), count * 10L);
+    }
+
+    public static MethodParameter objectReturnType() {
+        return returnType("object");
+    }
+
+    public static MethodParameter pageReturnType() {
+        return returnType("page");
+    }
+
+    private static MethodParameter returnType(String methodName) {
+        try {
+            return new MethodParameter(PayloadController.class.getMethod(methodName), -1);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @RestController
+    @HandlerMethodReturnValue
+    public static class PayloadController {
+        public Object object() {
+            return null;
+        }
+
+        public Page<Item> page() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.lcm.handlermethodreturnvalue.benchmark;
+
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.AntDesignProReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReturnValueFactory.create() 的开销
+ *
+ * 参数
+ *  (1) factory：SimpleReturnValueFactory 或者 AntDesignProReturnValueFactory
+ *  (2) value：object 为普通返回值，page 为 Page 返回值（AntDesignProReturnValueFactory 会转换为 AntDesignProPage）
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReturnValueFactoryBenchmark {
+
+    @Param({"Simple", "AntDesignPro"})
+    public String factory;
+
+    @Param({"object", "page"})
+    public String value;
+
+    private ReturnValueFactory<? extends ReturnValue> returnValueFactory;
+    private Object valueReturnedFromHandlerMethod;
+    private MethodParameter returnType;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        returnValueFactory = "Simple".equals(factory) ? new SimpleReturnValueFactory() : new AntDesignProReturnValueFactory();
+        if ("page".equals(value)) {
+            valueReturnedFromHandlerMethod = Payloads.page(20);
+            returnType = Payloads.pageReturnType();
+        } else {
+            valueReturnedFromHandlerMethod = Payloads.items(20);
+            returnType = Payloads.objectReturnType();
+        }
+    }
+
+    @Benchmark
+    public ReturnValue create() {
+        return returnValueFactory.create(valueReturnedFromHandlerMethod, returnType);
+    }
+}
@@ -0,0 +1,106 @@
+package org.lcm.handlermethodreturnvalue.benchmark;
+
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV3;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时扫描 Controller 方法的开销
+ *
+ * 参数
+ *  (1) controllerCount：合成应用的 Controller 数量，一半需要包装，一半不需要包装，每个 Controller 2 个 Handler 方法
+ *  (2) cache：LEGACY 为并行化之前 V2 的实现（串行、每次 synchronized + CopyOnWriteArrayList.add()、每个方法 String.format 一行日志）；
+ *      V2、V3、V5 为当前的实现
+ *
+ * 每次调用都是冷启动的一次扫描，使用 SingleShotTime
+ * 生成 50000 个 Controller 类需要一些时间，只在每个 Trial 开始时生成一次
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StartupScanBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int controllerCount;
+
+    @Param({"LEGACY", "V2", "V3", "V5"})
+    public String cache;
+
+    private SyntheticControllers controllers;
+    private static final Logger logger = LoggerFactory.getLogger(StartupScanBenchmark.class);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        controllers = SyntheticControllers.generate(controllerCount / 2, 2);
+    }
+
+    @Benchmark
+    public Object scan() throws Exception {
+        switch (cache) {
+            case "LEGACY" -> {
+                return legacySerialScan(controllers.getMapping());
+            }
+            case "V2" -> {
+                HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2 v2 =
+                        new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2(controllers.getWebApplicationContext());
+                v2.afterPropertiesSet();
+                return v2;
+            }
+            case "V3" -> {
+                HandlerMethodReturnValueAnnotatedHandlerMethodCacheV3 v3 =
+                        new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV3(controllers.getWebApplicationContext());
+                v3.afterSingletonsInstantiated();
+                return v3;
+            }
+            default -> {
+                HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5 v5 =
+                        new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5(controllers.getWebApplicationContext());
+                v5.afterPropertiesSet();
+                return v5;
+            }
+        }
+    }
+
+    // 并行化之前 HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2.afterPropertiesSet() 的实现，作为对照
+    private static List<Method> legacySerialScan(RequestMappingHandlerMapping mapping) {
+        List<Method> annotatedHandlerMethods = new CopyOnWriteArrayList<>();
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = mapping.getHandlerMethods();
+        handlerMethods.forEach((info, handlerMethod) -> {
+            Method method = handlerMethod.getMethod();
+            Class<?> type = method.getDeclaringClass();
+            if ((method.isAnnotationPresent(ResponseBody.class) ||
+                    type.isAnnotationPresent(ResponseBody.class) ||
+                    type.isAnnotationPresent(RestController.class)) &&
+                    (method.isAnnotationPresent(HandlerMethodReturnValue.class) ||
+                            type.isAnnotationPresent(HandlerMethodReturnValue.class))) {
+                synchronized (annotatedHandlerMethods) {
+                    annotatedHandlerMethods.add(method);
+                }
+            }
+        });
+        logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
+        logger.info(">>> Total: " + annotatedHandlerMethods.size());
+        for (int i = 0; i < annotatedHandlerMethods.size(); i++){
+            logger.info(String.format("%4d: ", i) + annotatedHandlerMethods.get(i).toString());
+        }
+        return annotatedHandlerMethods;
+    }
+}
@@ -0,0 +1,104 @@
+package org.lcm.handlermethodreturnvalue.benchmark;
+
+import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HandlerMethodReturnValueAnnotatedHandler.supportsReturnType() 的开销
+ *
+ * 参数
+ *  (1) handlerCount：需要包装的 Handler 方法数量，另有同样数量的不需要包装的 Handler 方法
+ *  (2) cache：V2 代表 V1 ~ V4 的 CopyOnWriteArrayList 线性查找；V5 为 IdentityHashMap；NONE 为不使用缓存，每次反射查注解
+ *
+ * hit 查询需要包装的方法，miss 查询不需要包装的方法（线性查找的最坏情况）
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SupportsReturnTypeBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "50000"})
+    public int handlerCount;
+
+    @Param({"V2", "V5", "NONE"})
+    public String cache;
+
+    private HandlerMethodReturnValueAnnotatedHandler handler;
+    private MethodParameter[] annotatedReturnTypes;
+    private MethodParameter[] plainReturnTypes;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        int methodsPerController = Math.min(handlerCount, 100);
+        SyntheticControllers controllers = SyntheticControllers.generate(handlerCount / methodsPerController, methodsPerController);
+
+        HandlerMethodReturnValueAnnotatedHandlerMethodCache methodCache = switch (cache) {
+            case "V2" -> {
+                HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2 v2 =
+                        new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2(controllers.getWebApplicationContext());
+                v2.afterPropertiesSet();
+                yield v2;
+            }
+            case "V5" -> {
+                HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5 v5 =
+                        new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5(controllers.getWebApplicationContext());
+                v5.afterPropertiesSet();
+                yield v5;
+            }
+            default -> null;
+        };
+
+        RequestResponseBodyMethodProcessor processor =
+                new RequestResponseBodyMethodProcessor(List.of(new MappingJackson2HttpMessageConverter()));
+        handler = new HandlerMethodReturnValueAnnotatedHandler(processor, methodCache, new SimpleReturnValueFactory());
+
+        annotatedReturnTypes = controllers.getAnnotatedHandlerMethods().stream()
+                .map(HandlerMethod::getReturnType).toArray(MethodParameter[]::new);
+        plainReturnTypes = controllers.getPlainHandlerMethods().stream()
+                .map(HandlerMethod::getReturnType).toArray(MethodParameter[]::new);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return handler.supportsReturnType(annotatedReturnTypes[next()]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return handler.supportsReturnType(plainReturnTypes[next()]);
+    }
+
+    private int next() {
+        int i = index + 1;
+        if (i == handlerCount) {
+            i = 0;
+        }
+        index = i;
+        return i;
+    }
+}
@@ -0,0 +1,125 @@
+package org.lcm.handlermethodreturnvalue.benchmark;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FixedValue;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.GenericWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用 ByteBuddy 生成合成的 Controller，并注册到 RequestMappingHandlerMapping 中
+ * 用来模拟有成千上万个 Controller 方法的应用
+ *
+ * 生成的类
+ *  (1) @RestController + @HandlerMethodReturnValue，需要包装
+ *  (2) @RestController，不需要包装，用来测试未命中的查询
+ */
+public final class SyntheticControllers {
+    private static final String PACKAGE = "org.lcm.handlermethodreturnvalue.benchmark.synthetic.";
+
+    private final GenericWebApplicationContext webApplicationContext;
+    private final RequestMappingHandlerMapping mapping;
+    private final List<HandlerMethod> annotatedHandlerMethods;
+    private final List<HandlerMethod> plainHandlerMethods;
+
+    private SyntheticControllers(GenericWebApplicationContext webApplicationContext,
+                                 RequestMappingHandlerMapping mapping,
+                                 List<HandlerMethod> annotatedHandlerMethods,
+                                 List<HandlerMethod> plainHandlerMethods) {
+        this.webApplicationContext = webApplicationContext;
+        this.mapping = mapping;
+        this.annotatedHandlerMethods = annotatedHandlerMethods;
+        this.plainHandlerMethods = plainHandlerMethods;
+    }
+
+    /**
+     * @param controllerCount      需要包装的 Controller 数量，另外再生成同样数量的不需要包装的 Controller
+     * @param methodsPerController 每个 Controller 的 Handler 方法数量
+     */
+    public static SyntheticControllers generate(int controllerCount, int methodsPerController) {
+        GenericWebApplicationContext webApplicationContext = new GenericWebApplicationContext(new MockServletContext());
+        webApplicationContext.refresh();
+
+        RequestMappingHandlerMapping mapping = new RequestMappingHandlerMapping();
+        mapping.setApplicationContext(webApplicationContext);
+        mapping.afterPropertiesSet();
+
+        List<HandlerMethod> annotated = new ArrayList<>(controllerCount * methodsPerController);
+        List<HandlerMethod> plain = new ArrayList<>(controllerCount * methodsPerController);
+        for (int c = 0; c < controllerCount; c++) {
+            register(mapping, "Annotated" + c, methodsPerController, true, annotated);
+            register(mapping, "Plain" + c, methodsPerController, false, plain);
+        }
+
+        webApplicationContext.getBeanFactory().registerSingleton("requestMappingHandlerMapping", mapping);
+        return new SyntheticControllers(webApplicationContext, mapping, annotated, plain);
+    }
+
+    private static void register(RequestMappingHandlerMapping mapping, String name, int methodCount,
+                                 boolean annotated, List<HandlerMethod> registered) {
+        DynamicType.Builder<Object> builder = new ByteBuddy()
+                .subclass(Object.class)
+                .name(PACKAGE + name + "Controller")
+                .annotateType(AnnotationDescription.Builder.ofType(RestController.class).build());
+        if (annotated) {
+            builder = builder.annotateType(AnnotationDescription.Builder.ofType(HandlerMethodReturnValue.class).build());
+        }
+        for (int m = 0; m < methodCount; m++) {
+            builder = builder.defineMethod("m" + m, String.class, Visibility.PUBLIC)
+                    .intercept(FixedValue.value(name + m));
+        }
+
+        Class<?> type = builder.make()
+                .load(SyntheticControllers.class.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded();
+        Object controller;
+        try {
+            controller = type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (int m = 0; m < methodCount; m++) {
+            Method method;
+            try {
+                method = type.getMethod("m" + m);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+            RequestMappingInfo info = RequestMappingInfo.paths("/" + name + "/" + m)
+                    .options(mapping.getBuilderConfiguration())
+                    .build();
+            mapping.registerMapping(info, controller, method);
+            // HandlerMethod 持有的是同一个 Method 对象
+            registered.add(new HandlerMethod(controller, method));
+        }
+    }
+
+    public GenericWebApplicationContext getWebApplicationContext() {
+        return webApplicationContext;
+    }
+
+    public RequestMappingHandlerMapping getMapping() {
+        return mapping;
+    }
+
+    public List<HandlerMethod> getAnnotatedHandlerMethods() {
+        return annotatedHandlerMethods;
+    }
+
+    public List<HandlerMethod> getPlainHandlerMethods() {
+        return plainHandlerMethods;
+    }
+}
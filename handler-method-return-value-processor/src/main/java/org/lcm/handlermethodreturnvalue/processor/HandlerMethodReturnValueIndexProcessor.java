@@ -0,0 +1,191 @@
+package org.lcm.handlermethodreturnvalue.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译时扫描 @HandlerMethodReturnValue，生成 META-INF/handler-method-return-value.index
+ * 启动时 HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6 读取索引，不需要再反射扫描注解，
+ * GraalVM native-image 下也不需要为扫描注解配置反射
+ *
+ * 与 HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5.isAnnotatedHandlerMethod() 相同的规则
+ *  (1) 方法上有 @ResponseBody, 或者类上有 @ResponseBody 或者 @RestController
+ *  (2) 方法上有 @HandlerMethodReturnValue, 或者类上有 @HandlerMethodReturnValue
+ *
+ * 索引的两种行
+ *  (1) 方法：声明类的 binary name#方法名(参数类型,...)，参数类型与 Class.getTypeName() 相同，
+ *      例如 org.example.ProductController#page(int,java.lang.String[])
+ *  (2) 类：binary name，例如 org.example.ProductController，本次编译的所有类，表示这些类由索引覆盖：
+ *      没有出现在 (1) 中的方法不需要包装，运行时不需要为了判断覆盖范围读取 .class 资源（native-image 中没有）
+ *
+ * 增量编译时保留上一次索引中本次没有重新编译、并且仍然存在的类
+ */
+@SupportedAnnotationTypes(HandlerMethodReturnValueIndexProcessor.HANDLER_METHOD_RETURN_VALUE)
+public class HandlerMethodReturnValueIndexProcessor extends AbstractProcessor {
+    // 与 HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.INDEX_LOCATION 相同
+    static final String INDEX_LOCATION = "META-INF/handler-method-return-value.index";
+
+    // 按名称匹配，编译时不需要依赖 Spring 和 handler-method-return-value
+    static final String HANDLER_METHOD_RETURN_VALUE = "org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue";
+    private static final String RESPONSE_BODY = "org.springframework.web.bind.annotation.ResponseBody";
+    private static final String REST_CONTROLLER = "org.springframework.web.bind.annotation.RestController";
+
+    private final Set<String> entries = new TreeSet<>();
+    // 本次编译的所有类，写入索引作为覆盖的类；上一次索引中这些类的条目会被重新生成
+    private final Set<String> compiledTypes = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) {
+            collectCompiledTypes(root);
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    index((TypeElement) element.getEnclosingElement());
+                } else if (element instanceof TypeElement type) {
+                    index(type);
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void collectCompiledTypes(Element element) {
+        if (element instanceof TypeElement type) {
+            compiledTypes.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+            for (Element enclosed : type.getEnclosedElements()) {
+                collectCompiledTypes(enclosed);
+            }
+        }
+    }
+
+    private void index(TypeElement type) {
+        boolean typeIsResponseBody = isAnnotationPresent(type, RESPONSE_BODY) || isAnnotationPresent(type, REST_CONTROLLER);
+        boolean typeIsAnnotated = isAnnotationPresent(type, HANDLER_METHOD_RETURN_VALUE);
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            if ((typeIsResponseBody || isAnnotationPresent(enclosed, RESPONSE_BODY)) &&
+                    (typeIsAnnotated || isAnnotationPresent(enclosed, HANDLER_METHOD_RETURN_VALUE))) {
+                entries.add(keyOf(type, (ExecutableElement) enclosed));
+            }
+        }
+    }
+
+    private String keyOf(TypeElement type, ExecutableElement method) {
+        StringBuilder key = new StringBuilder()
+                .append(processingEnv.getElementUtils().getBinaryName(type))
+                .append('#')
+                .append(method.getSimpleName())
+                .append('(');
+        boolean first = true;
+        for (VariableElement parameter : method.getParameters()) {
+            if (!first) {
+                key.append(',');
+            }
+            first = false;
+            key.append(typeNameOf(processingEnv.getTypeUtils().erasure(parameter.asType())));
+        }
+        return key.append(')').toString();
+    }
+
+    // 与 Class.getTypeName() 相同
+    private String typeNameOf(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return typeNameOf(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) type).asElement()).toString();
+        }
+        return type.toString();
+    }
+
+    private static boolean isAnnotationPresent(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        Set<String> merged = new TreeSet<>(entries);
+        merged.addAll(readPreviousIndex());
+        // 没有需要包装的方法时不生成索引
+        if (merged.stream().noneMatch(line -> line.indexOf('#') > 0)) {
+            return;
+        }
+        merged.addAll(compiledTypes);
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (Writer writer = file.openWriter()) {
+                writer.write("# Generated by HandlerMethodReturnValueIndexProcessor\n");
+                for (String entry : merged) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX_LOCATION + ": " + e);
+        }
+    }
+
+    // 上一次索引中，本次没有重新编译、并且仍然存在的类
+    private Set<String> readPreviousIndex() {
+        Set<String> previous = new HashSet<>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    int hash = line.indexOf('#');
+                    String typeName = hash > 0 ? line.substring(0, hash) : line;
+                    if (!compiledTypes.contains(typeName) &&
+                            processingEnv.getElementUtils().getTypeElement(typeName.replace('$', '.')) != null) {
+                        previous.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 没有上一次的索引
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,60 @@
+package org.lcm.handlermethodreturnvalue.stress;
+
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.ZZZZZZ_Result;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * 其他方法注册、注销的同时，已经注册的方法查询结果不变
+ *  stable：需要包装，始终在快照中
+ *  plain：不需要包装，始终在快照中
+ * 快照中没有的方法 contains() 会反射判断，结果相同，所以每个方法都检查 isIndexed()：
+ *  reader 读取时 stable、plain 都在快照中；结束后 A 在快照中，B 已经移除
+ */
+@JCStressTest
+@Outcome(id = "true, true, true, false, true, false", expect = ACCEPTABLE, desc = "Lookups are unaffected by churn")
+@Outcome(expect = FORBIDDEN, desc = "A lookup observed a broken snapshot")
+@State
+public class CacheV7ChurnLookupTest {
+    private final HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 cache = Fixtures.newCache();
+    private final RequestMappingInfo infoA = Fixtures.info("/a");
+    private final RequestMappingInfo infoB = Fixtures.info("/b");
+
+    public CacheV7ChurnLookupTest() {
+        cache.onHandlerMethodRegistered(Fixtures.info("/stable"), Fixtures.STABLE);
+        cache.onHandlerMethodRegistered(Fixtures.info("/plain"), Fixtures.PLAIN);
+        cache.onHandlerMethodRegistered(infoB, Fixtures.B);
+    }
+
+    @Actor
+    public void register() {
+        cache.onHandlerMethodRegistered(infoA, Fixtures.A);
+    }
+
+    @Actor
+    public void unregister() {
+        cache.onHandlerMethodUnregistered(infoB, Fixtures.B);
+    }
+
+    @Actor
+    public void reader(ZZZZZZ_Result r) {
+        r.r1 = cache.isIndexed(Fixtures.STABLE);
+        r.r2 = cache.contains(Fixtures.STABLE);
+        r.r3 = cache.isIndexed(Fixtures.PLAIN);
+        r.r4 = cache.contains(Fixtures.PLAIN);
+    }
+
+    @Arbiter
+    public void arbiter(ZZZZZZ_Result r) {
+        r.r5 = cache.isIndexed(Fixtures.A);
+        r.r6 = cache.isIndexed(Fixtures.B);
+    }
+}
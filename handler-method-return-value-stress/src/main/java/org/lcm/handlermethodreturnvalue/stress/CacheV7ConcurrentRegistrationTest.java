@@ -0,0 +1,42 @@
+package org.lcm.handlermethodreturnvalue.stress;
+
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.ZZ_Result;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * 两个线程同时注册，CAS 替换快照不会丢失任何一个
+ */
+@JCStressTest
+@Outcome(id = "true, true", expect = ACCEPTABLE, desc = "Both registrations are indexed")
+@Outcome(expect = FORBIDDEN, desc = "A concurrent registration was lost")
+@State
+public class CacheV7ConcurrentRegistrationTest {
+    private final HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 cache = Fixtures.newCache();
+    private final RequestMappingInfo infoA = Fixtures.info("/a");
+    private final RequestMappingInfo infoB = Fixtures.info("/b");
+
+    @Actor
+    public void registerA() {
+        cache.onHandlerMethodRegistered(infoA, Fixtures.A);
+    }
+
+    @Actor
+    public void registerB() {
+        cache.onHandlerMethodRegistered(infoB, Fixtures.B);
+    }
+
+    @Arbiter
+    public void arbiter(ZZ_Result r) {
+        r.r1 = cache.isIndexed(Fixtures.A);
+        r.r2 = cache.isIndexed(Fixtures.B);
+    }
+}
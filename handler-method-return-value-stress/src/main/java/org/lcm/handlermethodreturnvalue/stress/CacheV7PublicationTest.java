@@ -0,0 +1,37 @@
+package org.lcm.handlermethodreturnvalue.stress;
+
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.ZZ_Result;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * 快照按顺序发布：读到后注册的 B，就一定能读到先注册的 A
+ */
+@JCStressTest
+@Outcome(id = {"false, false", "false, true", "true, true"}, expect = ACCEPTABLE, desc = "Snapshots are observed in registration order")
+@Outcome(id = "true, false", expect = FORBIDDEN, desc = "A later snapshot lost an earlier registration")
+@State
+public class CacheV7PublicationTest {
+    private final HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 cache = Fixtures.newCache();
+    private final RequestMappingInfo infoA = Fixtures.info("/a");
+    private final RequestMappingInfo infoB = Fixtures.info("/b");
+
+    @Actor
+    public void writer() {
+        cache.onHandlerMethodRegistered(infoA, Fixtures.A);
+        cache.onHandlerMethodRegistered(infoB, Fixtures.B);
+    }
+
+    @Actor
+    public void reader(ZZ_Result r) {
+        r.r1 = cache.isIndexed(Fixtures.B);
+        r.r2 = cache.isIndexed(Fixtures.A);
+    }
+}
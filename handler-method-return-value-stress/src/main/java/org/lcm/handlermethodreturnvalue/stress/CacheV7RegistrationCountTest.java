@@ -0,0 +1,53 @@
+package org.lcm.handlermethodreturnvalue.stress;
+
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.ZZ_Result;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * 同一个 Method 注册在两个 RequestMappingInfo 下，注销其中一个的同时再注册第三个，
+ * Method 始终在快照中
+ */
+@JCStressTest
+@Outcome(id = "true, true", expect = ACCEPTABLE, desc = "The method stays indexed while any registration remains")
+@Outcome(expect = FORBIDDEN, desc = "The method was dropped while still registered")
+@State
+public class CacheV7RegistrationCountTest {
+    private final HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 cache = Fixtures.newCache();
+    private final RequestMappingInfo info1 = Fixtures.info("/a/1");
+    private final RequestMappingInfo info2 = Fixtures.info("/a/2");
+    private final RequestMappingInfo info3 = Fixtures.info("/a/3");
+
+    public CacheV7RegistrationCountTest() {
+        cache.onHandlerMethodRegistered(info1, Fixtures.A);
+        cache.onHandlerMethodRegistered(info2, Fixtures.A);
+    }
+
+    @Actor
+    public void unregister() {
+        cache.onHandlerMethodUnregistered(info1, Fixtures.A);
+    }
+
+    @Actor
+    public void register() {
+        cache.onHandlerMethodRegistered(info3, Fixtures.A);
+    }
+
+    @Actor
+    public void reader(ZZ_Result r) {
+        r.r1 = cache.isIndexed(Fixtures.A);
+    }
+
+    @Arbiter
+    public void arbiter(ZZ_Result r) {
+        r.r2 = cache.isIndexed(Fixtures.A);
+    }
+}
@@ -0,0 +1,62 @@
+package org.lcm.handlermethodreturnvalue.stress;
+
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.lang.reflect.Method;
+
+/**
+ * 并发测试使用的 Controller 方法和 RequestMappingInfo
+ * Method 对象只创建一次，与 RequestMappingHandlerMapping 中一样，每次注册的都是同一个对象
+ */
+final class Fixtures {
+    static final Method STABLE = method(AnnotatedController.class, "stable");
+    static final Method A = method(AnnotatedController.class, "a");
+    static final Method B = method(AnnotatedController.class, "b");
+    static final Method PLAIN = method(PlainController.class, "plain");
+
+    private Fixtures() {
+    }
+
+    static RequestMappingInfo info(String path) {
+        return RequestMappingInfo.paths(path).build();
+    }
+
+    // 不经过 Spring 容器，直接调用 HandlerMethodMappingListener 的回调
+    static HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 newCache() {
+        return new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7(null);
+    }
+
+    private static Method method(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @RestController
+    @HandlerMethodReturnValue
+    public static class AnnotatedController {
+        public String stable() {
+            return "stable";
+        }
+
+        public String a() {
+            return "a";
+        }
+
+        public String b() {
+            return "b";
+        }
+    }
+
+    @RestController
+    public static class PlainController {
+        public String plain() {
+            return "plain";
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.lcm.handlermethodreturnvalue.annotation;
 
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+
 import java.lang.annotation.*;
 
 /**
@@ -9,4 +11,12 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface HandlerMethodReturnValue {
+
+    /**
+     * 使用哪个 ReturnValueFactory 包装
+     * 默认 ReturnValueFactory.class，表示使用容器中的 ReturnValueFactory Bean
+     * 方法上的注解优先于类上的注解
+     */
+    @SuppressWarnings("rawtypes")
+    Class<? extends ReturnValueFactory> factory() default ReturnValueFactory.class;
 }
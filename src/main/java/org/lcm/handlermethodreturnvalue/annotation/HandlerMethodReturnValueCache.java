@@ -0,0 +1,42 @@
+package org.lcm.handlermethodreturnvalue.annotation;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注解 @HandlerMethodReturnValueCache 与 @HandlerMethodReturnValue 一起标记幂等的 GET Handler 方法，
+ * 缓存序列化之后的信封字节
+ *
+ * 命中时不调用 Handler 方法、ReturnValueFactory，也不经过 Jackson，直接写出缓存的字节。
+ * 缓存的 key 为 Handler 方法、请求路径、params 与 headers 指定的请求参数和 Request Header
+ * 只缓存 JSON 格式、状态码为 200、没有 Set-Cookie 的响应，Handler 方法设置的其他 Response Header（例如 Cache-Control）一同缓存
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HandlerMethodReturnValueCache {
+
+    /**
+     * 缓存的有效时间
+     */
+    long ttl() default 60;
+
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 作为 key 的请求参数
+     * 默认为空，表示使用完整的查询字符串
+     * 请求中有字段列表（稀疏字段集）时不使用缓存，不需要包含字段列表的请求参数
+     */
+    String[] params() default {};
+
+    /**
+     * 作为 key 的 Request Header，例如 Accept-Language
+     */
+    String[] headers() default {};
+
+    /**
+     * 是否同时缓存 gzip 压缩之后的字节，Request Header 中的 Accept-Encoding 接受 gzip（q 大于 0）时写出
+     */
+    boolean gzip() default false;
+}
@@ -1,21 +1,54 @@
 package org.lcm.handlermethodreturnvalue.autoconfig;
 
 import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
-import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.lcm.handlermethodreturnvalue.envelope.BinaryEnvelopeHttpMessageConverter;
+import org.lcm.handlermethodreturnvalue.envelope.ParallelChunkedSerializer;
+import org.lcm.handlermethodreturnvalue.error.ErrorEnvelopeCache;
+import org.lcm.handlermethodreturnvalue.error.HandlerMethodReturnValueExceptionHandler;
 import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
 import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
 import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandlerConfig;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueEmitterHandler;
+import org.lcm.handlermethodreturnvalue.mapping.ObservableRequestMappingHandlerMapping;
+import org.lcm.handlermethodreturnvalue.metrics.DefaultHandlerMethodReturnValueMetrics;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMetrics;
 import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.resource.ZeroCopyResourceHttpMessageConverter;
+import org.lcm.handlermethodreturnvalue.responsecache.ResponseCacheInterceptor;
+import org.lcm.handlermethodreturnvalue.responsecache.ResponseCacheStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.List;
 
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@EnableConfigurationProperties(HandlerMethodReturnValueProperties.class)
 @Import({HandlerMethodReturnValueAnnotatedHandlerConfig.class})
+@ImportRuntimeHints(HandlerMethodReturnValueRuntimeHints.class)
 public class HandlerMethodReturnValueAutoConfigure {
     private final WebApplicationContext webApplicationContext;
     private static final Logger logger = LoggerFactory.getLogger(HandlerMethodReturnValueAutoConfigure.class);
@@ -39,9 +72,117 @@ public class HandlerMethodReturnValueAutoConfigure {
 
     @ConditionalOnMissingBean
     @Bean
-    public HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache(){
-        logger.info("Init HandlerMethodReturnValueAnnotatedHandlerMethodCacheV3 as default HandlerMethodReturnValueAnnotatedHandlerMethodCache");
-        return new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2(webApplicationContext);
+    public HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache(HandlerMethodReturnValueProperties properties){
+        if (properties.isLiveRefresh()) {
+            logger.info("Init HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 as default HandlerMethodReturnValueAnnotatedHandlerMethodCache");
+            return new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7(webApplicationContext);
+        }
+        if (properties.isAnnotationIndex()) {
+            logger.info("Init HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6 as default HandlerMethodReturnValueAnnotatedHandlerMethodCache");
+            return new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6(webApplicationContext);
+        }
+        logger.info("Init HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5 as default HandlerMethodReturnValueAnnotatedHandlerMethodCache");
+        return new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5(webApplicationContext);
+    }
+
+    // 使用可以监听注册与注销的 RequestMappingHandlerMapping，HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 需要
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "live-refresh", havingValue = "true")
+    @ConditionalOnMissingBean(WebMvcRegistrations.class)
+    @Bean
+    public WebMvcRegistrations observableRequestMappingHandlerMappingRegistrations(){
+        logger.info("Init ObservableRequestMappingHandlerMapping as RequestMappingHandlerMapping");
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+                return new ObservableRequestMappingHandlerMapping();
+            }
+        };
+    }
+
+    // 并行分块序列化，使用专用的有界线程池，与 applicationTaskExecutor 相同地使用唯一的 TaskDecorator 传递 ThreadLocal
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "parallel-serialization", havingValue = "true")
+    @ConditionalOnMissingBean
+    @Bean
+    public ParallelChunkedSerializer parallelChunkedSerializer(HandlerMethodReturnValueProperties properties,
+                                                               ObjectProvider<TaskDecorator> taskDecorator){
+        logger.info("Init ParallelChunkedSerializer with " + properties.getParallelSerializationThreads() + " threads");
+        return new ParallelChunkedSerializer(properties.getParallelSerializationThreshold(), properties.getParallelSerializationChunkSize(),
+                properties.getParallelSerializationThreads(), properties.getParallelSerializationQueueCapacity(),
+                properties.getParallelSerializationBufferPoolBytes(), taskDecorator.getIfUnique());
+    }
+
+    // Tomcat 支持 sendfile 时文件类型的 Resource 零拷贝写出
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "zero-copy-resource", havingValue = "true")
+    @Bean
+    public WebMvcConfigurer zeroCopyResourceWebMvcConfigurer(){
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.replaceAll(converter -> converter.getClass() == ResourceHttpMessageConverter.class ?
+                        new ZeroCopyResourceHttpMessageConverter() : converter);
+            }
+        };
+    }
+
+    // Accept 为 CBOR / Smile 时，使用各自格式预先编码的信封
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "binary-envelope", havingValue = "true", matchIfMissing = true)
+    @Bean
+    public WebMvcConfigurer binaryEnvelopeWebMvcConfigurer(){
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                for (int i = converters.size() - 1; i >= 0; i--) {
+                    if (converters.get(i) instanceof AbstractJackson2HttpMessageConverter jacksonConverter &&
+                            BinaryEnvelopeHttpMessageConverter.isSupportedFormat(jacksonConverter.getObjectMapper().getFactory().getFormatName())) {
+                        logger.info("Init BinaryEnvelopeHttpMessageConverter for " + jacksonConverter.getObjectMapper().getFactory().getFormatName());
+                        converters.add(i, new BinaryEnvelopeHttpMessageConverter(jacksonConverter));
+                    }
+                }
+            }
+        };
+    }
+
+    // 失败包装为 ReturnValue，序列化之后的失败信封使用与 MappingJackson2HttpMessageConverter 相同的 ObjectMapper
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "error-envelope", havingValue = "true")
+    @ConditionalOnMissingBean
+    @Bean
+    public HandlerMethodReturnValueExceptionHandler handlerMethodReturnValueExceptionHandler(HandlerMethodReturnValueAnnotatedHandlerConfig handlerConfig,
+                                                                                             RequestMappingHandlerAdapter requestMappingHandlerAdapter,
+                                                                                             HandlerMethodReturnValueProperties properties){
+        logger.info("Init HandlerMethodReturnValueExceptionHandler");
+        MappingJackson2HttpMessageConverter jsonConverter =
+                HandlerMethodReturnValueEmitterHandler.findJsonConverter(requestMappingHandlerAdapter.getMessageConverters());
+        ErrorEnvelopeCache errorEnvelopeCache = jsonConverter != null ?
+                new ErrorEnvelopeCache(jsonConverter.getObjectMapper(), properties.getErrorEnvelopeCacheSize()) : null;
+        return new HandlerMethodReturnValueExceptionHandler(handlerConfig, errorEnvelopeCache);
     }
 
+    // @HandlerMethodReturnValueCache 的响应缓存，命中时不调用 Handler 方法
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "response-cache", havingValue = "true", matchIfMissing = true)
+    @Bean
+    public ResponseCacheInterceptor responseCacheInterceptor(ObjectProvider<HandlerMethodReturnValueAnnotatedHandlerConfig> handlerConfig,
+                                                             HandlerMethodReturnValueProperties properties){
+        logger.info("Init ResponseCacheInterceptor");
+        return new ResponseCacheInterceptor(new ResponseCacheStore(properties.getResponseCacheMaxSize()), handlerConfig);
+    }
+
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "response-cache", havingValue = "true", matchIfMissing = true)
+    @Bean
+    public WebMvcConfigurer responseCacheWebMvcConfigurer(ResponseCacheInterceptor responseCacheInterceptor){
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(responseCacheInterceptor);
+            }
+        };
+    }
+
+    // 包装的指标，可以注册自己的 HandlerMethodReturnValueMetrics 代替
+    @ConditionalOnProperty(prefix = "handler-method-return-value", name = "metrics", havingValue = "true")
+    @ConditionalOnMissingBean(HandlerMethodReturnValueMetrics.class)
+    @Bean
+    public DefaultHandlerMethodReturnValueMetrics handlerMethodReturnValueMetrics(){
+        logger.info("Init DefaultHandlerMethodReturnValueMetrics as HandlerMethodReturnValueMetrics");
+        return new DefaultHandlerMethodReturnValueMetrics();
+    }
 }
@@ -0,0 +1,47 @@
+package org.lcm.handlermethodreturnvalue.autoconfig;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.lcm.handlermethodreturnvalue.metrics.DefaultHandlerMethodReturnValueMetrics;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMeterBinder;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMetricsEndpoint;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 把 HandlerMethodReturnValueAutoConfigure 创建的 DefaultHandlerMethodReturnValueMetrics 暴露给 Micrometer 和 Actuator
+ *
+ * 排在 HandlerMethodReturnValueAutoConfigure 之后，@ConditionalOnBean 才能看到 DefaultHandlerMethodReturnValueMetrics；
+ * Micrometer、Actuator 都是可选的依赖，分别放在 @ConditionalOnClass 的内部类中
+ */
+@Configuration
+@AutoConfigureAfter(HandlerMethodReturnValueAutoConfigure.class)
+@ConditionalOnBean(DefaultHandlerMethodReturnValueMetrics.class)
+public class HandlerMethodReturnValueMetricsAutoConfigure {
+
+    @Configuration
+    @ConditionalOnClass(MeterBinder.class)
+    static class MeterBinderConfiguration {
+        @ConditionalOnMissingBean
+        @Bean
+        public HandlerMethodReturnValueMeterBinder handlerMethodReturnValueMeterBinder(DefaultHandlerMethodReturnValueMetrics metrics){
+            return new HandlerMethodReturnValueMeterBinder(metrics);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(Endpoint.class)
+    static class EndpointConfiguration {
+        @ConditionalOnAvailableEndpoint
+        @ConditionalOnMissingBean
+        @Bean
+        public HandlerMethodReturnValueMetricsEndpoint handlerMethodReturnValueMetricsEndpoint(DefaultHandlerMethodReturnValueMetrics metrics){
+            return new HandlerMethodReturnValueMetricsEndpoint(metrics);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.lcm.handlermethodreturnvalue.autoconfig;
+
+import lombok.Data;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.envelope.ParallelChunkedSerializer;
+import org.lcm.handlermethodreturnvalue.error.ErrorEnvelopeCache;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandler;
+import org.lcm.handlermethodreturnvalue.projection.FieldProjections;
+import org.lcm.handlermethodreturnvalue.responsecache.ResponseCacheStore;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * handler-method-return-value.* 配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "handler-method-return-value")
+public class HandlerMethodReturnValueProperties {
+
+    /**
+     * 是否预先编码信封的常量部分，直接写出字节，不再为每次请求创建 ReturnValue 对象。
+     * 只对实现了 PreEncodableReturnValueFactory 的 ReturnValueFactory 生效，
+     * 输出与直接序列化 ReturnValue 完全相同。
+     */
+    private boolean streamingEnvelope = false;
+
+    /**
+     * 是否在启动时为每个 HandlerMethod 确定处理返回值的 HandlerMethodReturnValueHandler，
+     * 请求时查表，不再按顺序调用每个 handler 的 supportsReturnType()。
+     */
+    private boolean selectionTable = false;
+
+    /**
+     * 关闭包装的 Request Header 名称，值为 DisableHandlerMethodReturnValueHeader.TOKEN 时不包装
+     */
+    private String disableHeaderName = DisableHandlerMethodReturnValueHeader.DEFAULT_HEADER_NAME;
+
+    /**
+     * 是否兼容旧版本客户端发送的 DisableHandlerMethodReturnValue.HEADER_NAME
+     */
+    private boolean acceptLegacyDisableHeader = true;
+
+    /**
+     * 是否使用 handler-method-return-value-processor 在编译时生成的注解索引，启动时不再反射扫描注解。
+     * classpath 中没有索引时仍然反射扫描。
+     */
+    private boolean annotationIndex = false;
+
+    /**
+     * 是否在运行时通过 RequestMappingHandlerMapping.registerMapping() / unregisterMapping() 注册、注销的 Handler 方法
+     * 也更新缓存、包装计划以及 SelectionTable。启用后通过 WebMvcRegistrations 使用 ObservableRequestMappingHandlerMapping。
+     */
+    private boolean liveRefresh = false;
+
+    /**
+     * 是否使用 ZeroCopyResourceHttpMessageConverter 代替 ResourceHttpMessageConverter，
+     * Tomcat 支持 sendfile 时文件类型的 Resource 通过 sendfile 写出，不复制到堆内存，其他情况与 ResourceHttpMessageConverter 相同。
+     * 替换的是全局的 ResourceHttpMessageConverter，所有返回 Resource 的方法都会受影响，默认关闭
+     */
+    private boolean zeroCopyResource = false;
+
+    /**
+     * Controller 方法返回 Stream / Iterator / Streamable 时，逐个元素写出为 data 数组，每多少个元素 flush 一次。
+     * 小于等于 0 时不主动 flush，只在缓冲区满时写出
+     */
+    private int streamingFlushElements = HandlerMethodReturnValueAnnotatedHandler.DEFAULT_STREAMING_FLUSH_ELEMENTS;
+
+    /**
+     * 是否包装 ResponseBodyEmitter / SseEmitter / Flux&lt;ServerSentEvent&gt; 发送的每一个事件。
+     * 信封的常量部分预先编码，每个事件只序列化 data
+     */
+    private boolean emitter = true;
+
+    /**
+     * Accept 为 application/cbor 或 application/x-jackson-smile 时，是否使用各自格式预先编码的信封常量部分。
+     * 需要 classpath 中有 jackson-dataformat-cbor / jackson-dataformat-smile，只对 streaming-envelope 生效
+     */
+    private boolean binaryEnvelope = true;
+
+    /**
+     * 是否按 Handler 方法记录包装的指标：包装、不包装、被 Request Header 关闭包装的次数，
+     * ReturnValueFactory 与写出的耗时，信封的字节数。
+     * classpath 中有 Micrometer 时注册到 MeterRegistry，有 Actuator 时提供 handlermethodreturnvalue Endpoint
+     */
+    private boolean metrics = false;
+
+    /**
+     * 是否把 @HandlerMethodReturnValue 标记的 Handler 方法抛出的 HandlerMethodReturnValueException / ErrorResponseException
+     * 包装为 success 为 false 的 ReturnValue，使用与成功时相同的 ReturnValueFactory
+     */
+    private boolean errorEnvelope = false;
+
+    /**
+     * 缓存多少个序列化之后的 HandlerMethodReturnValueException 失败信封，超过时淘汰最久没有使用的，小于等于 0 时不缓存
+     */
+    private int errorEnvelopeCacheSize = ErrorEnvelopeCache.DEFAULT_MAX_SIZE;
+
+    /**
+     * 是否启用 @HandlerMethodReturnValueCache 的响应缓存
+     */
+    private boolean responseCache = true;
+
+    /**
+     * 响应缓存最多保存多少条，超过时按 LRU 淘汰
+     */
+    private int responseCacheMaxSize = ResponseCacheStore.DEFAULT_MAX_SIZE;
+
+    /**
+     * 是否在写出信封时计算 ETag，与 If-None-Match 相同时响应 304。
+     * 只处理 GET / HEAD，Handler 方法已经通过 WebRequest.checkNotModified() 设置了 ETag 时不计算
+     */
+    private boolean etag = false;
+
+    /**
+     * 计算 ETag 时最多暂存多少字节，超过时直接写出，这个响应没有 ETag
+     */
+    private int etagBufferSize = 64 * 1024;
+
+    /**
+     * 是否启用稀疏字段集，例如 ?fields=id,name,owner.name 只序列化 data 中的这些字段。
+     * 路径相对于 data 中的每一个元素，分页时相对于 list / content 中的每一个元素
+     */
+    private boolean sparseFieldsets = false;
+
+    /**
+     * 字段列表的请求参数
+     */
+    private String fieldsParameter = FieldProjections.DEFAULT_PARAMETER_NAME;
+
+    /**
+     * 没有请求参数时，读取字段列表的 Request Header
+     */
+    private String fieldsHeader = FieldProjections.DEFAULT_HEADER_NAME;
+
+    /**
+     * 是否支持列式布局，客户端通过 Request Header 选择，List / 分页中的对象按列写出，属性名只写出一次。
+     * 列只包含当前 @JsonView 下会写出的属性，有 @JsonFilter 等的 Bean 仍然写出对象数组，默认关闭
+     */
+    private boolean columnarLayout = false;
+
+    /**
+     * 选择列式布局的 Request Header，值为 columnar
+     */
+    private String columnarLayoutHeaderName = ColumnarLayout.DEFAULT_HEADER_NAME;
+
+    /**
+     * 是否在专用的线程池中并行分块序列化很大的 data 数组，按顺序写出，与串行序列化的结果逐字节相同。
+     * 只对 streaming-envelope 生效
+     */
+    private boolean parallelSerialization = false;
+
+    /**
+     * data 为 List 时，元素个数不少于多少个才并行序列化
+     */
+    private int parallelSerializationThreshold = ParallelChunkedSerializer.DEFAULT_THRESHOLD;
+
+    /**
+     * 并行序列化时每一块的元素个数
+     */
+    private int parallelSerializationChunkSize = ParallelChunkedSerializer.DEFAULT_CHUNK_SIZE;
+
+    /**
+     * 并行序列化线程池的线程数，小于 2 时不并行
+     */
+    private int parallelSerializationThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 并行序列化线程池中最多等待多少块，队列满时在请求线程中序列化
+     */
+    private int parallelSerializationQueueCapacity = ParallelChunkedSerializer.DEFAULT_QUEUE_CAPACITY;
+
+    /**
+     * 并行序列化的缓冲区池最多保留多少字节
+     */
+    private long parallelSerializationBufferPoolBytes = ParallelChunkedSerializer.DEFAULT_MAX_POOLED_BYTES;
+}
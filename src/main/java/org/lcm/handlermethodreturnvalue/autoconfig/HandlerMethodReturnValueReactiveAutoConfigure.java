@@ -0,0 +1,90 @@
+package org.lcm.handlermethodreturnvalue.autoconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlanCompiler;
+import org.lcm.handlermethodreturnvalue.reactive.HandlerMethodReturnValueResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.lang.Nullable;
+import org.springframework.web.reactive.accept.RequestedContentTypeResolver;
+import org.springframework.web.reactive.result.method.annotation.ResponseBodyResultHandler;
+
+import java.util.List;
+
+/**
+ * WebFlux 应用的自动配置
+ *
+ * 与 Servlet 版本共用 ReturnValueFactory、WrappingPlanCompiler、DisableHandlerMethodReturnValueHeader 和配置项，
+ * 注册 HandlerMethodReturnValueResultHandler，排在 ResponseBodyResultHandler 的前面
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnClass(ResponseBodyResultHandler.class)
+@EnableConfigurationProperties(HandlerMethodReturnValueProperties.class)
+public class HandlerMethodReturnValueReactiveAutoConfigure {
+    private static final Logger logger = LoggerFactory.getLogger(HandlerMethodReturnValueReactiveAutoConfigure.class);
+
+    static {
+        logger.info("Load HandlerMethodReturnValueReactiveAutoConfigure");
+    }
+
+    @ConditionalOnMissingBean
+    @Bean
+    public ReturnValueFactory<? extends ReturnValue> returnValueFactory(){
+        logger.info("Init SimpleReturnValueFactory as default ReturnValueFactory");
+        logger.warn("可以创建ReturnValueFactory的子类，来实现自定义的ReturnValue包装逻辑");
+        return new SimpleReturnValueFactory();
+    }
+
+    @Bean
+    public HandlerMethodReturnValueResultHandler handlerMethodReturnValueResultHandler(
+            BeanFactory beanFactory,
+            HandlerMethodReturnValueProperties properties,
+            ReturnValueFactory<? extends ReturnValue> returnValueFactory,
+            ServerCodecConfigurer serverCodecConfigurer,
+            @Qualifier("webFluxContentTypeResolver") RequestedContentTypeResolver contentTypeResolver,
+            @Qualifier("webFluxAdapterRegistry") ReactiveAdapterRegistry reactiveAdapterRegistry){
+        logger.info("Init HandlerMethodReturnValueResultHandler");
+        List<HttpMessageWriter<?>> writers = serverCodecConfigurer.getWriters();
+        WrappingPlanCompiler wrappingPlanCompiler =
+                new WrappingPlanCompiler(beanFactory, returnValueFactory, findEnvelopeObjectMapper(properties, writers), reactiveAdapterRegistry);
+        DisableHandlerMethodReturnValueHeader disableHeader =
+                new DisableHandlerMethodReturnValueHeader(properties.getDisableHeaderName(), properties.isAcceptLegacyDisableHeader());
+        return new HandlerMethodReturnValueResultHandler(writers, contentTypeResolver, reactiveAdapterRegistry,
+                wrappingPlanCompiler, disableHeader);
+    }
+
+    // 使用与 Jackson2JsonEncoder 相同的 ObjectMapper 预先编码信封，保证输出一致
+    @Nullable
+    private static ObjectMapper findEnvelopeObjectMapper(HandlerMethodReturnValueProperties properties, List<HttpMessageWriter<?>> writers) {
+        if (!properties.isStreamingEnvelope()) {
+            return null;
+        }
+        for (HttpMessageWriter<?> writer : writers) {
+            if (writer instanceof EncoderHttpMessageWriter<?> encoderWriter &&
+                    encoderWriter.getEncoder() instanceof Jackson2JsonEncoder jsonEncoder) {
+                logger.info("Streaming envelope is enabled");
+                return jsonEncoder.getObjectMapper();
+            }
+        }
+        logger.warn("Streaming envelope is disabled: Jackson2JsonEncoder not found");
+        return null;
+    }
+}
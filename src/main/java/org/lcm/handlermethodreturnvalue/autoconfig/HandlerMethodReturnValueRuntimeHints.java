@@ -0,0 +1,39 @@
+package org.lcm.handlermethodreturnvalue.autoconfig;
+
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6;
+import org.lcm.handlermethodreturnvalue.factory.impl.AntDesignProReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProCompactPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProReturnValue;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProSlice;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProWindow;
+import org.lcm.handlermethodreturnvalue.model.impl.SimpleReturnValue;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.lang.Nullable;
+
+/**
+ * GraalVM native-image 需要的 RuntimeHints
+ *  (1) ReturnValue 的实现类由 Jackson 反射序列化，handler 方法只声明了原始的返回值类型，AOT 推断不出来
+ *  (2) @HandlerMethodReturnValue(factory = ...) 指定的 ReturnValueFactory 在容器中没有 Bean 时，通过无参构造器创建
+ *  (3) HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6 读取的注解索引
+ */
+public class HandlerMethodReturnValueRuntimeHints implements RuntimeHintsRegistrar {
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, @Nullable ClassLoader classLoader) {
+        bindingRegistrar.registerReflectionHints(hints.reflection(),
+                SimpleReturnValue.class, AntDesignProReturnValue.class, AntDesignProPage.class,
+                AntDesignProCompactPage.class, AntDesignProSlice.class, AntDesignProWindow.class);
+
+        hints.reflection()
+                .registerType(SimpleReturnValueFactory.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)
+                .registerType(AntDesignProReturnValueFactory.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        hints.resources().registerPattern(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.INDEX_LOCATION);
+    }
+}
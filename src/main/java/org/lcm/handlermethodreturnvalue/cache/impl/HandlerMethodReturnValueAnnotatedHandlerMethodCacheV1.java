@@ -39,32 +39,32 @@ public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV1 implements Ha
     public void afterPropertiesSet() throws Exception{
         Map<String, Object> controllers = this.applicationContext.getBeansWithAnnotation(Controller.class);
 
-        controllers.forEach((key, controller) -> {
-            Class<?> controllerClass = controller.getClass();
+        // 并行扫描，一次性写入 CopyOnWriteArrayList，只复制一次数组
+        List<Method> annotated = controllers.values().parallelStream()
+                .flatMap(controller -> {
+                    Class<?> controllerClass = controller.getClass();
 
-            boolean hasClassAnnotationRestController = controllerClass.isAnnotationPresent(RestController.class);
-            boolean hasClassAnnotationResponseBody = controllerClass.isAnnotationPresent(ResponseBody.class);
-            boolean hasClassAnnotationResponseResult = controllerClass.isAnnotationPresent(HandlerMethodReturnValue.class);
+                    boolean hasClassAnnotationRestController = controllerClass.isAnnotationPresent(RestController.class);
+                    boolean hasClassAnnotationResponseBody = controllerClass.isAnnotationPresent(ResponseBody.class);
+                    boolean hasClassAnnotationResponseResult = controllerClass.isAnnotationPresent(HandlerMethodReturnValue.class);
 
-            Method[] methods = controllerClass.getDeclaredMethods();
-
-            // 对于缓存池的写入，双检查+加锁
-            synchronized (this.annotatedHandlerMethods) {
-                Stream.of(methods)
-                        .filter(method -> {
-                            boolean hasMethodAnnotationResponseBody = method.isAnnotationPresent(ResponseBody.class);
-                            boolean hasMethodAnnotationResponseResult = method.isAnnotationPresent(HandlerMethodReturnValue.class);
-                            return (hasClassAnnotationRestController || hasClassAnnotationResponseBody || hasMethodAnnotationResponseBody) &&
-                                    (hasClassAnnotationResponseResult || hasMethodAnnotationResponseResult);
-                        })
-                        .forEach(annotatedHandlerMethods::add);
-            }
-        });
+                    return Stream.of(controllerClass.getDeclaredMethods())
+                            .filter(method -> {
+                                boolean hasMethodAnnotationResponseBody = method.isAnnotationPresent(ResponseBody.class);
+                                boolean hasMethodAnnotationResponseResult = method.isAnnotationPresent(HandlerMethodReturnValue.class);
+                                return (hasClassAnnotationRestController || hasClassAnnotationResponseBody || hasMethodAnnotationResponseBody) &&
+                                        (hasClassAnnotationResponseResult || hasMethodAnnotationResponseResult);
+                            });
+                })
+                .toList();
+        annotatedHandlerMethods.addAll(annotated);
 
         logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
         logger.info(">>> Total: " + annotatedHandlerMethods.size());
-        for (int i = 0; i < annotatedHandlerMethods.size(); i++){
-            logger.info(String.format("%4d: ", i) + annotatedHandlerMethods.get(i).toString());
+        if (logger.isDebugEnabled()) {
+            for (int i = 0; i < annotatedHandlerMethods.size(); i++){
+                logger.debug(String.format("%4d: ", i) + annotatedHandlerMethods.get(i).toString());
+            }
         }
     }
 
@@ -1,12 +1,9 @@
 package org.lcm.handlermethodreturnvalue.cache.impl;
 
-import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
 import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
@@ -41,28 +38,23 @@ public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV2 implements Ha
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        RequestMappingHandlerMapping mapping = webApplicationContext.getBean(RequestMappingHandlerMapping.class);
+        RequestMappingHandlerMapping mapping = webApplicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
         Map<RequestMappingInfo, HandlerMethod> handlerMethods = mapping.getHandlerMethods();
-        handlerMethods.forEach((info, handlerMethod) -> {
-            // (1) 方法上有 @ResponseBody, 或者类上有 @ResponseBody 或者 @RestController
-            // (2) 方法上有 @HandlerMethodReturnValue, 或者类上有 @ResponseResult
-            Method method = handlerMethod.getMethod();
-            Class<?> type = method.getDeclaringClass();
-            if ((method.isAnnotationPresent(ResponseBody.class) ||
-                    type.isAnnotationPresent(ResponseBody.class) ||
-                    type.isAnnotationPresent(RestController.class)) &&
-                    (method.isAnnotationPresent(HandlerMethodReturnValue.class) ||
-                            type.isAnnotationPresent(HandlerMethodReturnValue.class))) {
-                // 对于缓存池的写入，双检查+加锁
-                synchronized (this.annotatedHandlerMethods) {
-                    annotatedHandlerMethods.add(method);
-                }
-            }
-        });
+        // 并行扫描，一次性写入 CopyOnWriteArrayList，只复制一次数组
+        // (1) 方法上有 @ResponseBody, 或者类上有 @ResponseBody 或者 @RestController
+        // (2) 方法上有 @HandlerMethodReturnValue, 或者类上有 @HandlerMethodReturnValue
+        List<Method> annotated = handlerMethods.values().parallelStream()
+                .map(HandlerMethod::getMethod)
+                .filter(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5::isAnnotatedHandlerMethod)
+                .toList();
+        annotatedHandlerMethods.addAll(annotated);
+
         logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
         logger.info(">>> Total: " + annotatedHandlerMethods.size());
-        for (int i = 0; i < annotatedHandlerMethods.size(); i++){
-            logger.info(String.format("%4d: ", i) + annotatedHandlerMethods.get(i).toString());
+        if (logger.isDebugEnabled()) {
+            for (int i = 0; i < annotatedHandlerMethods.size(); i++){
+                logger.debug(String.format("%4d: ", i) + annotatedHandlerMethods.get(i).toString());
+            }
         }
     }
 
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -43,8 +44,8 @@ public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV4 implements Ha
         Class<?> type = bean.getClass();
         // 判断是否为 Controller 类
         if (type.isAnnotationPresent(Controller.class) || type.isAnnotationPresent(RestController.class)) {
-            Method[] methods = type.getMethods();
-            for (Method method : methods) {
+            List<Method> annotated = new ArrayList<>();
+            for (Method method : type.getMethods()) {
                 // (1) 方法上有 @ResponseBody, 或者类上有 @ResponseBody 或者 @RestController
                 // (2) 方法上有 @HandlerMethodReturnValue, 或者类上有 @ResponseResult
                 if ((method.isAnnotationPresent(ResponseBody.class) ||
@@ -52,13 +53,15 @@ public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV4 implements Ha
                         type.isAnnotationPresent(RestController.class)) &&
                         (method.isAnnotationPresent(HandlerMethodReturnValue.class) ||
                                 type.isAnnotationPresent(HandlerMethodReturnValue.class))) {
-                    // 对于缓存池的写入，双检查+加锁
-                    synchronized (this.annotatedHandlerMethods) {
-                        annotatedHandlerMethods.add(method);
-                        if (annotatedHandlerMethods.size() == 1){
-                            logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
-                        }
-                        logger.info(String.format("%4d: ", annotatedHandlerMethods.size()) + method);
+                    annotated.add(method);
+                }
+            }
+            // 每个 Bean 一次性写入 CopyOnWriteArrayList，只复制一次数组
+            if (!annotated.isEmpty()) {
+                annotatedHandlerMethods.addAll(annotated);
+                if (logger.isDebugEnabled()) {
+                    for (Method method : annotated) {
+                        logger.debug("Controller Handler Method with annotation @HandlerMethodReturnValue and @ResponseBody: " + method);
                     }
                 }
             }
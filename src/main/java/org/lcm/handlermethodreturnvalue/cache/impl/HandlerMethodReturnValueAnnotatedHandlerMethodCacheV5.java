@@ -0,0 +1,107 @@
+package org.lcm.handlermethodreturnvalue.cache.impl;
+
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 做一个缓存，优化。
+ * 启动的时候扫描所有带注解 @HandlerMethodReturnValue + @ResponseBody 的 Controller方法
+ * 储存在 Identity Map 中，使用的时候不需要再使用反射，也不需要线性查找
+ *
+ * 实现方式
+ *  (1) WebApplicationContext by @Autowired
+ *  (2) InitializingBean
+ *  (3) 启动时根据 RequestMappingHandlerMapping.getHandlerMethods() 构建只读的 IdentityHashMap，
+ *      key 为 HandlerMethod 持有的 Method 对象本身，命中与未命中都是 O(1)
+ *  (4) 对于从未见过的 Method 对象（例如同一个方法的另一个反射副本），用 Method.equals() 查一次 HashSet，
+ *      结果记忆在 ConcurrentHashMap 中，之后同样是 O(1)
+ *
+ *  优点：
+ *   (1) 在 AbstractController 上面加注解 @HandlerMethodReturnValue + @ResponseBody, 可以获取到。
+ *   (2) V1 ~ V4 的 CopyOnWriteArrayList.contains() 是线性查找，每次比较都要比较类名、方法名和参数类型，
+ *       Controller 方法很多的时候开销明显。
+ */
+public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5 implements HandlerMethodReturnValueAnnotatedHandlerMethodCache, InitializingBean {
+    // WebApplicationContext 可以获取 RequestMappingHandlerMapping
+    private final WebApplicationContext webApplicationContext;
+    // 启动时构建，之后只读：key 为 HandlerMethod 中的 Method 对象，value 为是否需要包装
+    private Map<Method, Boolean> handlerMethodIndex = Collections.emptyMap();
+    // 所有需要包装的 Method，用于 Method.equals() 比较
+    private Set<Method> annotatedHandlerMethods = Collections.emptySet();
+    // 记忆从未见过的 Method 对象的查询结果
+    private final Map<Method, Boolean> unseenMethodAnswers = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5.class);
+
+    public HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5(WebApplicationContext webApplicationContext) {
+        this.webApplicationContext = webApplicationContext;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        RequestMappingHandlerMapping mapping = webApplicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = mapping.getHandlerMethods();
+
+        // 反射读取注解的部分并行执行，IdentityHashMap 的构建只是简单的写入
+        List<Method> annotatedList = handlerMethods.values().parallelStream()
+                .map(HandlerMethod::getMethod)
+                .filter(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5::isAnnotatedHandlerMethod)
+                .toList();
+        Map<Method, Boolean> index = new IdentityHashMap<>(handlerMethods.size());
+        for (HandlerMethod handlerMethod : handlerMethods.values()) {
+            index.put(handlerMethod.getMethod(), Boolean.FALSE);
+        }
+        for (Method method : annotatedList) {
+            index.put(method, Boolean.TRUE);
+        }
+        Set<Method> annotated = new HashSet<>(annotatedList);
+
+        // 先构建完成，再整体发布，之后只读
+        this.annotatedHandlerMethods = annotated;
+        this.handlerMethodIndex = index;
+
+        logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
+        logger.info(">>> Total: " + annotated.size() + " / " + index.size());
+    }
+
+    @Override
+    public boolean contains(Method method) {
+        Boolean answer = handlerMethodIndex.get(method);
+        if (answer != null) {
+            return answer;
+        }
+        if (method == null) {
+            return false;
+        }
+        // 从未见过的 Method 对象，用 Method.equals() 比较一次，然后记住结果
+        return unseenMethodAnswers.computeIfAbsent(method, annotatedHandlerMethods::contains);
+    }
+
+    // (1) 方法上有 @ResponseBody, 或者类上有 @ResponseBody 或者 @RestController
+    // (2) 方法上有 @HandlerMethodReturnValue, 或者类上有 @HandlerMethodReturnValue
+    static boolean isAnnotatedHandlerMethod(Method method) {
+        Class<?> type = method.getDeclaringClass();
+        return (method.isAnnotationPresent(ResponseBody.class) ||
+                type.isAnnotationPresent(ResponseBody.class) ||
+                type.isAnnotationPresent(RestController.class)) &&
+                (method.isAnnotationPresent(HandlerMethodReturnValue.class) ||
+                        type.isAnnotationPresent(HandlerMethodReturnValue.class));
+    }
+}
@@ -0,0 +1,192 @@
+package org.lcm.handlermethodreturnvalue.cache.impl;
+
+import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 做一个缓存，优化。
+ * 与 V5 相同的 Identity Map，但是不在启动时反射扫描注解，
+ * 而是读取 handler-method-return-value-processor 在编译时生成的 META-INF/handler-method-return-value.index
+ *
+ * 实现方式
+ *  (1) WebApplicationContext by @Autowired
+ *  (2) InitializingBean
+ *  (3) 读取 classpath 中所有的 META-INF/handler-method-return-value.index，
+ *      每行一个方法：声明类的 binary name#方法名(参数类型,...)，或者一个由索引覆盖的类：binary name
+ *  (4) 启动时根据 RequestMappingHandlerMapping.getHandlerMethods() 构建只读的 IdentityHashMap，
+ *      只需要拼接方法签名查索引，不需要读取注解
+ *  (5) 每个索引文件只覆盖生成它时编译的类（索引中的类），覆盖范围只查 Set，不读取 .class 资源，native-image 中同样有效；
+ *      声明类不在任何一个索引中时（例如编译时没有使用 processor 的模块或者 jar、旧版本 processor 生成的索引），
+ *      与 V5 相同，反射扫描注解
+ *  (6) classpath 中没有索引时，与 V5 相同，反射扫描注解
+ *
+ *  注意：
+ *   (1) 编译时没有使用 handler-method-return-value-processor 的模块仍然会被包装，只是这些类需要反射扫描注解
+ *   (2) GraalVM native-image 下需要把索引打包为资源，HandlerMethodReturnValueRuntimeHints 已经注册
+ */
+public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6 implements HandlerMethodReturnValueAnnotatedHandlerMethodCache, InitializingBean {
+    public static final String INDEX_LOCATION = "META-INF/handler-method-return-value.index";
+
+    // WebApplicationContext 可以获取 RequestMappingHandlerMapping
+    private final WebApplicationContext webApplicationContext;
+    // 启动时构建，之后只读：key 为 HandlerMethod 中的 Method 对象，value 为是否需要包装
+    private Map<Method, Boolean> handlerMethodIndex = Collections.emptyMap();
+    // 编译时生成的索引，为 null 时反射扫描注解
+    @Nullable
+    private AnnotationIndex annotationIndex;
+    // 记忆从未见过的 Method 对象的查询结果
+    private final Map<Method, Boolean> unseenMethodAnswers = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.class);
+
+    public HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6(WebApplicationContext webApplicationContext) {
+        this.webApplicationContext = webApplicationContext;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        this.annotationIndex = loadAnnotationIndex(webApplicationContext.getClassLoader());
+        if (this.annotationIndex == null) {
+            logger.warn(INDEX_LOCATION + " not found, fall back to reflection. Add handler-method-return-value-processor to the annotation processor path");
+        } else {
+            logger.info("Loaded " + INDEX_LOCATION + ": " + this.annotationIndex.entries.size() + " entries, " +
+                    this.annotationIndex.coveredTypes.size() + " covered types");
+        }
+
+        RequestMappingHandlerMapping mapping = webApplicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = mapping.getHandlerMethods();
+
+        // 拼接方法签名、查索引的部分并行执行，IdentityHashMap 的构建只是简单的写入
+        List<Method> annotatedList = handlerMethods.values().parallelStream()
+                .map(HandlerMethod::getMethod)
+                .filter(this::isAnnotatedHandlerMethod)
+                .toList();
+        Map<Method, Boolean> index = new IdentityHashMap<>(handlerMethods.size());
+        for (HandlerMethod handlerMethod : handlerMethods.values()) {
+            index.put(handlerMethod.getMethod(), Boolean.FALSE);
+        }
+        for (Method method : annotatedList) {
+            index.put(method, Boolean.TRUE);
+        }
+        int annotated = (int) index.values().stream().filter(Boolean::booleanValue).count();
+
+        // 先构建完成，再整体发布，之后只读
+        this.handlerMethodIndex = index;
+
+        logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
+        logger.info(">>> Total: " + annotated + " / " + index.size());
+    }
+
+    @Override
+    public boolean contains(Method method) {
+        Boolean answer = handlerMethodIndex.get(method);
+        if (answer != null) {
+            return answer;
+        }
+        if (method == null) {
+            return false;
+        }
+        return unseenMethodAnswers.computeIfAbsent(method, this::isAnnotatedHandlerMethod);
+    }
+
+    private boolean isAnnotatedHandlerMethod(Method method) {
+        return isAnnotatedHandlerMethod(this.annotationIndex, method);
+    }
+
+    // 声明类不在任何一个索引文件覆盖的范围内时，反射扫描注解
+    static boolean isAnnotatedHandlerMethod(@Nullable AnnotationIndex index, Method method) {
+        if (index == null || !index.covers(method.getDeclaringClass())) {
+            return HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5.isAnnotatedHandlerMethod(method);
+        }
+        return index.entries.contains(keyOf(method));
+    }
+
+    // 与 HandlerMethodReturnValueIndexProcessor 生成的格式相同
+    static String keyOf(Method method) {
+        StringBuilder key = new StringBuilder()
+                .append(method.getDeclaringClass().getName())
+                .append('#')
+                .append(method.getName())
+                .append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(parameterTypes[i].getTypeName());
+        }
+        return key.append(')').toString();
+    }
+
+    // 没有任何索引文件时返回 null
+    @Nullable
+    static AnnotationIndex loadAnnotationIndex(@Nullable ClassLoader classLoader) throws IOException {
+        if (classLoader == null) {
+            classLoader = HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.class.getClassLoader();
+        }
+        Enumeration<URL> resources = classLoader.getResources(INDEX_LOCATION);
+        if (!resources.hasMoreElements()) {
+            return null;
+        }
+        Set<String> index = new HashSet<>();
+        Set<String> coveredTypes = new HashSet<>();
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            try (InputStream inputStream = resource.openStream();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    if (line.indexOf('#') > 0) {
+                        index.add(line);
+                    } else {
+                        coveredTypes.add(line);
+                    }
+                }
+            }
+        }
+        return new AnnotationIndex(index, coveredTypes);
+    }
+
+    /**
+     * 所有索引文件中的方法，以及生成这些索引时编译的类（binary name，与 Class.getName() 相同）
+     */
+    static final class AnnotationIndex {
+        private final Set<String> entries;
+        private final Set<String> coveredTypes;
+
+        AnnotationIndex(Set<String> entries, Set<String> coveredTypes) {
+            this.entries = Set.copyOf(entries);
+            this.coveredTypes = Set.copyOf(coveredTypes);
+        }
+
+        boolean covers(Class<?> type) {
+            return coveredTypes.contains(type.getName());
+        }
+    }
+}
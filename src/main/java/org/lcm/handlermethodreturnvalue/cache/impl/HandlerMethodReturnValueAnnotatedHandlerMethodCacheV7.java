@@ -0,0 +1,147 @@
+package org.lcm.handlermethodreturnvalue.cache.impl;
+
+import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
+import org.lcm.handlermethodreturnvalue.mapping.HandlerMethodMappingListener;
+import org.lcm.handlermethodreturnvalue.mapping.ObservableRequestMappingHandlerMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 做一个缓存，优化。
+ * 与 V5 相同的 Identity Map，并且在运行时注册、注销 Handler 方法时更新
+ *
+ * 实现方式
+ *  (1) WebApplicationContext by @Autowired
+ *  (2) InitializingBean
+ *  (3) 监听 ObservableRequestMappingHandlerMapping 的注册与注销（HandlerMethodMappingListener）
+ *  (4) 当前状态是一个不可变的快照，写入时复制一份新的快照，再通过 AtomicReference CAS 整体替换
+ *      读取只有一次 volatile 读和一次 IdentityHashMap 查找，不加锁
+ *  (5) 同一个 Method 可以注册在多个 RequestMappingInfo 下，快照中记录注册次数，全部注销后才移除
+ *  (6) 快照中没有的 Method（例如已经注销、但请求仍在处理中），与 V5 相同的规则反射判断
+ *
+ *  注意：
+ *   (1) 需要 handler-method-return-value.live-refresh=true，由 WebMvcRegistrations 提供 ObservableRequestMappingHandlerMapping。
+ *       RequestMappingHandlerMapping 不是 ObservableRequestMappingHandlerMapping 时，只有启动时的快照
+ *   (2) 写入是 O(n) 的复制，适用于注册、注销远少于请求的场景
+ *   (3) HandlerMethodReturnValueAnnotatedHandlerConfig 同样监听注册与注销，更新 WrappingPlans 和 SelectionTable
+ *   (4) 快照中没有的 Method 每次都会反射判断，不会记忆，测试快照是否正确需要使用 isIndexed()
+ */
+public class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 implements HandlerMethodReturnValueAnnotatedHandlerMethodCache, InitializingBean, HandlerMethodMappingListener {
+    // WebApplicationContext 可以获取 RequestMappingHandlerMapping
+    private final WebApplicationContext webApplicationContext;
+    // 不可变的快照，key 为 HandlerMethod 中的 Method 对象
+    private final AtomicReference<Map<Method, Registration>> snapshot = new AtomicReference<>(Collections.emptyMap());
+    private static final Logger logger = LoggerFactory.getLogger(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7.class);
+
+    public HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7(WebApplicationContext webApplicationContext) {
+        this.webApplicationContext = webApplicationContext;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        RequestMappingHandlerMapping mapping = webApplicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        if (mapping instanceof ObservableRequestMappingHandlerMapping observableMapping) {
+            // 在同一个锁中读取已有的方法并添加监听器，之后注册的方法只通过监听器计入一次
+            observableMapping.addListener(this, this::index);
+        } else {
+            logger.warn("RequestMappingHandlerMapping is not an ObservableRequestMappingHandlerMapping, mappings registered at runtime will not be indexed");
+            index(mapping.getHandlerMethods());
+        }
+
+        Map<Method, Registration> current = snapshot.get();
+        logger.info("Controller Handler Methods with annotation @HandlerMethodReturnValue and @ResponseBody");
+        logger.info(">>> Total: " + current.values().stream().filter(Registration::annotated).count() + " / " + current.size());
+    }
+
+    private void index(Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
+        snapshot.updateAndGet(current -> {
+            Map<Method, Registration> next = new IdentityHashMap<>(current);
+            handlerMethods.forEach((info, handlerMethod) -> {
+                Method method = handlerMethod.getMethod();
+                Registration registration = next.get(method);
+                next.put(method, registration == null ?
+                        new Registration(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5.isAnnotatedHandlerMethod(method), 1) :
+                        registration.increment());
+            });
+            return Collections.unmodifiableMap(next);
+        });
+    }
+
+    @Override
+    public boolean contains(Method method) {
+        if (method == null) {
+            return false;
+        }
+        Registration registration = snapshot.get().get(method);
+        if (registration != null) {
+            return registration.annotated();
+        }
+        return HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5.isAnnotatedHandlerMethod(method);
+    }
+
+    // 当前快照中是否有这个 Method
+    public boolean isIndexed(Method method) {
+        return snapshot.get().containsKey(method);
+    }
+
+    public int size() {
+        return snapshot.get().size();
+    }
+
+    @Override
+    public void onHandlerMethodRegistered(RequestMappingInfo mapping, Method method) {
+        // 反射只做一次，放在 CAS 循环外面
+        boolean annotated = HandlerMethodReturnValueAnnotatedHandlerMethodCacheV5.isAnnotatedHandlerMethod(method);
+        snapshot.updateAndGet(current -> {
+            Map<Method, Registration> next = new IdentityHashMap<>(current);
+            Registration registration = next.get(method);
+            next.put(method, registration == null ? new Registration(annotated, 1) : registration.increment());
+            return Collections.unmodifiableMap(next);
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Handler Method registered: " + method + ", annotated: " + annotated);
+        }
+    }
+
+    @Override
+    public void onHandlerMethodUnregistered(RequestMappingInfo mapping, Method method) {
+        snapshot.updateAndGet(current -> {
+            Registration registration = current.get(method);
+            if (registration == null) {
+                return current;
+            }
+            Map<Method, Registration> next = new IdentityHashMap<>(current);
+            if (registration.count() == 1) {
+                next.remove(method);
+            } else {
+                next.put(method, registration.decrement());
+            }
+            return Collections.unmodifiableMap(next);
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Handler Method unregistered: " + method);
+        }
+    }
+
+    // 是否需要包装，以及注册次数
+    private record Registration(boolean annotated, int count) {
+        Registration increment() {
+            return new Registration(annotated, count + 1);
+        }
+
+        Registration decrement() {
+            return new Registration(annotated, count - 1);
+        }
+    }
+}
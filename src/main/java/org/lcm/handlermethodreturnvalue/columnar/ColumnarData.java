@@ -0,0 +1,172 @@
+package org.lcm.handlermethodreturnvalue.columnar;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import org.lcm.handlermethodreturnvalue.envelope.BeanPropertyWriters;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProCompactPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProSlice;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProWindow;
+import org.springframework.data.domain.Slice;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * 按列写出 data 中的集合
+ *
+ * 使用 Jackson 为元素的类创建的 BeanSerializer 中的 BeanPropertyWriter：
+ *  (1) columns - 每个属性的序列化名称，只写出一次
+ *  (2) rows - 每个元素一个数组，BeanPropertyWriter.serializeAsElement() 写出每个属性，
+ *      属性的自定义序列化器、@JsonFormat 仍然生效；@JsonInclude 省略的值写出为 null，保证每一行的列数相同
+ * 集合为空、包含 null、元素的类不同、元素不是普通的 Bean（例如 String、Map、使用了 Object Id）时写出对象数组。
+ * 列只包含当前 @JsonView 下会写出的属性；有 @JsonFilter、@JsonAnyGetter、@JsonTypeInfo 的 Bean
+ * 无法按列写出而不改变内容，写出对象数组（BeanPropertyWriters）
+ */
+public final class ColumnarData implements JsonSerializable {
+    private static final String[] DATA_PROPERTIES = {"data"};
+    // 分页中按列写出的集合属性
+    private static final String[] PAGE_CONTENT_PROPERTIES = {"list", "content"};
+
+    private final Object value;
+    // value 为 ReturnValue 时为 true，只改变 data 的写出方式
+    private final boolean envelope;
+
+    public ColumnarData(Object value, boolean envelope) {
+        this.value = value;
+        this.envelope = envelope;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (envelope) {
+            writeBean(value, DATA_PROPERTIES, gen, serializers);
+        } else {
+            writeData(value, gen, serializers);
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+    private static void writeData(@Nullable Object data, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (data instanceof Collection<?> collection) {
+            writeColumns(collection, gen, serializers);
+        } else if (data != null && isPage(data)) {
+            writeBean(data, PAGE_CONTENT_PROPERTIES, gen, serializers);
+        } else {
+            serializers.defaultSerializeValue(data, gen);
+        }
+    }
+
+    // 写出 value 的属性，columnarProperties 中的属性按 data 处理
+    private static void writeBean(Object value, String[] columnarProperties, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        JsonSerializer<Object> serializer = serializers.findValueSerializer(value.getClass());
+        if (!(serializer instanceof BeanSerializerBase beanSerializer)) {
+            serializer.serialize(value, gen, serializers);
+            return;
+        }
+        BeanPropertyWriter[] writers = BeanPropertyWriters.of(beanSerializer, serializers);
+        if (writers == null) {
+            serializer.serialize(value, gen, serializers);
+            return;
+        }
+        gen.writeStartObject(value);
+        for (BeanPropertyWriter writer : writers) {
+            try {
+                if (contains(columnarProperties, writer.getName())) {
+                    Object propertyValue = writer.get(value);
+                    if (propertyValue != null) {
+                        gen.writeFieldName(writer.getSerializedName());
+                        writeData(propertyValue, gen, serializers);
+                        continue;
+                    }
+                }
+                writer.serializeAsField(value, gen, serializers);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                serializers.reportMappingProblem(e, "Can not write property %s", writer.getName());
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeColumns(Collection<?> rows, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        BeanPropertyWriter[] columns = columnsOf(rows, serializers);
+        if (columns == null) {
+            serializers.defaultSerializeValue(rows, gen);
+            return;
+        }
+        gen.writeStartObject(rows);
+        gen.writeFieldName("columns");
+        gen.writeStartArray(columns, columns.length);
+        for (BeanPropertyWriter column : columns) {
+            gen.writeString(column.getSerializedName());
+        }
+        gen.writeEndArray();
+        gen.writeFieldName("rows");
+        gen.writeStartArray(rows, rows.size());
+        for (Object row : rows) {
+            gen.writeStartArray(row, columns.length);
+            for (BeanPropertyWriter column : columns) {
+                try {
+                    column.serializeAsElement(row, gen, serializers);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    serializers.reportMappingProblem(e, "Can not write property %s", column.getName());
+                }
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    // 不能按列写出时返回 null
+    @Nullable
+    private static BeanPropertyWriter[] columnsOf(Collection<?> rows, SerializerProvider serializers) throws IOException {
+        Class<?> rowClass = null;
+        for (Object row : rows) {
+            if (row == null || (rowClass != null && row.getClass() != rowClass)) {
+                return null;
+            }
+            rowClass = row.getClass();
+        }
+        if (rowClass == null) {
+            return null;
+        }
+        JsonSerializer<Object> serializer = serializers.findValueSerializer(rowClass);
+        if (!(serializer instanceof BeanSerializerBase beanSerializer)) {
+            return null;
+        }
+        return BeanPropertyWriters.of(beanSerializer, serializers);
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String candidate : names) {
+            if (candidate.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPage(Object value) {
+        return value instanceof AntDesignProPage || value instanceof AntDesignProCompactPage ||
+                value instanceof AntDesignProSlice || value instanceof AntDesignProWindow || value instanceof Slice;
+    }
+}
@@ -0,0 +1,56 @@
+package org.lcm.handlermethodreturnvalue.columnar;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.lcm.handlermethodreturnvalue.envelope.PreEncodedEnvelope;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.NativeWebRequest;
+
+/**
+ * 列式布局，由客户端通过 Request Header 选择，默认 X-HMRV-Layout: columnar
+ *
+ * data 为 List 或者分页时，集合中的对象按列写出，属性名只写出一次：
+ *   {"columns":["id","name","owner"],"rows":[[1,"a",{"name":"o"}],[2,"b",null]]}
+ * 集合中的元素都是同一个类的 Bean 时才按列写出，否则仍然写出对象数组。
+ * 分页的其他属性、信封的常量部分不变。
+ *
+ * 客户端使用 ColumnarEnvelopeRequestInterceptor 发送 Header，HandlerMethodReturnValueDecoder 把 rows 还原为对象
+ */
+public class ColumnarLayout {
+    public static final String DEFAULT_HEADER_NAME = "X-HMRV-Layout";
+    public static final String COLUMNAR = "columnar";
+
+    private final String headerName;
+
+    public ColumnarLayout() {
+        this(DEFAULT_HEADER_NAME);
+    }
+
+    public ColumnarLayout(String headerName) {
+        Assert.hasText(headerName, "headerName must not be empty.");
+        this.headerName = headerName;
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    public boolean isRequested(NativeWebRequest webRequest) {
+        return COLUMNAR.equalsIgnoreCase(webRequest.getHeader(headerName));
+    }
+
+    public boolean isRequested(HttpServletRequest request) {
+        return COLUMNAR.equalsIgnoreCase(request.getHeader(headerName));
+    }
+
+    /**
+     * 按列写出信封中的 data
+     *  (1) PreEncodedEnvelope - 常量部分不变，只改变 data 的写出方式
+     *  (2) ReturnValue - data 以外的属性不变
+     */
+    public Object apply(Object envelope) {
+        if (envelope instanceof PreEncodedEnvelope preEncodedEnvelope) {
+            return new PreEncodedEnvelope(preEncodedEnvelope.getTemplate(), new ColumnarData(preEncodedEnvelope.getData(), false));
+        }
+        return new ColumnarData(envelope, true);
+    }
+}
@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.columnar;
+
+import org.springframework.lang.NonNullApi;
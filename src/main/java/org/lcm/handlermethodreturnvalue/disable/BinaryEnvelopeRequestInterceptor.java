@@ -0,0 +1,39 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+
+/**
+ * Spring Cloud OpenFeign 的 RequestInterceptor
+ * 服务之间的调用要求服务端以 CBOR / Smile 写出信封，浏览器等其他客户端仍然收到 JSON
+ *
+ * 使用方法 @FeignClient(value = "product-service", configuration = ...) 中注册
+ *  (1) new BinaryEnvelopeRequestInterceptor()，默认 Accept: application/cbor
+ *  (2) new HandlerMethodReturnValueDecoder(objectMapper, Map.of(new MediaType("application", "cbor"), new CBORMapper()))
+ * 服务端需要引入 jackson-dataformat-cbor / jackson-dataformat-smile。
+ * 服务端不支持时按照 Accept 中的 application/json 回退为 JSON，HandlerMethodReturnValueDecoder 按 Content-Type 选择 ObjectMapper
+ */
+public class BinaryEnvelopeRequestInterceptor implements RequestInterceptor {
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    private final String mediaType;
+
+    public BinaryEnvelopeRequestInterceptor() {
+        this(MediaType.APPLICATION_CBOR_VALUE);
+    }
+
+    public BinaryEnvelopeRequestInterceptor(String mediaType) {
+        Assert.hasText(mediaType, "mediaType must not be empty.");
+        this.mediaType = mediaType;
+    }
+
+    @Override
+    public void apply(RequestTemplate requestTemplate) {
+        // 覆盖 Feign 默认的 Accept
+        requestTemplate.removeHeader(HttpHeaders.ACCEPT);
+        requestTemplate.header(HttpHeaders.ACCEPT, mediaType + ", application/json;q=0.9");
+    }
+}
@@ -0,0 +1,33 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.springframework.util.Assert;
+
+/**
+ * Spring Cloud OpenFeign 的 RequestInterceptor
+ * 要求服务端按列写出 data 中的 List / 分页，默认发送 X-HMRV-Layout: columnar
+ *
+ * 使用方法 @FeignClient(value = "product-service", configuration = ...) 中注册
+ *  (1) new ColumnarEnvelopeRequestInterceptor()
+ *  (2) new HandlerMethodReturnValueDecoder(objectMapper)，把 rows 还原为 Feign 方法声明的元素类型
+ * 服务端不支持时仍然写出对象数组，HandlerMethodReturnValueDecoder 两种格式都可以读取
+ */
+public class ColumnarEnvelopeRequestInterceptor implements RequestInterceptor {
+    private final String headerName;
+
+    public ColumnarEnvelopeRequestInterceptor() {
+        this(ColumnarLayout.DEFAULT_HEADER_NAME);
+    }
+
+    public ColumnarEnvelopeRequestInterceptor(String headerName) {
+        Assert.hasText(headerName, "headerName must not be empty.");
+        this.headerName = headerName;
+    }
+
+    @Override
+    public void apply(RequestTemplate requestTemplate) {
+        requestTemplate.header(headerName, ColumnarLayout.COLUMNAR);
+    }
+}
@@ -16,6 +16,7 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 public interface DisableHandlerMethodReturnValue {
     String HEADER_NAME = DisableHandlerMethodReturnValue.class.getName().replaceAll("\\.", "-");
 
+    // 经过 RequestContextHolder 获取当前请求，HandlerMethodReturnValueHandler 中请使用 DisableHandlerMethodReturnValueHeader
     static boolean existsInHttpRequestHeader(){
         RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
 
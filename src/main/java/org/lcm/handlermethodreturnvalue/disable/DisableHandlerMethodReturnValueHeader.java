@@ -0,0 +1,67 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * 使用 HandlerMethodReturnValueHandler 已经传入的 NativeWebRequest 检查 Request Header，
+ * 不经过 RequestContextHolder（ThreadLocal）
+ *
+ * Header
+ *  (1) 短的 Header，默认 X-HMRV，值为 TOKEN 时不包装。名称可以通过 handler-method-return-value.disable-header-name 配置
+ *  (2) DisableHandlerMethodReturnValue.HEADER_NAME，兼容旧版本的客户端，存在即不包装。
+ *      可以通过 handler-method-return-value.accept-legacy-disable-header=false 关闭
+ *
+ * 每个请求只检查一次，结果保存在 request attribute ATTRIBUTE_NAME 中，后续的检查直接读取
+ * WebFlux 中使用 ServerWebExchange，结果保存在 exchange attribute ATTRIBUTE_NAME 中
+ */
+public class DisableHandlerMethodReturnValueHeader {
+    public static final String DEFAULT_HEADER_NAME = "X-HMRV";
+    public static final String TOKEN = "0";
+    public static final String ATTRIBUTE_NAME = DisableHandlerMethodReturnValueHeader.class.getName() + ".DISABLED";
+
+    public static final DisableHandlerMethodReturnValueHeader DEFAULT = new DisableHandlerMethodReturnValueHeader(DEFAULT_HEADER_NAME, true);
+
+    private final String headerName;
+    private final boolean acceptLegacyHeader;
+
+    public DisableHandlerMethodReturnValueHeader(String headerName, boolean acceptLegacyHeader) {
+        Assert.hasText(headerName, "headerName must not be empty.");
+        this.headerName = headerName;
+        this.acceptLegacyHeader = acceptLegacyHeader;
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    public boolean isAcceptLegacyHeader() {
+        return acceptLegacyHeader;
+    }
+
+    public boolean existsInHttpRequestHeader(NativeWebRequest webRequest) {
+        Object disabled = webRequest.getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+        if (disabled != null) {
+            return (Boolean) disabled;
+        }
+        boolean result = TOKEN.equals(webRequest.getHeader(headerName))
+                || (acceptLegacyHeader && webRequest.getHeader(DisableHandlerMethodReturnValue.HEADER_NAME) != null);
+        webRequest.setAttribute(ATTRIBUTE_NAME, result, RequestAttributes.SCOPE_REQUEST);
+        return result;
+    }
+
+    public boolean existsInHttpRequestHeader(ServerWebExchange exchange) {
+        Boolean disabled = exchange.getAttribute(ATTRIBUTE_NAME);
+        if (disabled != null) {
+            return disabled;
+        }
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        boolean result = TOKEN.equals(headers.getFirst(headerName))
+                || (acceptLegacyHeader && headers.containsKey(DisableHandlerMethodReturnValue.HEADER_NAME));
+        exchange.getAttributes().put(ATTRIBUTE_NAME, result);
+        return result;
+    }
+}
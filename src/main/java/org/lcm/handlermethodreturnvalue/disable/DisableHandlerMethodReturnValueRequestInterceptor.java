@@ -2,17 +2,45 @@ package org.lcm.handlermethodreturnvalue.disable;
 
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
+import org.springframework.util.Assert;
 
 /**
  * Spring Cloud OpenFeign 的 RequestInterceptor
- * 向 Request Header 中添加一个 header
+ * 向 Request Header 中添加关闭包装的 header
  *
  * 使用方法 @FeignClient(value = "product-service",configuration = DisableHandlerMethodReturnValueRequestInterceptor.class)
  *
+ * 默认同时发送短的 Header（X-HMRV: 0）和旧版本的 DisableHandlerMethodReturnValue.HEADER_NAME，
+ * 服务端是新版本还是旧版本都不会包装，升级时客户端与服务端不需要同时发布
+ * 服务端配置了其他的 handler-method-return-value.disable-header-name 时，使用 DisableHandlerMethodReturnValueRequestInterceptor(String) 创建
+ * 所有服务端都已经升级时，使用 DisableHandlerMethodReturnValueRequestInterceptor(headerName, false) 创建，只发送短的 Header
+ * 不能发送 Header 时（例如经过第三方网关），使用 HandlerMethodReturnValueDecoder 在客户端拆开信封
  */
 public class DisableHandlerMethodReturnValueRequestInterceptor implements RequestInterceptor {
+    private final String headerName;
+    // 是否同时发送 DisableHandlerMethodReturnValue.HEADER_NAME
+    private final boolean sendLegacyHeader;
+
+    public DisableHandlerMethodReturnValueRequestInterceptor() {
+        this(DisableHandlerMethodReturnValueHeader.DEFAULT_HEADER_NAME);
+    }
+
+    public DisableHandlerMethodReturnValueRequestInterceptor(String headerName) {
+        this(headerName, true);
+    }
+
+    public DisableHandlerMethodReturnValueRequestInterceptor(String headerName, boolean sendLegacyHeader) {
+        Assert.hasText(headerName, "headerName must not be empty.");
+        this.headerName = headerName;
+        this.sendLegacyHeader = sendLegacyHeader;
+    }
+
     @Override
     public void apply(RequestTemplate requestTemplate) {
-        requestTemplate.header(DisableHandlerMethodReturnValue.HEADER_NAME, "");
+        requestTemplate.header(headerName, DisableHandlerMethodReturnValueHeader.TOKEN);
+        if (sendLegacyHeader && !DisableHandlerMethodReturnValue.HEADER_NAME.equalsIgnoreCase(headerName)) {
+            // 旧版本的服务端只检查是否存在，Feign 不发送值为空的 Header，所以值也使用 TOKEN
+            requestTemplate.header(DisableHandlerMethodReturnValue.HEADER_NAME, DisableHandlerMethodReturnValueHeader.TOKEN);
+        }
     }
 }
@@ -0,0 +1,374 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import lombok.Data;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spring Cloud OpenFeign 的 Decoder，不能发送 DisableHandlerMethodReturnValueRequestInterceptor 的 Header 时使用，
+ * 例如经过第三方网关、服务端新旧版本混合部署
+ *
+ * 使用方法 @FeignClient(value = "product-service", configuration = ...) 中注册 new HandlerMethodReturnValueDecoder(objectMapper)
+ *
+ * 读取信封时不先解析为 Map / ReturnValue 再转换 data：
+ *  (1) success / code / status 直接读取
+ *  (2) data 直接绑定为 Feign 方法声明的返回值类型
+ *  (3) 返回值类型为 Page 时，data 可以是 AntDesignProPage / AntDesignProCompactPage（list / current / pageSize / total），
+ *      也可以是 Spring Data 的 Page（content / number / size / totalElements），都转换为 PageImpl；
+ *      返回值类型为 Slice 时，data 可以是 AntDesignProSlice（hasNext）或者 Spring Data 的 Slice（last），转换为 SliceImpl
+ *  (4) success 为 false，或者没有 success 时 code 不是 2xx，抛出 DecodeException，包含 message / errorMessage
+ *      这里只处理 2xx 的响应：Feign 把 4xx / 5xx 交给 ErrorDecoder，失败信封由 HandlerMethodReturnValueErrorDecoder 读取
+ *  (5) 按照对象的形状判断是否为信封：只有信封的属性，至少有 success 或者 code，
+ *      success 为 boolean，code 为整数，status / message / errorMessage 为字符串。
+ *      服务端先写出 success / code：data 之前的属性都符合时就是信封，只有这些属性写入 TokenBuffer，data 直接从响应流绑定；
+ *      data 在前面，或者出现不符合的属性时才把整个对象读取到 TokenBuffer，
+ *      不是信封（服务端没有包装，例如 {"code":"SKU-1"}、{"status":"ACTIVE"}）时重放后绑定为返回值类型，
+ *      都不需要再次解析 JSON 文本
+ *  (6) 返回值类型本身是 ReturnValue 时，不拆开信封
+ *  (7) data 或者分页中的 list / content 为列式布局 {"columns":[...],"rows":[[...]]} 时（ColumnarEnvelopeRequestInterceptor），
+ *      每一行按 columns 还原为对象之后绑定，不经过 JSON 文本
+ *
+ * 与 BinaryEnvelopeRequestInterceptor 一起使用时，按照 Response 的 Content-Type 选择 CBOR / Smile 的 ObjectMapper，
+ * 例如 new HandlerMethodReturnValueDecoder(objectMapper, Map.of(new MediaType("application", "cbor"), new CBORMapper()))
+ */
+public class HandlerMethodReturnValueDecoder implements Decoder {
+
+    private final ObjectMapper objectMapper;
+    // key 为 Response 的 Content-Type
+    private final Map<MediaType, ObjectMapper> binaryObjectMappers;
+
+    public HandlerMethodReturnValueDecoder(ObjectMapper objectMapper) {
+        this(objectMapper, Map.of());
+    }
+
+    public HandlerMethodReturnValueDecoder(ObjectMapper objectMapper, Map<MediaType, ObjectMapper> binaryObjectMappers) {
+        Assert.notNull(objectMapper, "ObjectMapper must not be null.");
+        Assert.notNull(binaryObjectMappers, "Binary ObjectMapper map must not be null.");
+        this.objectMapper = objectMapper;
+        this.binaryObjectMappers = Map.copyOf(binaryObjectMappers);
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (response.status() == 204 || response.status() == 404 || response.body() == null) {
+            return Util.emptyValueOf(type);
+        }
+        ObjectMapper objectMapper = objectMapperOf(response);
+        JavaType javaType = objectMapper.getTypeFactory().constructType(type);
+        try (JsonParser parser = objectMapper.createParser(response.body().asInputStream())) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return Util.emptyValueOf(type);
+            }
+            if (token != JsonToken.START_OBJECT || ReturnValue.class.isAssignableFrom(javaType.getRawClass())) {
+                return objectMapper.readValue(parser, javaType);
+            }
+            // 服务端先写出 success / code，之后是 data：读到 data 时已经可以确定是信封，data 直接从 parser 绑定，
+            // 只有 data 之前的属性写入 TokenBuffer；data 在前面、或者不是信封时才缓冲整个对象
+            TokenBuffer buffer = new TokenBuffer(parser);
+            buffer.writeStartObject();
+            EnvelopeFields envelope = new EnvelopeFields();
+            boolean envelopeShape = true;
+            for (String fieldName = parser.nextFieldName(); fieldName != null; fieldName = parser.nextFieldName()) {
+                JsonToken valueToken = parser.nextToken();
+                if (envelopeShape && "data".equals(fieldName) && envelope.hasSuccessOrCode()) {
+                    envelope.data = valueToken == JsonToken.VALUE_NULL ? null : readData(objectMapper, parser, javaType);
+                    return readEnvelope(objectMapper, parser, envelope, type, javaType, response);
+                }
+                if (envelopeShape) {
+                    envelopeShape = envelope.read(fieldName, valueToken, parser);
+                }
+                buffer.writeFieldName(fieldName);
+                buffer.copyCurrentStructure(parser);
+            }
+            buffer.writeEndObject();
+            try (JsonParser replay = buffer.asParserOnFirstToken()) {
+                if (envelopeShape && envelope.hasSuccessOrCode()) {
+                    return readEnvelope(objectMapper, replay, new EnvelopeFields(), type, javaType, response);
+                }
+                // 不是信封，原样绑定为返回值类型
+                return objectMapper.readValue(replay, javaType);
+            }
+        }
+    }
+
+    /**
+     * 读取信封剩余的属性，parser 位于信封的 START_OBJECT 或者某个属性的最后一个 token。
+     * data 之后的属性只读取信封的属性，其他属性忽略
+     */
+    private Object readEnvelope(ObjectMapper objectMapper, JsonParser parser, EnvelopeFields envelope, Type type, JavaType javaType, Response response) throws IOException {
+        for (String fieldName = parser.nextFieldName(); fieldName != null; fieldName = parser.nextFieldName()) {
+            JsonToken token = parser.nextToken();
+            if ("data".equals(fieldName)) {
+                envelope.data = token == JsonToken.VALUE_NULL ? null : readData(objectMapper, parser, javaType);
+            } else if (!envelope.read(fieldName, token, parser)) {
+                parser.skipChildren();
+            }
+        }
+        if (Boolean.FALSE.equals(envelope.success) || (envelope.success == null && envelope.code != null && (envelope.code < 200 || envelope.code >= 300))) {
+            throw new DecodeException(response.status(),
+                    "Handler method return value is not successful: success=" + envelope.success + ", code=" + envelope.code +
+                            ", status=" + envelope.status + ", message=" + envelope.message,
+                    response.request());
+        }
+        return envelope.data != null ? envelope.data : Util.emptyValueOf(type);
+    }
+
+    private static Object readData(ObjectMapper objectMapper, JsonParser parser, JavaType javaType) throws IOException {
+        if (parser.currentToken() == JsonToken.START_OBJECT && (javaType.isCollectionLikeType() || javaType.isArrayType())) {
+            try (JsonParser rows = readColumnarRows(parser)) {
+                return objectMapper.readValue(rows, javaType);
+            }
+        }
+        if (javaType.getRawClass() == Page.class) {
+            JavaType pageDataType = objectMapper.getTypeFactory().constructParametricType(PageData.class, javaType.containedTypeOrUnknown(0));
+            PageData<?> pageData = objectMapper.readValue(parser, pageDataType);
+            return pageData.toPage();
+        }
+        if (javaType.getRawClass() == Slice.class) {
+            JavaType pageDataType = objectMapper.getTypeFactory().constructParametricType(PageData.class, javaType.containedTypeOrUnknown(0));
+            PageData<?> pageData = objectMapper.readValue(parser, pageDataType);
+            return pageData.toSlice();
+        }
+        return objectMapper.readValue(parser, javaType);
+    }
+
+    /**
+     * 把列式布局 {"columns":["id","name"],"rows":[[1,"a"],[2,"b"]]} 还原为 [{"id":1,"name":"a"},{"id":2,"name":"b"}]
+     * parser 位于 START_OBJECT，读取到对应的 END_OBJECT；返回的 JsonParser 位于 START_ARRAY
+     */
+    static JsonParser readColumnarRows(JsonParser parser) throws IOException {
+        List<String> columns = Collections.emptyList();
+        TokenBuffer buffer = new TokenBuffer(parser);
+        buffer.writeStartArray();
+        for (String fieldName = parser.nextFieldName(); fieldName != null; fieldName = parser.nextFieldName()) {
+            JsonToken token = parser.nextToken();
+            if ("columns".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                columns = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    columns.add(parser.getValueAsString());
+                }
+            } else if ("rows".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_ARRAY) {
+                    buffer.writeStartObject();
+                    for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                        if (i >= columns.size()) {
+                            throw new JsonParseException(parser, "Columnar row has more values than columns");
+                        }
+                        buffer.writeFieldName(columns.get(i));
+                        buffer.copyCurrentStructure(parser);
+                    }
+                    buffer.writeEndObject();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        buffer.writeEndArray();
+        return buffer.asParserOnFirstToken();
+    }
+
+    // PageData 的 list / content，可以是对象数组，也可以是列式布局
+    static class ColumnarListDeserializer extends JsonDeserializer<Object> implements ContextualDeserializer {
+        @Nullable
+        private final JavaType type;
+
+        ColumnarListDeserializer() {
+            this(null);
+        }
+
+        private ColumnarListDeserializer(@Nullable JavaType type) {
+            this.type = type;
+        }
+
+        @Override
+        public JsonDeserializer<?> createContextual(DeserializationContext ctxt, @Nullable BeanProperty property) {
+            return new ColumnarListDeserializer(property != null ? property.getType() : ctxt.getContextualType());
+        }
+
+        @Override
+        public Object deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            Assert.state(type != null, "ColumnarListDeserializer is not contextualized");
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                try (JsonParser rows = readColumnarRows(parser)) {
+                    return ctxt.readValue(rows, type);
+                }
+            }
+            return ctxt.readValue(parser, type);
+        }
+    }
+
+    /**
+     * 读取 4xx / 5xx 响应中的失败信封，供 HandlerMethodReturnValueErrorDecoder 使用，data 不绑定。
+     * 不是信封时返回 null
+     */
+    @Nullable
+    EnvelopeFields readErrorEnvelope(Response response, byte[] body) throws IOException {
+        try (JsonParser parser = objectMapperOf(response).createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            EnvelopeFields envelope = new EnvelopeFields();
+            for (String fieldName = parser.nextFieldName(); fieldName != null; fieldName = parser.nextFieldName()) {
+                if (!envelope.read(fieldName, parser.nextToken(), parser)) {
+                    return null;
+                }
+                parser.skipChildren();
+            }
+            return envelope.hasSuccessOrCode() ? envelope : null;
+        }
+    }
+
+    // SimpleReturnValue / AntDesignProReturnValue 的属性
+    static final class EnvelopeFields {
+        @Nullable
+        Boolean success;
+        @Nullable
+        Integer code;
+        @Nullable
+        String status;
+        @Nullable
+        String message;
+        @Nullable
+        Object data;
+        private boolean successOrCode;
+
+        boolean hasSuccessOrCode() {
+            return successOrCode;
+        }
+
+        /**
+         * 读取 data 以外的信封属性，parser 位于属性的值，不移动 parser。
+         * 返回 false 表示不是信封的属性，或者类型不符：success 为 boolean，code 为整数，status / message / errorMessage 为字符串
+         */
+        boolean read(String fieldName, JsonToken token, JsonParser parser) throws IOException {
+            boolean isNull = token == JsonToken.VALUE_NULL;
+            switch (fieldName) {
+                case "success" -> {
+                    if (!token.isBoolean() && !isNull) {
+                        return false;
+                    }
+                    success = isNull ? null : parser.getBooleanValue();
+                    successOrCode = true;
+                }
+                case "code" -> {
+                    if (token != JsonToken.VALUE_NUMBER_INT && !isNull) {
+                        return false;
+                    }
+                    code = isNull ? null : parser.getIntValue();
+                    successOrCode = true;
+                }
+                case "status", "message", "errorMessage" -> {
+                    if (token != JsonToken.VALUE_STRING && !isNull) {
+                        return false;
+                    }
+                    if (fieldName.equals("status")) {
+                        status = parser.getValueAsString();
+                    } else {
+                        message = parser.getValueAsString();
+                    }
+                }
+                case "data" -> {
+                }
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // 没有 Content-Type，或者不是 binaryObjectMappers 中的类型时使用 JSON
+    ObjectMapper objectMapperOf(Response response) {
+        if (binaryObjectMappers.isEmpty()) {
+            return objectMapper;
+        }
+        Collection<String> contentTypes = response.headers().get(HttpHeaders.CONTENT_TYPE);
+        if (contentTypes == null || contentTypes.isEmpty()) {
+            return objectMapper;
+        }
+        MediaType contentType = MediaType.parseMediaType(contentTypes.iterator().next());
+        for (Map.Entry<MediaType, ObjectMapper> entry : binaryObjectMappers.entrySet()) {
+            if (entry.getKey().isCompatibleWith(contentType)) {
+                return entry.getValue();
+            }
+        }
+        return objectMapper;
+    }
+
+    // AntDesignProPage / AntDesignProSlice 与 Spring Data Page / Slice 的 JSON，只读取构造 PageImpl / SliceImpl 需要的属性
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class PageData<T> {
+        // AntDesignProPage
+        @JsonDeserialize(using = ColumnarListDeserializer.class)
+        private List<T> list;
+        private Integer current;
+        private Integer pageSize;
+        private Long total;
+        // AntDesignProSlice
+        private Boolean hasNext;
+        // Page
+        @JsonDeserialize(using = ColumnarListDeserializer.class)
+        private List<T> content;
+        private Integer number;
+        private Integer size;
+        private Long totalElements;
+        // Slice
+        private Boolean last;
+
+        Page<T> toPage() {
+            List<T> elements = elements();
+            long totalElements = total != null ? total : this.totalElements != null ? this.totalElements : elements.size();
+            return new PageImpl<>(elements, pageable(), totalElements);
+        }
+
+        Slice<T> toSlice() {
+            boolean hasNext = this.hasNext != null ? this.hasNext : last != null && !last;
+            return new SliceImpl<>(elements(), pageable(), hasNext);
+        }
+
+        private List<T> elements() {
+            return list != null ? list : content != null ? content : Collections.emptyList();
+        }
+
+        private Pageable pageable() {
+            int page = current != null ? current : number != null ? number : 0;
+            int pageSize = this.pageSize != null ? this.pageSize : size != null ? size : 0;
+            return pageSize > 0 ? PageRequest.of(page, pageSize) : Pageable.unpaged();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import feign.FeignException;
+import feign.Response;
+import feign.RetryableException;
+import feign.Util;
+import feign.codec.ErrorDecoder;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Spring Cloud OpenFeign 的 ErrorDecoder，与 HandlerMethodReturnValueDecoder 一起使用
+ *
+ * Feign 把 4xx / 5xx 响应交给 ErrorDecoder，不会经过 Decoder，
+ * HandlerMethodReturnValueExceptionHandler 响应的失败信封在这里读取：
+ *  (1) 响应体是失败信封时，抛出 HandlerMethodReturnValueFeignException，包含信封中的 code、status、message
+ *  (2) 不是信封，或者 Feign 默认的 ErrorDecoder 返回 RetryableException（有 Retry-After）时，使用默认的结果
+ *
+ * 使用方法 @FeignClient(value = "product-service", configuration = ...) 中注册
+ *   HandlerMethodReturnValueDecoder decoder = new HandlerMethodReturnValueDecoder(objectMapper);
+ *   new HandlerMethodReturnValueErrorDecoder(decoder)
+ * 按照 Response 的 Content-Type 使用与 decoder 相同的 ObjectMapper（JSON / CBOR / Smile）
+ */
+public class HandlerMethodReturnValueErrorDecoder implements ErrorDecoder {
+    private final HandlerMethodReturnValueDecoder decoder;
+    private final ErrorDecoder delegate;
+
+    public HandlerMethodReturnValueErrorDecoder(HandlerMethodReturnValueDecoder decoder) {
+        this(decoder, new ErrorDecoder.Default());
+    }
+
+    public HandlerMethodReturnValueErrorDecoder(HandlerMethodReturnValueDecoder decoder, ErrorDecoder delegate) {
+        Assert.notNull(decoder, "HandlerMethodReturnValueDecoder must not be null.");
+        Assert.notNull(delegate, "ErrorDecoder must not be null.");
+        this.decoder = decoder;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Exception decode(String methodKey, Response response) {
+        if (response.body() == null) {
+            return delegate.decode(methodKey, response);
+        }
+        byte[] body;
+        try (InputStream inputStream = response.body().asInputStream()) {
+            body = Util.toByteArray(inputStream);
+        } catch (IOException e) {
+            return delegate.decode(methodKey, response);
+        }
+        // 响应体已经读取，默认的 ErrorDecoder 读取复制的响应
+        Response buffered = response.toBuilder().body(body).build();
+        Exception exception = delegate.decode(methodKey, buffered);
+        if (!(exception instanceof FeignException feignException) || exception instanceof RetryableException) {
+            return exception;
+        }
+        HandlerMethodReturnValueDecoder.EnvelopeFields envelope;
+        try {
+            envelope = decoder.readErrorEnvelope(buffered, body);
+        } catch (IOException e) {
+            return exception;
+        }
+        if (envelope == null) {
+            return exception;
+        }
+        String message = "[" + response.status() + "] during [" + response.request().httpMethod() + "] to [" +
+                response.request().url() + "] [" + methodKey + "]: code=" + envelope.code + ", status=" + envelope.status +
+                ", message=" + envelope.message;
+        return new HandlerMethodReturnValueFeignException(response.status(), message, response.request(), feignException,
+                body, response.headers(), envelope.code, envelope.status, envelope.message);
+    }
+}
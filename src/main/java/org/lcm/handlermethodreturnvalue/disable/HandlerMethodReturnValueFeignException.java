@@ -0,0 +1,51 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import feign.FeignException;
+import feign.Request;
+import org.springframework.lang.Nullable;
+
+import java.io.Serial;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 服务端以 4xx / 5xx 响应失败信封时，HandlerMethodReturnValueErrorDecoder 抛出的异常
+ *
+ * status() 为 HTTP 状态码，getCode() / getStatus() / getEnvelopeMessage() 为信封中的 code、status、message（errorMessage），
+ * Feign 默认的 FeignException（例如 FeignException.NotFound）为 cause
+ */
+public class HandlerMethodReturnValueFeignException extends FeignException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Nullable
+    private final Integer code;
+    @Nullable
+    private final String status;
+    @Nullable
+    private final String envelopeMessage;
+
+    public HandlerMethodReturnValueFeignException(int httpStatus, String message, Request request, FeignException cause,
+                                                  byte[] responseBody, Map<String, Collection<String>> responseHeaders,
+                                                  @Nullable Integer code, @Nullable String status, @Nullable String envelopeMessage) {
+        super(httpStatus, message, request, cause, responseBody, responseHeaders);
+        this.code = code;
+        this.status = status;
+        this.envelopeMessage = envelopeMessage;
+    }
+
+    @Nullable
+    public Integer getCode() {
+        return code;
+    }
+
+    @Nullable
+    public String getStatus() {
+        return status;
+    }
+
+    @Nullable
+    public String getEnvelopeMessage() {
+        return envelopeMessage;
+    }
+}
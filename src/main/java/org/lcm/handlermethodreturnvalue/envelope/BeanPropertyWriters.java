@@ -0,0 +1,94 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.BeanAsArraySerializer;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * BeanSerializer 在当前 @JsonView 下会写出的 BeanPropertyWriter，供逐个属性写出的列式布局、稀疏字段集使用
+ *
+ * BeanSerializerBase.properties() 返回的是没有按 View 过滤的全部属性，直接遍历会写出 View 隐藏的属性，
+ * 这里按 SerializerProvider.getActiveView() 过滤，规则与 Jackson 相同（没有 @JsonView 的属性看 DEFAULT_VIEW_INCLUSION）。
+ * 以下 Bean 无法逐个属性写出而不改变结果，返回 null，调用方应当使用 BeanSerializer 完整序列化：
+ *  (1) 有 @JsonFilter - 属性由 PropertyFilter 在请求时决定
+ *  (2) 有 @JsonAnyGetter、@JsonTypeInfo（或者默认类型）、Object Id、@JsonFormat(shape = ARRAY)
+ *  (3) 属性不是 BeanPropertyWriter
+ *
+ * 结果按 BeanSerializer 与 View 缓存，使用软引用，ObjectMapper 被回收时一同回收
+ */
+public final class BeanPropertyWriters {
+    private static final Map<Key, Optional<BeanPropertyWriter[]>> WRITERS = new ConcurrentReferenceHashMap<>();
+
+    private BeanPropertyWriters() {
+    }
+
+    @Nullable
+    public static BeanPropertyWriter[] of(BeanSerializerBase serializer, SerializerProvider serializers) throws JsonMappingException {
+        Key key = new Key(serializer, serializers.getActiveView());
+        Optional<BeanPropertyWriter[]> writers = WRITERS.get(key);
+        if (writers == null) {
+            writers = Optional.ofNullable(resolve(serializer, serializers));
+            WRITERS.putIfAbsent(key, writers);
+        }
+        return writers.orElse(null);
+    }
+
+    @Nullable
+    private static BeanPropertyWriter[] resolve(BeanSerializerBase serializer, SerializerProvider serializers) throws JsonMappingException {
+        if (serializer.usesObjectId() || serializer instanceof BeanAsArraySerializer) {
+            return null;
+        }
+        SerializationConfig config = serializers.getConfig();
+        JavaType type = serializers.constructType(serializer.handledType());
+        BeanDescription description = config.introspect(type);
+        if (description.findAnyGetter() != null ||
+                config.getAnnotationIntrospector().findFilterId(description.getClassInfo()) != null ||
+                serializers.findTypeSerializer(type) != null ||
+                serializers.findTypeSerializer(serializers.constructType(Object.class)) != null) {
+            return null;
+        }
+        Class<?> activeView = serializers.getActiveView();
+        boolean includeByDefault = config.isEnabled(MapperFeature.DEFAULT_VIEW_INCLUSION);
+        List<BeanPropertyWriter> writers = new ArrayList<>();
+        for (Iterator<PropertyWriter> it = serializer.properties(); it.hasNext(); ) {
+            if (!(it.next() instanceof BeanPropertyWriter writer)) {
+                return null;
+            }
+            if (activeView == null || isIncludedInView(writer, activeView, includeByDefault)) {
+                writers.add(writer);
+            }
+        }
+        return writers.toArray(new BeanPropertyWriter[0]);
+    }
+
+    private static boolean isIncludedInView(BeanPropertyWriter writer, Class<?> activeView, boolean includeByDefault) {
+        Class<?>[] views = writer.getViews();
+        if (views == null || views.length == 0) {
+            return includeByDefault;
+        }
+        for (Class<?> view : views) {
+            if (view.isAssignableFrom(activeView)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Key(BeanSerializerBase serializer, @Nullable Class<?> view) {
+    }
+}
@@ -0,0 +1,131 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 以 CBOR / Smile 写出 PreEncodedEnvelope，放在 MappingJackson2CborHttpMessageConverter / MappingJackson2SmileHttpMessageConverter 的前面
+ *
+ * Request Header 中的 Accept 为 application/cbor 或 application/x-jackson-smile 时，由 Spring MVC 的内容协商选中，
+ * 浏览器等 Accept 为 JSON 的客户端不受影响。
+ *
+ * 与 JSON 的 EnvelopeTemplate 相同，信封的常量部分按每种格式预先编码为字节：
+ * 用同一个 ObjectMapper 序列化 data 为占位值的 ReturnValue，以占位值的编码为界切分为 prefix 和 suffix。
+ * 每个请求写出 prefix 字节、用这个 ObjectMapper 序列化 data、写出 suffix 字节
+ *  (1) CBOR 的每个值都是自描述的，data 单独编码后直接拼接仍然是合法的 CBOR
+ *  (2) Smile 默认使用共享的属性名、字符串的回溯引用，单独编码的 data 会引用错误的位置，
+ *      因此 prefix / suffix / data 都关闭共享，data 不写出 Smile 头
+ */
+public class BinaryEnvelopeHttpMessageConverter extends AbstractHttpMessageConverter<PreEncodedEnvelope> {
+    public static final String CBOR = "CBOR";
+    public static final String SMILE = "Smile";
+
+    private final String formatName;
+    // 写出 prefix、data 为占位值的信封
+    private final ObjectWriter templateWriter;
+    // 写出 data，不关闭输出流
+    private final ObjectWriter dataWriter;
+    // key 为 JSON 的 EnvelopeTemplate，每个 PreEncodableReturnValueFactory 一个
+    private final Map<EnvelopeTemplate, byte[][]> binaryTemplates = new ConcurrentHashMap<>();
+
+    public BinaryEnvelopeHttpMessageConverter(AbstractJackson2HttpMessageConverter binaryConverter) {
+        super(binaryConverter.getSupportedMediaTypes().toArray(new MediaType[0]));
+        ObjectMapper objectMapper = binaryConverter.getObjectMapper();
+        this.formatName = objectMapper.getFactory().getFormatName();
+        Assert.isTrue(isSupportedFormat(this.formatName), "Unsupported format: " + this.formatName);
+        ObjectMapper dataMapper = objectMapper;
+        if (SMILE.equals(this.formatName)) {
+            objectMapper = SmileFeatures.withoutSharing(objectMapper, true);
+            dataMapper = SmileFeatures.withoutSharing(dataMapper, false);
+        }
+        this.templateWriter = objectMapper.writer();
+        this.dataWriter = dataMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public static boolean isSupportedFormat(String formatName) {
+        return CBOR.equals(formatName) || SMILE.equals(formatName);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PreEncodedEnvelope.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected PreEncodedEnvelope readInternal(Class<? extends PreEncodedEnvelope> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("BinaryEnvelopeHttpMessageConverter does not support reading", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(PreEncodedEnvelope envelope, HttpOutputMessage outputMessage) throws IOException {
+        byte[][] template = this.binaryTemplates.computeIfAbsent(envelope.getTemplate(), this::encodeTemplate);
+        OutputStream body = outputMessage.getBody();
+        body.write(template[0]);
+        this.dataWriter.writeValue(body, envelope.getData());
+        body.write(template[1]);
+        body.flush();
+    }
+
+    // [0] 为 prefix，[1] 为 suffix
+    private byte[][] encodeTemplate(EnvelopeTemplate envelopeTemplate) {
+        try {
+            byte[] bytes = this.templateWriter.writeValueAsBytes(envelopeTemplate.getFactory().createTemplate(EnvelopeTemplate.DATA_PLACEHOLDER));
+            byte[] placeholder = this.dataWriter.writeValueAsBytes(EnvelopeTemplate.DATA_PLACEHOLDER);
+            int index = indexOf(bytes, placeholder, 0);
+            if (index < 0 || indexOf(bytes, placeholder, index + 1) >= 0) {
+                throw new IllegalStateException("Can not locate data in " + this.formatName + " envelope template");
+            }
+            return new byte[][]{Arrays.copyOfRange(bytes, 0, index), Arrays.copyOfRange(bytes, index + placeholder.length, bytes.length)};
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not serialize " + this.formatName + " envelope template", e);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // jackson-dataformat-smile 是可选的依赖，只在格式为 Smile 时加载
+    // Smile 头在创建 SmileGenerator 时写出，共享与 Smile 头都只能在 SmileFactory 上配置
+    private static final class SmileFeatures {
+        private static ObjectMapper withoutSharing(ObjectMapper objectMapper, boolean writeHeader) {
+            SmileFactory smileFactory = ((SmileFactory) objectMapper.getFactory()).rebuild()
+                    .disable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                    .disable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                    .configure(SmileGenerator.Feature.WRITE_HEADER, writeHeader)
+                    .build();
+            return objectMapper.copyWith(smileFactory);
+        }
+    }
+}
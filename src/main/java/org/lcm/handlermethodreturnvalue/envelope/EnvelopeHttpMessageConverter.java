@@ -0,0 +1,97 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 把 ResponseBodyEmitter / SseEmitter 发送的每一个对象包装为 ReturnValue 再写出
+ *
+ * 放在 ResponseBodyEmitterReturnValueHandler 的 HttpMessageConverter 列表的最前面：
+ *  (1) SseEmitter 的 "data:"、"event:"、换行等 SSE 格式文本以 text/plain 发送，不包装，交给后面的 StringHttpMessageConverter
+ *  (2) 已经是 ReturnValue 的对象不包装
+ *  (3) 其他对象包装后由 MappingJackson2HttpMessageConverter 写出
+ *
+ * 信封的常量部分在创建时预先编码为字节（EnvelopeTemplate），每个事件只写出 prefix 字节、序列化 data、写出 suffix 字节，
+ * 除了 data 本身，不再为每个事件创建 ReturnValue 对象。
+ * ReturnValueFactory 不是 PreEncodableReturnValueFactory 时，每个事件调用 ReturnValueFactory.create()
+ */
+public class EnvelopeHttpMessageConverter implements HttpMessageConverter<Object> {
+    private final MappingJackson2HttpMessageConverter jsonConverter;
+    private final ReturnValueFactory<? extends ReturnValue> returnValueFactory;
+    // Handler 方法的返回值，即 ResponseBodyEmitter / SseEmitter
+    private final MethodParameter returnType;
+    // 为 null 时每个事件创建 ReturnValue 对象
+    @Nullable
+    private final byte[] prefix;
+    @Nullable
+    private final byte[] suffix;
+
+    public EnvelopeHttpMessageConverter(MappingJackson2HttpMessageConverter jsonConverter,
+                                        ReturnValueFactory<? extends ReturnValue> returnValueFactory,
+                                        MethodParameter returnType,
+                                        @Nullable EnvelopeTemplate envelopeTemplate) {
+        Assert.notNull(jsonConverter, "MappingJackson2HttpMessageConverter must not be null.");
+        Assert.isTrue(envelopeTemplate == null || returnValueFactory instanceof PreEncodableReturnValueFactory,
+                "EnvelopeTemplate requires a PreEncodableReturnValueFactory.");
+        this.jsonConverter = jsonConverter;
+        this.returnValueFactory = returnValueFactory;
+        this.returnType = returnType;
+        this.prefix = envelopeTemplate != null ? envelopeTemplate.getPrefix().asUnquotedUTF8() : null;
+        this.suffix = envelopeTemplate != null ? envelopeTemplate.getSuffix().asUnquotedUTF8() : null;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, @Nullable MediaType mediaType) {
+        if (mediaType != null && MediaType.TEXT_PLAIN.isCompatibleWith(mediaType)) {
+            // SSE 格式文本，或者指定以 text/plain 发送的对象
+            return false;
+        }
+        return !ReturnValue.class.isAssignableFrom(clazz) && this.jsonConverter.canWrite(clazz, mediaType);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return this.jsonConverter.getSupportedMediaTypes();
+    }
+
+    @Override
+    public Object read(Class<?> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("EnvelopeHttpMessageConverter does not support reading", inputMessage);
+    }
+
+    @Override
+    public void write(Object data, @Nullable MediaType contentType, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        if (this.prefix == null || this.suffix == null) {
+            this.jsonConverter.write(this.returnValueFactory.create(data, this.returnType, WrappingStrategy.DATA), contentType, outputMessage);
+            return;
+        }
+        Object value = ((PreEncodableReturnValueFactory<?>) this.returnValueFactory).createData(data, this.returnType, WrappingStrategy.DATA);
+        OutputStream body = outputMessage.getBody();
+        body.write(this.prefix);
+        // MappingJackson2HttpMessageConverter 写出之后会 flush，但不会关闭输出流
+        this.jsonConverter.write(value, contentType, outputMessage);
+        body.write(this.suffix);
+        body.flush();
+    }
+}
@@ -0,0 +1,67 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+
+/**
+ * 预先编码的信封常量部分
+ *
+ * 启动时用与 MappingJackson2HttpMessageConverter 相同的 ObjectMapper，序列化一个 data 为占位值的 ReturnValue，
+ * 以占位值为界切分为 prefix 和 suffix，例如
+ *   prefix: {"success":true,"data":
+ *   suffix: ,"code":200,"status":"OK"}
+ * 因为使用的是同一个 ObjectMapper，属性名、属性顺序、命名策略都与直接序列化 ReturnValue 相同，输出的字节完全一致。
+ *
+ * SerializedString 会缓存 UTF-8 编码后的字节，写出时只是一次字节拷贝。
+ */
+public final class EnvelopeTemplate {
+    // 占位值，不包含需要转义的字符
+    static final String DATA_PLACEHOLDER = "__handler_method_return_value_data__";
+
+    private final PreEncodableReturnValueFactory<?> factory;
+    private final SerializableString prefix;
+    private final SerializableString suffix;
+
+    private EnvelopeTemplate(PreEncodableReturnValueFactory<?> factory, String prefix, String suffix) {
+        this.factory = factory;
+        this.prefix = new SerializedString(prefix);
+        this.suffix = new SerializedString(suffix);
+        // 预先编码
+        this.prefix.asUnquotedUTF8();
+        this.suffix.asUnquotedUTF8();
+    }
+
+    public static EnvelopeTemplate of(ObjectMapper objectMapper, PreEncodableReturnValueFactory<?> returnValueFactory) {
+        try {
+            String json = objectMapper.writeValueAsString(returnValueFactory.createTemplate(DATA_PLACEHOLDER));
+            String placeholder = objectMapper.writeValueAsString(DATA_PLACEHOLDER);
+            int index = json.indexOf(placeholder);
+            if (index < 0 || json.indexOf(placeholder, index + 1) >= 0) {
+                throw new IllegalStateException("Can not locate data in envelope template: " + json);
+            }
+            return new EnvelopeTemplate(returnValueFactory, json.substring(0, index), json.substring(index + placeholder.length()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can not serialize envelope template", e);
+        }
+    }
+
+    // 用于为 CBOR / Smile 等其他格式预先编码，以及非 JSON 的 JsonGenerator 中创建完整的 ReturnValue
+    public PreEncodableReturnValueFactory<?> getFactory() {
+        return factory;
+    }
+
+    public SerializableString getPrefix() {
+        return prefix;
+    }
+
+    public SerializableString getSuffix() {
+        return suffix;
+    }
+
+    public int getEnvelopeBytes() {
+        return prefix.asUnquotedUTF8().length + suffix.asUnquotedUTF8().length;
+    }
+}
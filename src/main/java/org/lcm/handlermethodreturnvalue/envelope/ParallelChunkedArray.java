@@ -0,0 +1,37 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 代替很大的 List 作为 PreEncodedEnvelope 中的 data，由 ParallelChunkedSerializer 并行分块序列化
+ */
+public final class ParallelChunkedArray implements JsonSerializable {
+    private final List<?> list;
+    private final ParallelChunkedSerializer serializer;
+
+    ParallelChunkedArray(List<?> list, ParallelChunkedSerializer serializer) {
+        this.list = list;
+        this.serializer = serializer;
+    }
+
+    public List<?> getList() {
+        return list;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        serializer.write(list, gen, serializers);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        // 数组本身不写类型信息
+        serialize(gen, serializers);
+    }
+}
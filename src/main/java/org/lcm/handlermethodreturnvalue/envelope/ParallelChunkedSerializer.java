@@ -0,0 +1,367 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.impl.IndexedListSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并行分块序列化很大的 data 数组，只对 streaming-envelope（PreEncodedEnvelope）生效
+ *
+ * data 为元素个数不少于 threshold 的 List 时，包装为 ParallelChunkedArray：
+ *  (1) 按 chunkSize 切分为 subList，在 executor 中并发序列化到池化的缓冲区
+ *  (2) 请求线程按顺序把每一块的字节写出到响应，块之间写出 ,
+ *  (3) 同时进行中的块最多为 executor 并行度的两倍，内存占用与元素数量无关
+ *  (4) 默认使用专用的线程池：线程数固定、队列有界，队列满时在请求线程中序列化，不占用 ForkJoinPool.commonPool()，
+ *      destroy() 时关闭。使用 Executor 的构造器时，线程池由调用方管理
+ *  (5) 缓冲区池中的缓冲区总共不超过 maxPooledBytes，超过时用完的缓冲区直接丢弃
+ * 每一块使用与请求相同的 SerializationConfig（JsonView、FilterProvider、Feature）序列化 subList，
+ * 与 Jackson 串行序列化整个 List 的结果逐字节相同。
+ *
+ * 以下情况仍然串行序列化：不是 UTF-8 JSON（CBOR / Smile / Writer）、启用了缩进或者 WRAP_ROOT_VALUE、
+ * List 的序列化器不是 Jackson 默认的 IndexedListSerializer（例如注册了自定义的序列化器）、
+ * 第一个元素是 JPA 的 @Entity 或者 Hibernate 代理。
+ *
+ * 元素在 executor 的线程中序列化，请求线程的 LocaleContextHolder、RequestContextHolder 在序列化每一块时传递到 executor 的线程，
+ * 其他 ThreadLocal（例如 MDC、SecurityContextHolder）通过 TaskDecorator 传递，没有传递的 ThreadLocal 在 executor 的线程中为空。
+ * Hibernate 的 Session 不是线程安全的，不能这样传递：
+ * 并发地触发同一个 Session 中的延迟加载会破坏 Session 的状态，Open Session In View 也不起作用，
+ * 所以实体一律串行序列化；其他包含延迟加载属性的对象（例如包装了实体的 DTO）需要在返回之前完成加载
+ */
+public class ParallelChunkedSerializer implements DisposableBean {
+    public static final int DEFAULT_THRESHOLD = 10000;
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final long DEFAULT_MAX_POOLED_BYTES = 4L * 1024 * 1024;
+    // 超过这个大小的缓冲区用完之后不放回池中
+    private static final int MAX_POOLED_BUFFER_BYTES = 1024 * 1024;
+    // 按类名判断，不依赖 JPA / Hibernate
+    private static final String[] ENTITY_ANNOTATIONS = {"jakarta.persistence.Entity", "javax.persistence.Entity"};
+    private static final String HIBERNATE_PROXY = "org.hibernate.proxy.HibernateProxy";
+    private static final ClassValue<Boolean> PERSISTENT_CLASSES = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return isPersistent(type);
+        }
+    };
+
+    private final int threshold;
+    private final int chunkSize;
+    private final Executor executor;
+    private final int parallelism;
+    private final int maxInFlightChunks;
+    private final BlockingQueue<ChunkBuffer> bufferPool;
+    private final long maxPooledBytes;
+    // 池中缓冲区的容量之和
+    private final AtomicLong pooledBytes = new AtomicLong();
+    // 这里创建的线程池，destroy() 时关闭
+    @Nullable
+    private final ThreadPoolExecutor dedicatedExecutor;
+
+    // 专用的线程池，threads 个线程，最多 queueCapacity 个等待中的块，taskDecorator 在请求线程中包装每一块的任务
+    public ParallelChunkedSerializer(int threshold, int chunkSize, int threads, int queueCapacity, long maxPooledBytes,
+                                     @Nullable TaskDecorator taskDecorator) {
+        this(threshold, chunkSize, newDedicatedExecutor(threads, queueCapacity), threads, maxPooledBytes, taskDecorator);
+    }
+
+    public ParallelChunkedSerializer(int threshold, int chunkSize, Executor executor, int parallelism) {
+        this(threshold, chunkSize, executor, parallelism, DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    public ParallelChunkedSerializer(int threshold, int chunkSize, Executor executor, int parallelism, long maxPooledBytes) {
+        this(threshold, chunkSize, executor, parallelism, maxPooledBytes, null);
+    }
+
+    private ParallelChunkedSerializer(int threshold, int chunkSize, Executor executor, int parallelism, long maxPooledBytes,
+                                      @Nullable TaskDecorator taskDecorator) {
+        Assert.isTrue(threshold > 0, "threshold must be positive.");
+        Assert.isTrue(chunkSize > 0, "chunkSize must be positive.");
+        Assert.notNull(executor, "Executor must not be null.");
+        Assert.isTrue(maxPooledBytes >= 0, "maxPooledBytes must not be negative.");
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+        this.dedicatedExecutor = executor instanceof DedicatedExecutor dedicated ? dedicated : null;
+        this.executor = taskDecorator == null ? executor : task -> executor.execute(taskDecorator.decorate(task));
+        this.parallelism = parallelism;
+        this.maxInFlightChunks = Math.max(2, parallelism * 2);
+        this.maxPooledBytes = maxPooledBytes;
+        this.bufferPool = new ArrayBlockingQueue<>(this.maxInFlightChunks);
+    }
+
+    private static ThreadPoolExecutor newDedicatedExecutor(int threads, int queueCapacity) {
+        Assert.isTrue(threads > 0, "threads must be positive.");
+        Assert.isTrue(queueCapacity > 0, "queueCapacity must be positive.");
+        return new DedicatedExecutor(threads, queueCapacity);
+    }
+
+    @Override
+    public void destroy() {
+        if (dedicatedExecutor != null) {
+            dedicatedExecutor.shutdown();
+        }
+    }
+
+    // 不满足条件时返回原来的值，并行度小于 2 时（例如单核的容器）分块只有额外的开销，不启用
+    public Object apply(Object wrappedReturnValue) {
+        if (parallelism > 1 && wrappedReturnValue instanceof PreEncodedEnvelope envelope &&
+                envelope.getData() instanceof List<?> list && list instanceof RandomAccess && list.size() >= threshold) {
+            return new PreEncodedEnvelope(envelope.getTemplate(), new ParallelChunkedArray(list, this));
+        }
+        return wrappedReturnValue;
+    }
+
+    void write(List<?> list, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (!isByteIdentical(list, gen, serializers)) {
+            serializers.defaultSerializeValue(list, gen);
+            return;
+        }
+        ObjectMapper objectMapper = (ObjectMapper) gen.getCodec();
+        ObjectWriter writer = new ChunkWriter(objectMapper, serializers.getConfig());
+        GeneratorSettings settings = new GeneratorSettings(gen.getFeatureMask(), gen.getCharacterEscapes(), gen.getHighestEscapedChar());
+        OutputStream out = (OutputStream) gen.getOutputTarget();
+        RequestContext context = new RequestContext(LocaleContextHolder.getLocaleContext(), RequestContextHolder.getRequestAttributes());
+
+        gen.writeStartArray(list, list.size());
+        // 把 [ 写入输出流，不 flush 到 Servlet 容器
+        boolean flushPassedToStream = gen.isEnabled(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        gen.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        gen.flush();
+        gen.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, flushPassedToStream);
+
+        int chunks = (list.size() + chunkSize - 1) / chunkSize;
+        Deque<CompletableFuture<ChunkBuffer>> inFlight = new ArrayDeque<>(maxInFlightChunks);
+        int submitted = 0;
+        try {
+            for (int i = 0; i < chunks; i++) {
+                while (submitted < chunks && inFlight.size() < maxInFlightChunks) {
+                    int from = submitted * chunkSize;
+                    List<?> chunk = list.subList(from, Math.min(from + chunkSize, list.size()));
+                    inFlight.add(CompletableFuture.supplyAsync(() -> serializeChunk(chunk, objectMapper, writer, settings, context), executor));
+                    submitted++;
+                }
+                ChunkBuffer buffer = join(inFlight.poll());
+                try {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    buffer.writeElementsTo(out);
+                } finally {
+                    release(buffer);
+                }
+            }
+        } finally {
+            // 写出失败时，还没有开始的块不再序列化
+            for (CompletableFuture<ChunkBuffer> future : inFlight) {
+                future.cancel(false);
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    // 每一块序列化为 [e1,e2,...]，与串行时 IndexedListSerializer 写出的元素相同
+    private ChunkBuffer serializeChunk(List<?> chunk, ObjectMapper objectMapper, ObjectWriter writer, GeneratorSettings settings,
+                                       RequestContext context) {
+        // 队列满时在请求线程中执行，恢复为执行之前的值
+        LocaleContext previousLocaleContext = LocaleContextHolder.getLocaleContext();
+        RequestAttributes previousRequestAttributes = RequestContextHolder.getRequestAttributes();
+        LocaleContextHolder.setLocaleContext(context.localeContext());
+        RequestContextHolder.setRequestAttributes(context.requestAttributes());
+        try {
+            return serializeChunk(chunk, objectMapper, writer, settings);
+        } finally {
+            LocaleContextHolder.setLocaleContext(previousLocaleContext);
+            RequestContextHolder.setRequestAttributes(previousRequestAttributes);
+        }
+    }
+
+    private ChunkBuffer serializeChunk(List<?> chunk, ObjectMapper objectMapper, ObjectWriter writer, GeneratorSettings settings) {
+        ChunkBuffer buffer = acquire();
+        try (JsonGenerator chunkGen = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+            chunkGen.overrideStdFeatures(settings.featureMask(), ~0);
+            if (settings.characterEscapes() != null) {
+                chunkGen.setCharacterEscapes(settings.characterEscapes());
+            }
+            if (settings.highestEscapedChar() > 0) {
+                chunkGen.setHighestNonEscapedChar(settings.highestEscapedChar());
+            }
+            writer.writeValue(chunkGen, chunk);
+        } catch (IOException e) {
+            release(buffer);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            release(buffer);
+            throw e;
+        }
+        return buffer;
+    }
+
+    private static boolean isByteIdentical(List<?> list, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        SerializationConfig config = serializers.getConfig();
+        if (!(gen instanceof UTF8JsonGenerator) || !(gen.getOutputTarget() instanceof OutputStream) ||
+                !(gen.getCodec() instanceof ObjectMapper) || gen.getPrettyPrinter() != null ||
+                config.isEnabled(SerializationFeature.INDENT_OUTPUT) || config.isEnabled(SerializationFeature.WRAP_ROOT_VALUE)) {
+            return false;
+        }
+        Object first = list.get(0);
+        if (first != null && PERSISTENT_CLASSES.get(first.getClass())) {
+            return false;
+        }
+        JsonSerializer<Object> listSerializer = serializers.findValueSerializer(list.getClass());
+        JsonSerializer<Object> chunkSerializer = serializers.findValueSerializer(list.subList(0, 1).getClass());
+        return listSerializer.getClass() == IndexedListSerializer.class && chunkSerializer.getClass() == IndexedListSerializer.class;
+    }
+
+    // 实体类或者它的子类（Hibernate 生成的代理、字节码增强的子类）
+    private static boolean isPersistent(Class<?> type) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Annotation annotation : current.getDeclaredAnnotations()) {
+                for (String entityAnnotation : ENTITY_ANNOTATIONS) {
+                    if (annotation.annotationType().getName().equals(entityAnnotation)) {
+                        return true;
+                    }
+                }
+            }
+            for (Class<?> implemented : current.getInterfaces()) {
+                if (implemented.getName().equals(HIBERNATE_PROXY)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ChunkBuffer join(CompletableFuture<ChunkBuffer> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private ChunkBuffer acquire() {
+        ChunkBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            return new ChunkBuffer();
+        }
+        pooledBytes.addAndGet(-buffer.capacity());
+        return buffer;
+    }
+
+    private void release(ChunkBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity > MAX_POOLED_BUFFER_BYTES) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        buffer.reset();
+        if (!bufferPool.offer(buffer)) {
+            pooledBytes.addAndGet(-capacity);
+        }
+    }
+
+    // 池中缓冲区的容量之和
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    // 请求线程的 LocaleContext 与 RequestAttributes，序列化每一块时设置到 executor 的线程
+    private record RequestContext(@Nullable LocaleContext localeContext, @Nullable RequestAttributes requestAttributes) {
+    }
+
+    // 请求的 JsonGenerator 的设置，在请求线程中读取，每一块的 JsonGenerator 使用相同的设置
+    private record GeneratorSettings(int featureMask, @Nullable CharacterEscapes characterEscapes, int highestEscapedChar) {
+    }
+
+    // 写出时去掉每一块的 [ 和 ]，不复制字节
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+        private ChunkBuffer() {
+            super(8192);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+
+        private void writeElementsTo(OutputStream out) throws IOException {
+            out.write(buf, 1, count - 2);
+        }
+    }
+
+    // 固定线程数、有界队列，队列满时在提交的线程（请求线程）中执行
+    private static final class DedicatedExecutor extends ThreadPoolExecutor {
+        private DedicatedExecutor(int threads, int queueCapacity) {
+            super(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    daemonThreadFactory(), new CallerRunsPolicy());
+            allowCoreThreadTimeOut(true);
+        }
+
+        private static CustomizableThreadFactory daemonThreadFactory() {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("hmrv-serialization-");
+            threadFactory.setDaemon(true);
+            return threadFactory;
+        }
+    }
+
+    // 使用请求的 SerializationConfig，ObjectWriter 的构造器是 protected
+    private static final class ChunkWriter extends ObjectWriter {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private ChunkWriter(ObjectMapper objectMapper, SerializationConfig config) {
+            super(objectMapper, config);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * 代替 ReturnValue 交给 RequestResponseBodyMethodProcessor 写出
+ *
+ * Jackson 对 JsonSerializable 直接调用 serialize()，不会反射 ReturnValue 的属性：
+ *  (1) 写出预先编码的 prefix 字节
+ *  (2) 序列化 data
+ *  (3) 写出预先编码的 suffix 字节
+ *
+ * prefix / suffix 是 JSON 文本，只能写入 JSON 的 JsonGenerator。
+ * CBOR / Smile 由 BinaryEnvelopeHttpMessageConverter 使用各自格式预先编码的字节写出，不经过这里；
+ * 其他 JsonGenerator（例如 TokenBuffer、XML）以及启用了缩进（INDENT_OUTPUT）时创建完整的 ReturnValue 序列化
+ */
+public final class PreEncodedEnvelope implements JsonSerializable {
+    private final EnvelopeTemplate template;
+    private final Object data;
+
+    public PreEncodedEnvelope(EnvelopeTemplate template, Object data) {
+        this.template = template;
+        this.data = data;
+    }
+
+    public EnvelopeTemplate getTemplate() {
+        return template;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        // 启用缩进时 data 会作为根值缩进，与缩进之后的 prefix / suffix 不一致
+        if (!(gen instanceof JsonGeneratorImpl) || gen.getPrettyPrinter() != null) {
+            serializers.defaultSerializeValue(template.getFactory().createTemplate(data), gen);
+            return;
+        }
+        gen.writeRaw(template.getPrefix());
+        serializers.defaultSerializeValue(data, gen);
+        gen.writeRaw(template.getSuffix());
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        // 信封本身不写类型信息
+        serialize(gen, serializers);
+    }
+}
@@ -0,0 +1,109 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.util.Streamable;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.BaseStream;
+import java.util.stream.Stream;
+
+/**
+ * 代替 Stream / Iterator / Streamable 作为信封中的 data
+ *
+ * Controller 方法的返回值不再收集为 List，而是在序列化时逐个元素写出为 JSON 数组：
+ *  (1) 写出 [
+ *  (2) 逐个元素序列化，每 flushElements 个元素 flush 一次，已经写出的字节交给容器发送，不在内存中累积
+ *  (3) 写出 ]，关闭数据源
+ * 内存占用与元素数量无关，只与单个元素的大小和 JsonGenerator / Servlet 的缓冲区有关。
+ *
+ * 数据源只能读取一次，HandlerMethodReturnValueAnnotatedHandler 在写出之后调用 close()，
+ * 没有写出（例如写出前抛出异常）时也会关闭数据源，例如 JPA 返回的 Stream 持有的数据库游标。
+ * 关闭数据源失败时只记录日志，不抛出异常：close() 在 try-with-resources 和 serialize() 的 finally 中调用，
+ * 抛出的异常会代替写出时的异常，响应已经写出时也不能再改变结果。
+ */
+public final class StreamingDataArray implements JsonSerializable, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingDataArray.class);
+    private final Iterator<?> iterator;
+    @Nullable
+    private final AutoCloseable source;
+    private final int flushElements;
+    private boolean closed;
+
+    private StreamingDataArray(Iterator<?> iterator, @Nullable AutoCloseable source, int flushElements) {
+        this.iterator = iterator;
+        this.source = source;
+        this.flushElements = flushElements;
+    }
+
+    // 是否可以逐个元素写出
+    // Page / Slice / Window / Sort 也是 Streamable，但是它们本身就是完整的数据，按照原来的方式序列化
+    public static boolean isStreamable(@Nullable Object value) {
+        return value instanceof BaseStream || value instanceof Iterator ||
+                (value instanceof Streamable &&
+                        !(value instanceof Slice) && !(value instanceof Window) && !(value instanceof Sort));
+    }
+
+    // flushElements <= 0 时不主动 flush，缓冲区满时才写出
+    public static StreamingDataArray of(Object value, int flushElements) {
+        Assert.isTrue(isStreamable(value), "Value must be a Stream, an Iterator or a Streamable.");
+        if (value instanceof BaseStream<?, ?> stream) {
+            return new StreamingDataArray(stream.iterator(), stream, flushElements);
+        }
+        if (value instanceof Iterator<?> iterator) {
+            return new StreamingDataArray(iterator, iterator instanceof AutoCloseable closeable ? closeable : null, flushElements);
+        }
+        Stream<?> stream = ((Streamable<?>) value).stream();
+        return new StreamingDataArray(stream.iterator(), stream, flushElements);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        try {
+            gen.writeStartArray();
+            int count = 0;
+            while (iterator.hasNext()) {
+                serializers.defaultSerializeValue(iterator.next(), gen);
+                if (flushElements > 0 && ++count == flushElements) {
+                    gen.flush();
+                    count = 0;
+                }
+            }
+            gen.writeEndArray();
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        // 数组本身不写类型信息
+        serialize(gen, serializers);
+    }
+
+    // 可以重复调用，不抛出异常
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (source != null) {
+            try {
+                source.close();
+            } catch (Exception e) {
+                logger.warn("Can not close streaming data source", e);
+            }
+        }
+    }
+}
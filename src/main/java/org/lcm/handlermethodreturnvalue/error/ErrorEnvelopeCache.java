@@ -0,0 +1,95 @@
+package org.lcm.handlermethodreturnvalue.error;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 序列化之后的失败信封
+ *
+ * 只缓存 HandlerMethodReturnValueException 的失败信封：预期之内的业务失败通常定义为常量，
+ * 同一个 ReturnValueFactory、code、status、message 只序列化一次，之后直接写出缓存的字节，
+ * 下游服务不可用等大量相同的失败不再为每个请求创建 ReturnValue、经过 Jackson 序列化。
+ * ErrorResponseException 的 message（ProblemDetail 的 detail）是任意文本，每次序列化，不进入缓存（serialize()）
+ *
+ * HandlerMethodReturnValueException 的 message 也可能包含请求相关的内容，
+ * 所以缓存是按访问顺序的 LinkedHashMap（LRU），最多保存 maxSize 个，超过时淘汰最久没有使用的信封，
+ * 常见的失败始终留在缓存中。maxSize 小于等于 0 时不缓存
+ */
+public class ErrorEnvelopeCache {
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    // 按访问顺序，由自身加锁
+    private final LinkedHashMap<Key, byte[]> envelopes = new LinkedHashMap<>(16, 0.75f, true);
+
+    public ErrorEnvelopeCache(ObjectMapper objectMapper) {
+        this(objectMapper, DEFAULT_MAX_SIZE);
+    }
+
+    public ErrorEnvelopeCache(ObjectMapper objectMapper, int maxSize) {
+        Assert.notNull(objectMapper, "ObjectMapper must not be null.");
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+    }
+
+    // ReturnValueFactory.createError() 返回 null 时返回 null
+    @Nullable
+    public byte[] get(ReturnValueFactory<? extends ReturnValue> factory, int code, String status, @Nullable String message) {
+        if (maxSize <= 0) {
+            return serialize(factory, code, status, message);
+        }
+        Key key = new Key(factory, code, status, message);
+        synchronized (envelopes) {
+            byte[] envelope = envelopes.get(key);
+            if (envelope != null) {
+                return envelope;
+            }
+        }
+        // 序列化不加锁，同时序列化同一个信封时结果相同
+        byte[] envelope = serialize(factory, code, status, message);
+        if (envelope == null) {
+            return null;
+        }
+        synchronized (envelopes) {
+            envelopes.putIfAbsent(key, envelope);
+            if (envelopes.size() > maxSize) {
+                Iterator<byte[]> eldest = envelopes.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return envelope;
+    }
+
+    // 不缓存，ReturnValueFactory.createError() 返回 null 时返回 null
+    @Nullable
+    public byte[] serialize(ReturnValueFactory<? extends ReturnValue> factory, int code, String status, @Nullable String message) {
+        ReturnValue returnValue = factory.createError(code, status, message);
+        if (returnValue == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(returnValue);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can not serialize error envelope", e);
+        }
+    }
+
+    public int size() {
+        synchronized (envelopes) {
+            return envelopes.size();
+        }
+    }
+
+    // ReturnValueFactory 没有重写 equals()，按实例比较
+    private record Key(ReturnValueFactory<?> factory, int code, String status, @Nullable String message) {
+    }
+}
@@ -0,0 +1,66 @@
+package org.lcm.handlermethodreturnvalue.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ProblemDetail;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.ErrorResponse;
+
+import java.io.Serial;
+
+/**
+ * 预期之内的业务失败，例如参数不合法、资源不存在、下游服务不可用
+ * 由 HandlerMethodReturnValueExceptionHandler 包装为 success 为 false 的 ReturnValue
+ *
+ * 不填充异常栈，也不记录 suppressed 异常，创建的开销与普通对象相同。
+ * 没有异常栈，同一个实例可以被反复抛出，常见的失败可以定义为常量，例如
+ *   public static final HandlerMethodReturnValueException PRODUCT_NOT_FOUND =
+ *           new HandlerMethodReturnValueException(HttpStatus.NOT_FOUND, "product not found");
+ * 序列化之后的失败信封按 code、status、message 缓存（ErrorEnvelopeCache），message 尽量不包含请求相关的内容
+ *
+ * 实现 ErrorResponse，没有包装时（Request Header 关闭了包装、Handler 方法没有 @HandlerMethodReturnValue）
+ * 由 Spring MVC 的 DefaultHandlerExceptionResolver 按 httpStatus 响应
+ */
+public class HandlerMethodReturnValueException extends RuntimeException implements ErrorResponse {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // 响应的 HTTP 状态码
+    private final HttpStatusCode httpStatus;
+    // 信封中的 code 与 status
+    private final int code;
+    private final String status;
+
+    public HandlerMethodReturnValueException(HttpStatus httpStatus, @Nullable String message) {
+        this(httpStatus, httpStatus.value(), httpStatus.name(), message);
+    }
+
+    public HandlerMethodReturnValueException(HttpStatusCode httpStatus, int code, String status, @Nullable String message) {
+        super(message, null, false, false);
+        Assert.notNull(httpStatus, "HttpStatusCode must not be null.");
+        Assert.notNull(status, "status must not be null.");
+        this.httpStatus = httpStatus;
+        this.code = code;
+        this.status = status;
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() {
+        return httpStatus;
+    }
+
+    // 只在没有包装时使用，每次创建
+    @Override
+    public ProblemDetail getBody() {
+        return ProblemDetail.forStatusAndDetail(httpStatus, getMessage());
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
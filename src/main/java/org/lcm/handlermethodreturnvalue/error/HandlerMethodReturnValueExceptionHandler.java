@@ -0,0 +1,152 @@
+package org.lcm.handlermethodreturnvalue.error;
+
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandlerConfig;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlan;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlans;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.ErrorResponseException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 把 @HandlerMethodReturnValue 标记的 Handler 方法抛出的失败包装为 success 为 false 的 ReturnValue，
+ * 与成功时的信封格式相同，使用与成功时相同的 ReturnValueFactory（包括 @HandlerMethodReturnValue(factory = ...)）
+ *
+ * 处理的异常
+ *  (1) HandlerMethodReturnValueException - 业务失败，不填充异常栈
+ *  (2) ErrorResponseException - 例如 ResponseStatusException，code 为 HTTP 状态码，message 为 ProblemDetail 的 detail
+ *
+ * 以下情况重新抛出原来的异常，由 Spring MVC 默认处理
+ *  (1) Handler 方法没有 @HandlerMethodReturnValue
+ *  (2) Request Header 关闭了包装
+ *  (3) ReturnValueFactory.createError() 返回 null
+ *
+ * 有 MappingJackson2HttpMessageConverter 并且客户端最优先接受 JSON 时，失败信封由 ErrorEnvelopeCache 序列化，直接写出 JSON 字节，
+ * 只有 HandlerMethodReturnValueException 的失败信封进入缓存；
+ * Accept 优先 CBOR / Smile 等其他格式、或者不接受 JSON 时，创建 ReturnValue 交给 HttpMessageConverter 按 Accept 协商（可能为 406）
+ * 客户端使用 Feign 时，HandlerMethodReturnValueErrorDecoder 读取失败信封
+ * 顺序为最低优先级，使用者自己的 @ControllerAdvice 优先
+ */
+@RestControllerAdvice
+public class HandlerMethodReturnValueExceptionHandler {
+    private final HandlerMethodReturnValueAnnotatedHandlerConfig handlerConfig;
+    // 没有 JSON 的 ObjectMapper 时为 null，每次创建 ReturnValue 交给 HttpMessageConverter 序列化
+    @Nullable
+    private final ErrorEnvelopeCache errorEnvelopeCache;
+
+    public HandlerMethodReturnValueExceptionHandler(HandlerMethodReturnValueAnnotatedHandlerConfig handlerConfig,
+                                                    @Nullable ErrorEnvelopeCache errorEnvelopeCache) {
+        Assert.notNull(handlerConfig, "HandlerMethodReturnValueAnnotatedHandlerConfig must not be null.");
+        this.handlerConfig = handlerConfig;
+        this.errorEnvelopeCache = errorEnvelopeCache;
+    }
+
+    @ExceptionHandler(HandlerMethodReturnValueException.class)
+    public ResponseEntity<?> handleHandlerMethodReturnValueException(HandlerMethodReturnValueException ex, NativeWebRequest webRequest) throws HandlerMethodReturnValueException {
+        return handleError(ex, ex.getStatusCode(), HttpHeaders.EMPTY, ex.getCode(), ex.getStatus(), ex.getMessage(), true, webRequest);
+    }
+
+    @ExceptionHandler(ErrorResponseException.class)
+    public ResponseEntity<?> handleErrorResponseException(ErrorResponseException ex, NativeWebRequest webRequest) throws ErrorResponseException {
+        HttpStatusCode httpStatus = ex.getStatusCode();
+        HttpStatus resolved = HttpStatus.resolve(httpStatus.value());
+        String status = resolved != null ? resolved.name() : String.valueOf(httpStatus.value());
+        // detail 是任意文本，不缓存
+        return handleError(ex, httpStatus, ex.getHeaders(), httpStatus.value(), status, ex.getBody().getDetail(), false, webRequest);
+    }
+
+    private <E extends Exception> ResponseEntity<?> handleError(E ex, HttpStatusCode httpStatus, HttpHeaders headers,
+                                                               int code, String status, @Nullable String message,
+                                                               boolean cacheable, NativeWebRequest webRequest) throws E {
+        ReturnValueFactory<? extends ReturnValue> factory = resolveReturnValueFactory(webRequest);
+        if (factory == null) {
+            // 重新抛出同一个异常，ExceptionHandlerExceptionResolver 交给后面的 HandlerExceptionResolver
+            throw ex;
+        }
+        if (errorEnvelopeCache != null && isJsonPreferred(webRequest)) {
+            byte[] envelope = cacheable ?
+                    errorEnvelopeCache.get(factory, code, status, message) :
+                    errorEnvelopeCache.serialize(factory, code, status, message);
+            if (envelope == null) {
+                throw ex;
+            }
+            return ResponseEntity.status(httpStatus).headers(headers).contentType(MediaType.APPLICATION_JSON).body(envelope);
+        }
+        ReturnValue returnValue = factory.createError(code, status, message);
+        if (returnValue == null) {
+            throw ex;
+        }
+        return ResponseEntity.status(httpStatus).headers(headers).body(returnValue);
+    }
+
+    /**
+     * 客户端是否最优先接受 application/json：没有 Accept、或者按 quality 与具体程度排序之后第一个类型兼容 JSON，
+     * 并且没有以 q=0 排除 JSON。Accept 不合法时返回 false，交给 HttpMessageConverter 处理
+     */
+    static boolean isJsonPreferred(NativeWebRequest webRequest) {
+        String[] accept = webRequest.getHeaderValues(HttpHeaders.ACCEPT);
+        if (accept == null || accept.length == 0) {
+            return true;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(Arrays.asList(accept));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        if (mediaTypes.isEmpty()) {
+            return true;
+        }
+        MediaType preferred = null;
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                    return false;
+                }
+            } else if (preferred == null || mediaType.getQualityValue() > preferred.getQualityValue() ||
+                    (mediaType.getQualityValue() == preferred.getQualityValue() && mediaType.isMoreSpecific(preferred))) {
+                preferred = mediaType;
+            }
+        }
+        return preferred != null && preferred.isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    // 与成功时相同：包装计划中的 ReturnValueFactory，运行时注册的 Handler 方法没有包装计划时使用默认的 ReturnValueFactory
+    @Nullable
+    private ReturnValueFactory<? extends ReturnValue> resolveReturnValueFactory(NativeWebRequest webRequest) {
+        Object handler = webRequest.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return null;
+        }
+        DisableHandlerMethodReturnValueHeader disableHeader = handlerConfig.getDisableHeader();
+        if (disableHeader != null && disableHeader.existsInHttpRequestHeader(webRequest)) {
+            return null;
+        }
+        Method method = handlerMethod.getMethod();
+        WrappingPlans wrappingPlans = handlerConfig.getWrappingPlans();
+        WrappingPlan wrappingPlan = wrappingPlans != null ? wrappingPlans.get(method) : null;
+        if (wrappingPlan != null) {
+            return wrappingPlan.getFactory();
+        }
+        return handlerConfig.getHandlerMethodReturnValueAnnotatedHandlerMethodCache().contains(method) ?
+                handlerConfig.getReturnValueFactory() : null;
+    }
+}
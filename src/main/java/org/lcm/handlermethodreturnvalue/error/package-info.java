@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.error;
+
+import org.springframework.lang.NonNullApi;
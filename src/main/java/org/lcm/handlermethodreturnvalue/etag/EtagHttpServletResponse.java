@@ -0,0 +1,164 @@
+package org.lcm.handlermethodreturnvalue.etag;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * 写出信封时计算 ETag，与 If-None-Match 相同时响应 304
+ *
+ * 与 ShallowEtagHeaderFilter 不同，不缓存整个响应：
+ *  (1) 写出的字节在经过时更新 CRC32C 与 CRC32（JDK 内置，由 CPU 指令加速），合并为 64 位的 ETag，
+ *      不需要再遍历一次，也不需要 MD5
+ *  (2) ETag 必须在响应头中，先暂存不超过 maxBufferBytes 的字节，写出完成之后比较 If-None-Match，
+ *      相同时丢弃暂存的字节响应 304，不同时设置 ETag、Content-Length 后写出
+ *  (3) 超过 maxBufferBytes 时写出已经暂存的字节，之后直接写出，这个响应没有 ETag，例如很大的 Stream 返回值
+ *
+ * 暂存期间 flush() / flushBuffer() 不写出，避免提交响应头。
+ * 已经有 ETag 的响应不处理，例如 Handler 方法调用了 WebRequest.checkNotModified(version)
+ */
+public final class EtagHttpServletResponse extends HttpServletResponseWrapper {
+    private final HttpServletRequest request;
+    private final int maxBufferBytes;
+    private EtagOutputStream outputStream;
+
+    private EtagHttpServletResponse(HttpServletRequest request, HttpServletResponse response, int maxBufferBytes) {
+        super(response);
+        this.request = request;
+        this.maxBufferBytes = maxBufferBytes;
+    }
+
+    // 只处理 GET / HEAD，maxBufferBytes 小于等于 0 或者已经有 ETag 时返回 null
+    @Nullable
+    public static EtagHttpServletResponse wrapIfApplicable(HttpServletRequest request, HttpServletResponse response, int maxBufferBytes) {
+        if (maxBufferBytes <= 0 || response.getHeader(HttpHeaders.ETAG) != null ||
+                !(HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod()))) {
+            return null;
+        }
+        return new EtagHttpServletResponse(request, response, maxBufferBytes);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new EtagOutputStream(super.getOutputStream(), maxBufferBytes);
+        }
+        return outputStream;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (outputStream == null || outputStream.buffer == null) {
+            super.flushBuffer();
+        }
+    }
+
+    // 写出完成之后调用，比较 If-None-Match，写出暂存的字节
+    public void finish() throws IOException {
+        EtagOutputStream stream = this.outputStream;
+        if (stream == null || stream.buffer == null) {
+            return;
+        }
+        ByteArrayOutputStream buffer = stream.buffer;
+        stream.buffer = null;
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        if (response.getStatus() == HttpStatus.OK.value() && response.getHeader(HttpHeaders.ETAG) == null) {
+            String etag = stream.etag();
+            // 相同时设置 304，不同时设置 ETag
+            if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+                return;
+            }
+        }
+        response.setContentLength(buffer.size());
+        buffer.writeTo(stream.delegate);
+        stream.delegate.flush();
+    }
+
+    private static final class EtagOutputStream extends ServletOutputStream {
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        private final ServletOutputStream delegate;
+        private final int maxBufferBytes;
+        private final CRC32C crc32c = new CRC32C();
+        private final CRC32 crc32 = new CRC32();
+        // 为 null 时不再暂存，直接写出
+        @Nullable
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+        private EtagOutputStream(ServletOutputStream delegate, int maxBufferBytes) {
+            this.delegate = delegate;
+            this.maxBufferBytes = maxBufferBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteArrayOutputStream buffer = this.buffer;
+            if (buffer == null) {
+                delegate.write(b, off, len);
+                return;
+            }
+            if (buffer.size() + len > maxBufferBytes) {
+                // 超过暂存的上限，放弃 ETag
+                this.buffer = null;
+                buffer.writeTo(delegate);
+                delegate.write(b, off, len);
+                return;
+            }
+            buffer.write(b, off, len);
+            crc32c.update(b, off, len);
+            crc32.update(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer == null) {
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                delegate.close();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+
+        private String etag() {
+            long hash = (crc32c.getValue() << 32) | crc32.getValue();
+            char[] chars = new char[18];
+            chars[0] = '"';
+            for (int i = 0; i < 16; i++) {
+                chars[16 - i] = HEX[(int) (hash >>> (i * 4)) & 0xF];
+            }
+            chars[17] = '"';
+            return new String(chars);
+        }
+    }
+}
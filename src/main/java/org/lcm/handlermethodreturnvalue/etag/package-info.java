@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.etag;
+
+import org.springframework.lang.NonNullApi;
@@ -0,0 +1,35 @@
+package org.lcm.handlermethodreturnvalue.factory;
+
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.springframework.core.MethodParameter;
+
+/**
+ * 信封中除了 data 以外的字段都是常量的 ReturnValueFactory
+ * 例如 {"success":true,"data":...,"code":200,"status":"OK"}
+ *
+ * 常量部分可以在启动时预先编码为字节，每次请求只需要序列化 data，
+ * 不需要再创建 ReturnValue 对象，也不需要 Jackson 反射 ReturnValue 的属性
+ */
+public interface PreEncodableReturnValueFactory<T extends ReturnValue> extends ReturnValueFactory<T> {
+
+    // For HandlerMethodReturnValueHandler
+    // 返回信封中 data 字段的值，必须与 create() 创建的 ReturnValue 中的 data 相同
+    Object createData(Object valueReturnedFromHandlerMethod, MethodParameter returnType);
+
+    // For HandlerMethodReturnValueHandler
+    // strategy 为启动时 resolveStrategy() 确定的包装方式
+    default Object createData(Object valueReturnedFromHandlerMethod, MethodParameter returnType, WrappingStrategy strategy) {
+        return createData(valueReturnedFromHandlerMethod, returnType);
+    }
+
+    // For HandlerMethodReturnValueResultHandler
+    // createData() 是否原样返回这种包装方式的值。为 true 时 WebFlux 中的 Flux 可以逐个元素写出为 data 数组，
+    // 否则需要收集为 List，再调用 createData()
+    default boolean isIdentityData(WrappingStrategy strategy) {
+        return false;
+    }
+
+    // For EnvelopeTemplate
+    // 返回一个 data 为给定值的 ReturnValue，用来预先编码信封的常量部分
+    T createTemplate(Object data);
+}
@@ -3,15 +3,36 @@ package org.lcm.handlermethodreturnvalue.factory;
 
 import org.lcm.handlermethodreturnvalue.model.ReturnValue;
 import org.springframework.core.MethodParameter;
+import org.springframework.lang.Nullable;
 
 public interface ReturnValueFactory<T extends ReturnValue> {
 
     // For HandlerMethodReturnValueHandler
     T create(Object valueReturnedFromHandlerMethod, MethodParameter returnType);
 
+    // For HandlerMethodReturnValueHandler
+    // strategy 为启动时 resolveStrategy() 确定的包装方式，请求时不需要再判断
+    default T create(Object valueReturnedFromHandlerMethod, MethodParameter returnType, WrappingStrategy strategy) {
+        return create(valueReturnedFromHandlerMethod, returnType);
+    }
+
     // For HandlerMethodReturnValueHandler
     default void configReturnValue(T returnValue, Object valueReturnedFromHandlerMethod, MethodParameter returnType){
         // do nothing
         // allow subclass to customize
     }
+
+    // For WrappingPlanCompiler
+    // 启动时对每个 Handler 方法调用一次
+    default WrappingStrategy resolveStrategy(MethodParameter returnType) {
+        return WrappingStrategy.DATA;
+    }
+
+    // For HandlerMethodReturnValueExceptionHandler
+    // 返回失败的 ReturnValue，相同的参数必须返回相同的内容，序列化之后会被缓存
+    // 返回 null 表示不包装失败，由 Spring MVC 默认处理
+    @Nullable
+    default T createError(int code, String status, @Nullable String message) {
+        return null;
+    }
 }
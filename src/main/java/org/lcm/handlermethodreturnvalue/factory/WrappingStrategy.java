@@ -0,0 +1,18 @@
+package org.lcm.handlermethodreturnvalue.factory;
+
+/**
+ * Controller 方法返回值的包装方式
+ * 对于同一个 Handler 方法是固定的，启动时由 ReturnValueFactory.resolveStrategy() 确定
+ */
+public enum WrappingStrategy {
+    // 不包装，直接交给 RequestResponseBodyMethodProcessor
+    PASSTHROUGH,
+    // 包装为 data
+    DATA,
+    // Page 包装为分页
+    PAGE,
+    // Slice 包装为不需要 COUNT 的分页
+    SLICE,
+    // Window 包装为 keyset / offset 滚动的分页
+    WINDOW
+}
@@ -1,32 +1,117 @@
 package org.lcm.handlermethodreturnvalue.factory.impl;
 
-import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProCompactPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProPage;
 import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProReturnValue;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProSlice;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProWindow;
 import org.springframework.core.MethodParameter;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
 
-import java.util.Objects;
+/**
+ * Ant Design Pro 格式的 ReturnValue
+ *  (1) Page - compactPage 为 false 时为 AntDesignProPage，同时包含 Ant Design Pro 与 Spring Data Page 的属性；
+ *      为 true 时为 AntDesignProCompactPage，只包含 list / current / pageSize / total
+ *  (2) Slice - AntDesignProSlice，查询时不需要 COUNT
+ *  (3) Window - AntDesignProWindow，keyset / offset 滚动查询
+ */
+public class AntDesignProReturnValueFactory implements PreEncodableReturnValueFactory<AntDesignProReturnValue> {
+    private final boolean compactPage;
+
+    public AntDesignProReturnValueFactory() {
+        this(false);
+    }
+
+    public AntDesignProReturnValueFactory(boolean compactPage) {
+        this.compactPage = compactPage;
+    }
+
+    public boolean isCompactPage() {
+        return compactPage;
+    }
 
-public class AntDesignProReturnValueFactory implements ReturnValueFactory<AntDesignProReturnValue> {
     @Override
     public AntDesignProReturnValue create(Object valueReturnedFromHandlerMethod, MethodParameter returnType) {
+        return create(valueReturnedFromHandlerMethod, returnType, resolveStrategy(returnType));
+    }
+
+    @Override
+    public AntDesignProReturnValue create(Object valueReturnedFromHandlerMethod, MethodParameter returnType, WrappingStrategy strategy) {
         AntDesignProReturnValue returnValue = new AntDesignProReturnValue();
-        configReturnValue(returnValue, valueReturnedFromHandlerMethod, returnType);
+        returnValue.setData(createData(valueReturnedFromHandlerMethod, returnType, strategy));
+        configConstants(returnValue);
         return returnValue;
     }
 
     @Override
     public void configReturnValue(AntDesignProReturnValue returnValue, Object valueReturnedFromHandlerMethod, MethodParameter returnType) {
+        returnValue.setData(createData(valueReturnedFromHandlerMethod, returnType));
+        configConstants(returnValue);
+    }
 
-        if (Objects.requireNonNull(returnType.getMethod()).getReturnType() == Page.class){
+    @Override
+    public WrappingStrategy resolveStrategy(MethodParameter returnType) {
+        // 启动时为 Handler 方法声明的类型（异步返回值为异步结果的类型），请求时为返回值的运行时类型
+        Class<?> type = returnType.getNestedParameterType();
+        if (Page.class.isAssignableFrom(type)){
             // 可以判断returnType是否为Page<? extends Entity>
-            returnValue.setPage((Page<?>) valueReturnedFromHandlerMethod);
+            return WrappingStrategy.PAGE;
+        } else if (Slice.class.isAssignableFrom(type)) {
+            // Page 也是 Slice，先判断 Page
+            return WrappingStrategy.SLICE;
+        } else if (Window.class.isAssignableFrom(type)) {
+            return WrappingStrategy.WINDOW;
         } else {
             // 非 Page 返回值
-            returnValue.setData(valueReturnedFromHandlerMethod);
+            return WrappingStrategy.DATA;
+        }
+    }
+
+    @Override
+    public Object createData(Object valueReturnedFromHandlerMethod, MethodParameter returnType) {
+        return createData(valueReturnedFromHandlerMethod, returnType, resolveStrategy(returnType));
+    }
+
+    @Override
+    public Object createData(Object valueReturnedFromHandlerMethod, MethodParameter returnType, WrappingStrategy strategy) {
+        if (valueReturnedFromHandlerMethod == null) {
+            return null;
         }
+        return switch (strategy) {
+            case PAGE -> compactPage ? new AntDesignProCompactPage((Page<?>) valueReturnedFromHandlerMethod)
+                    : new AntDesignProPage((Page<?>) valueReturnedFromHandlerMethod);
+            case SLICE -> new AntDesignProSlice((Slice<?>) valueReturnedFromHandlerMethod);
+            case WINDOW -> new AntDesignProWindow((Window<?>) valueReturnedFromHandlerMethod);
+            default -> valueReturnedFromHandlerMethod;
+        };
+    }
+
+    @Override
+    public boolean isIdentityData(WrappingStrategy strategy) {
+        // 分页转换为 Ant Design Pro 的格式，其他原样返回
+        return strategy == WrappingStrategy.DATA;
+    }
+
+    @Override
+    public AntDesignProReturnValue createError(int code, String status, @Nullable String message) {
+        return new AntDesignProReturnValue(false, null, code, status, message);
+    }
+
+    @Override
+    public AntDesignProReturnValue createTemplate(Object data) {
+        AntDesignProReturnValue returnValue = new AntDesignProReturnValue();
+        returnValue.setData(data);
+        configConstants(returnValue);
+        return returnValue;
+    }
 
+    private void configConstants(AntDesignProReturnValue returnValue) {
         returnValue.setSuccess(true);
         returnValue.setStatus(HttpStatus.OK.name()); // "ok" for Ant-Design-Pro
         returnValue.setCode(HttpStatus.OK.value());
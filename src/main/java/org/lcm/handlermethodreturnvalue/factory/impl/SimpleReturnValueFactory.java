@@ -1,12 +1,14 @@
 package org.lcm.handlermethodreturnvalue.factory.impl;
 
 
-import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
 import org.lcm.handlermethodreturnvalue.model.impl.SimpleReturnValue;
 import org.springframework.core.MethodParameter;
 import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
 
-public class SimpleReturnValueFactory implements ReturnValueFactory<SimpleReturnValue> {
+public class SimpleReturnValueFactory implements PreEncodableReturnValueFactory<SimpleReturnValue> {
 
     @Override
     public SimpleReturnValue create(Object valueReturnedFromHandlerMethod, MethodParameter returnType) {
@@ -22,4 +24,26 @@ public class SimpleReturnValueFactory implements ReturnValueFactory<SimpleReturn
         returnValue.setStatus(HttpStatus.OK.name()); // "ok" for Ant-Design-Pro
         returnValue.setCode(HttpStatus.OK.value());
     }
+
+    @Override
+    public Object createData(Object valueReturnedFromHandlerMethod, MethodParameter returnType) {
+        return valueReturnedFromHandlerMethod;
+    }
+
+    @Override
+    public boolean isIdentityData(WrappingStrategy strategy) {
+        return true;
+    }
+
+    @Override
+    public SimpleReturnValue createError(int code, String status, @Nullable String message) {
+        return new SimpleReturnValue(false, null, code, status, message);
+    }
+
+    @Override
+    public SimpleReturnValue createTemplate(Object data) {
+        SimpleReturnValue returnValue = new SimpleReturnValue();
+        configReturnValue(returnValue, data, null);
+        return returnValue;
+    }
 }
@@ -1,20 +1,48 @@
 package org.lcm.handlermethodreturnvalue.handler;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
 import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
-import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.envelope.ParallelChunkedSerializer;
+import org.lcm.handlermethodreturnvalue.envelope.PreEncodedEnvelope;
+import org.lcm.handlermethodreturnvalue.envelope.StreamingDataArray;
+import org.lcm.handlermethodreturnvalue.etag.EtagHttpServletResponse;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
 import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.jfr.ByteCountingWebRequest;
+import org.lcm.handlermethodreturnvalue.jfr.HandlerSelectionEvent;
+import org.lcm.handlermethodreturnvalue.jfr.ReturnValueFactoryEvent;
+import org.lcm.handlermethodreturnvalue.jfr.ReturnValueWriteEvent;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMetrics;
 import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlan;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlans;
+import org.lcm.handlermethodreturnvalue.projection.FieldProjection;
+import org.lcm.handlermethodreturnvalue.projection.FieldProjections;
+import org.lcm.handlermethodreturnvalue.responsecache.ResponseCacheCapture;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
 import org.springframework.web.method.support.ModelAndViewContainer;
 import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
 
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
 /**
  简单代理模式 - 或者包装模式
  使用自定义的 HandlerMethodReturnValueHandler 代理 RequestResponseBodyMethodProcessor
@@ -26,23 +54,71 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBody
  RequestResponseBodyHandlerMethodReturnValueHandler 并不是@Bean等方式被加入到容器中的。
  * */
 public class HandlerMethodReturnValueAnnotatedHandler implements HandlerMethodReturnValueHandler {
+    public static final int DEFAULT_STREAMING_FLUSH_ELEMENTS = 1000;
     // 被代理的对象 -
     // 这是 HandlerMethodReturnValueHandler 的实现类之一，这个主要用来处理返回 JSON 的情况。
     private final RequestResponseBodyMethodProcessor requestResponseBodyMethodProcessor;
     // 缓存
     private final HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache;
     private final ReturnValueFactory<? extends ReturnValue> returnValueFactory;
+    // 预先编码的信封常量部分，为 null 时不启用
+    @Nullable
+    private final EnvelopeTemplate envelopeTemplate;
+    // 启动时生成的包装计划，为 null 或者没有计划的方法使用 returnValueFactory
+    @Nullable
+    private final WrappingPlans wrappingPlans;
+    // 检查 Request Header 中是否包含 DISABLE 字段
+    private final DisableHandlerMethodReturnValueHeader disableHeader;
+    // Stream / Iterator / Streamable 逐个元素写出时，每多少个元素 flush 一次
+    private final int streamingFlushElements;
+    // 包装的指标，为 NOOP 时不计时
+    private final HandlerMethodReturnValueMetrics metrics;
+    // 计算 ETag 时最多暂存多少字节，小于等于 0 时不计算
+    private final int etagBufferBytes;
+    // 稀疏字段集，为 null 时不启用
+    @Nullable
+    private final FieldProjections fieldProjections;
+    // 列式布局，为 null 时不启用
+    @Nullable
+    private final ColumnarLayout columnarLayout;
+    // 很大的 data 数组并行分块序列化，为 null 时不启用
+    @Nullable
+    private final ParallelChunkedSerializer parallelChunkedSerializer;
 
     // Spring官方 - 依赖注入，始终以构造器模式注入
     // Spring官方 - 必需的依赖，始终以 Assert 检查
     public HandlerMethodReturnValueAnnotatedHandler(
             RequestResponseBodyMethodProcessor requestResponseBodyMethodProcessor,
-            HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache,
+            @Nullable HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache,
             ReturnValueFactory<? extends ReturnValue> returnValueFactory) {
+        this(requestResponseBodyMethodProcessor, handlerMethodReturnValueAnnotatedHandlerMethodCache, returnValueFactory,
+                new HandlerMethodReturnValueAnnotatedHandlerSettings());
+    }
+
+    // 可选的配置由 HandlerMethodReturnValueAnnotatedHandlerSettings 提供，创建时复制
+    public HandlerMethodReturnValueAnnotatedHandler(
+            RequestResponseBodyMethodProcessor requestResponseBodyMethodProcessor,
+            @Nullable HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache,
+            ReturnValueFactory<? extends ReturnValue> returnValueFactory,
+            HandlerMethodReturnValueAnnotatedHandlerSettings settings) {
         this.returnValueFactory = returnValueFactory;
         Assert.notNull(requestResponseBodyMethodProcessor, "RequestResponseBodyMethodProcessor must not be null.");
+        Assert.notNull(settings, "HandlerMethodReturnValueAnnotatedHandlerSettings must not be null.");
+        Assert.isTrue(settings.getEnvelopeTemplate() == null || returnValueFactory instanceof PreEncodableReturnValueFactory,
+                "EnvelopeTemplate requires a PreEncodableReturnValueFactory.");
         this.requestResponseBodyMethodProcessor = requestResponseBodyMethodProcessor;
         this.handlerMethodReturnValueAnnotatedHandlerMethodCache = handlerMethodReturnValueAnnotatedHandlerMethodCache;
+        this.envelopeTemplate = settings.getEnvelopeTemplate();
+        this.wrappingPlans = settings.getWrappingPlans();
+        Assert.notNull(settings.getDisableHeader(), "DisableHandlerMethodReturnValueHeader must not be null.");
+        this.disableHeader = settings.getDisableHeader();
+        this.streamingFlushElements = settings.getStreamingFlushElements();
+        Assert.notNull(settings.getMetrics(), "HandlerMethodReturnValueMetrics must not be null.");
+        this.metrics = settings.getMetrics();
+        this.etagBufferBytes = settings.getEtagBufferBytes();
+        this.fieldProjections = settings.getFieldProjections();
+        this.columnarLayout = settings.getColumnarLayout();
+        this.parallelChunkedSerializer = settings.getParallelChunkedSerializer();
     }
 
     /**
@@ -55,16 +131,18 @@ public class HandlerMethodReturnValueAnnotatedHandler implements HandlerMethodRe
      */
 
     // 这个处理器是否支持相应的返回值类型
+    // JFR HandlerSelectionEvent 不启用时 begin() / end() 为空操作
     @Override
     public boolean supportsReturnType(MethodParameter returnType) {
-        /*
-         * 检查 Request Header 中是否包含 DISABLE 字段
-         * 如果有，则不会再包装
-         */
-        if (DisableHandlerMethodReturnValue.existsInHttpRequestHeader()){
-            return false;
-        }
+        HandlerSelectionEvent event = new HandlerSelectionEvent();
+        event.begin();
+        boolean supported = supports(returnType);
+        event.end(returnType, supported);
+        return supported;
+    }
 
+    private boolean supports(MethodParameter returnType) {
+        // Request Header 中的 DISABLE 字段在 handleReturnValue() 中检查，这里只与 HandlerMethod 有关
         if (this.handlerMethodReturnValueAnnotatedHandlerMethodCache != null) {
             // 使用缓存
             return this.handlerMethodReturnValueAnnotatedHandlerMethodCache.contains(returnType.getMethod());
@@ -92,20 +170,221 @@ public class HandlerMethodReturnValueAnnotatedHandler implements HandlerMethodRe
             (1) String - 正常包装
             (2) void - 正常包装
             (3) ReturnValue - 已经包装，不需要重复包装
-            (4) Resource - 不包装
+            (4) Resource / byte[] / InputStream - 不包装，按照运行时的值判断，直接写出
+                Tomcat 支持 sendfile 时，文件类型的 Resource 由 ZeroCopyResourceHttpMessageConverter 零拷贝写出
+            (5) ResponseEntity / StreamingResponseBody - 不会到达这里，
+                HandlerMethodReturnValueHandlerComposite 按运行时类型选择，排在前面的 HttpEntityMethodProcessor /
+                StreamingResponseBodyReturnValueHandler 先处理
+            (6) CompletableFuture / DeferredResult / Callable / WebAsyncTask - 不会阻塞等待结果，
+                由 Spring MVC 的异步 handler 开始异步处理，Servlet 线程立即释放；
+                Callable / WebAsyncTask 在 spring.mvc.async 配置的 AsyncTaskExecutor 中执行。
+                异步结果在 ASYNC dispatch 中到达这里，returnType 仍然是原来的 Handler 方法（ConcurrentResultMethodParameter），
+                参数类型为异步结果的运行时类型，与同步返回值相同地包装
+            (7) Stream / Iterator / Streamable - 不收集为 List，包装为 StreamingDataArray，写出时逐个元素序列化，
+                写出之后关闭数据源
     * */
     @Override
     public void handleReturnValue(@Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
 
-        if (returnValue instanceof ReturnValue || returnType instanceof Resource){
-            // 如果 Controller 方法的返回值已经是ReturnValue类型的数据，则不再进行包装。
-            // 如果 Controller 方法的返回值是 Resource 类型的资源数据，则不进行包装。
+        if (returnValue == null && isResponseCommitted(webRequest)) {
+            // 流式返回值（ResponseBodyEmitter / SseEmitter / Flux<ServerSentEvent>）结束后的 ASYNC dispatch，
+            // 结果为 null，事件已经由 HandlerMethodReturnValueEmitterHandler 包装并写出，响应已经提交，不能再写出信封
+            mavContainer.setRequestHandled(true);
+            return;
+        }
+
+        if (returnValue instanceof Resource || returnValue instanceof byte[] || returnValue instanceof InputStream) {
+            // 二进制数据不包装，也不经过 JSON 序列化
+            Object body = returnValue instanceof InputStream inputStream ? new InputStreamResource(inputStream) : returnValue;
+            handlePassthroughReturnValue(body, returnType, mavContainer, webRequest);
+            return;
+        }
+
+        if (StreamingDataArray.isStreamable(returnValue)) {
+            // 写出时逐个元素序列化，无论是否写出都关闭数据源
+            try (StreamingDataArray data = StreamingDataArray.of(returnValue, this.streamingFlushElements)) {
+                handleDataReturnValue(data, returnType, mavContainer, webRequest);
+            }
+            return;
+        }
+        handleDataReturnValue(returnValue, returnType, mavContainer, webRequest);
+    }
+
+    private void handleDataReturnValue(@Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+
+        /*
+         * 检查 Request Header 中是否包含 DISABLE 字段
+         * 如果有，则不会再包装
+         * 使用传入的 webRequest，不经过 RequestContextHolder，每个请求只检查一次
+         */
+        if (this.disableHeader.existsInHttpRequestHeader(webRequest)) {
+            Method method = returnType.getMethod();
+            if (method != null) {
+                this.metrics.recordDisabled(method);
+            }
             this.requestResponseBodyMethodProcessor.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+
+        WrappingPlan wrappingPlan = this.wrappingPlans != null ? this.wrappingPlans.get(returnType.getMethod()) : null;
+        if (wrappingPlan != null) {
+            // 直接执行启动时生成的包装计划
+            handleReturnValue(wrappingPlan, returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+
+        if (returnValue instanceof ReturnValue){
+            // 如果 Controller 方法的返回值已经是ReturnValue类型的数据，则不再进行包装。
+            handlePassthroughReturnValue(returnValue, returnType, mavContainer, webRequest);
+        } else if (this.envelopeTemplate != null && returnValue != null) {
+            // 不创建 ReturnValue 对象，预先编码的信封常量部分 + data 直接写出
+            // returnValue 为 null 时仍然走下面的分支，以便遵守 ObjectMapper 对 null 的配置（例如 NON_NULL）
+            ReturnValueFactoryEvent factoryEvent = new ReturnValueFactoryEvent();
+            factoryEvent.begin();
+            long factoryStart = startTimer();
+            Object data = ((PreEncodableReturnValueFactory<?>) returnValueFactory).createData(returnValue, returnType);
+            factoryEvent.end(returnType, returnValue, returnValueFactory);
+            handleWrappedReturnValue(new PreEncodedEnvelope(envelopeTemplate, data), factoryStart, returnType, mavContainer, webRequest);
         } else {
             // 将 returnValue 包装为 ReturnValue 对象
+            ReturnValueFactoryEvent factoryEvent = new ReturnValueFactoryEvent();
+            factoryEvent.begin();
+            long factoryStart = startTimer();
             ReturnValue newReturnValue = returnValueFactory.create(returnValue, returnType);
+            factoryEvent.end(returnType, returnValue, returnValueFactory);
             // 被代理对象执行操作
-            this.requestResponseBodyMethodProcessor.handleReturnValue(newReturnValue, returnType, mavContainer, webRequest);
+            handleWrappedReturnValue(newReturnValue, factoryStart, returnType, mavContainer, webRequest);
         }
     }
+
+    private static boolean isResponseCommitted(NativeWebRequest webRequest) {
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        return response != null && response.isCommitted();
+    }
+
+    private void handleReturnValue(WrappingPlan wrappingPlan, @Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        WrappingStrategy strategy = wrappingPlan.getStrategy();
+        EnvelopeTemplate template = wrappingPlan.getEnvelopeTemplate();
+
+        if (strategy == WrappingStrategy.PASSTHROUGH || returnValue instanceof ReturnValue) {
+            handlePassthroughReturnValue(returnValue, returnType, mavContainer, webRequest);
+        } else if (template != null && returnValue != null) {
+            ReturnValueFactoryEvent factoryEvent = new ReturnValueFactoryEvent();
+            factoryEvent.begin();
+            long factoryStart = startTimer();
+            Object data = ((PreEncodableReturnValueFactory<?>) wrappingPlan.getFactory()).createData(returnValue, returnType, strategy);
+            factoryEvent.end(returnType, returnValue, wrappingPlan.getFactory());
+            handleWrappedReturnValue(new PreEncodedEnvelope(template, data), factoryStart, returnType, mavContainer, webRequest);
+        } else {
+            ReturnValueFactoryEvent factoryEvent = new ReturnValueFactoryEvent();
+            factoryEvent.begin();
+            long factoryStart = startTimer();
+            ReturnValue newReturnValue = wrappingPlan.getFactory().create(returnValue, returnType, strategy);
+            factoryEvent.end(returnType, returnValue, wrappingPlan.getFactory());
+            handleWrappedReturnValue(newReturnValue, factoryStart, returnType, mavContainer, webRequest);
+        }
+    }
+
+    private void handlePassthroughReturnValue(@Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        Method method = returnType.getMethod();
+        if (method != null) {
+            this.metrics.recordPassthrough(method);
+        }
+        this.requestResponseBodyMethodProcessor.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+    }
+
+    // 写出包装之后的值，记录 ReturnValueFactory 与写出的耗时
+    private void handleWrappedReturnValue(Object wrappedReturnValue, long factoryStart, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        HttpServletResponse nativeResponse = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (nativeResponse != null) {
+            addVary(nativeResponse, this.columnarLayout, this.fieldProjections);
+        }
+        // 请求中有字段列表时，只序列化 data 中的这些字段；否则客户端要求列式布局时，data 中的集合按列写出
+        FieldProjection projection = null;
+        if (this.fieldProjections != null && returnType.getMethod() != null) {
+            projection = this.fieldProjections.resolve(webRequest, returnType.getMethod());
+        }
+        if (projection != null) {
+            wrappedReturnValue = projection.project(wrappedReturnValue);
+        } else if (this.columnarLayout != null && this.columnarLayout.isRequested(webRequest)) {
+            wrappedReturnValue = this.columnarLayout.apply(wrappedReturnValue);
+        }
+        if (this.parallelChunkedSerializer != null) {
+            wrappedReturnValue = this.parallelChunkedSerializer.apply(wrappedReturnValue);
+        }
+        // JFR ReturnValueWriteEvent 或者指标启用时统计写出的字节数，在最里层统计，ETag 相同响应 304 时丢弃的字节不计入；
+        // ByteCountingWebRequest 每个线程复用，不为每个请求分配对象
+        ReturnValueWriteEvent writeEvent = new ReturnValueWriteEvent();
+        Method method = returnType.getMethod();
+        boolean recordMetrics = this.metrics != HandlerMethodReturnValueMetrics.NOOP && method != null;
+        ByteCountingWebRequest countingWebRequest = writeEvent.isEnabled() || recordMetrics ? ByteCountingWebRequest.bind(webRequest) : null;
+        try {
+            NativeWebRequest writeWebRequest = countingWebRequest != null ? countingWebRequest : webRequest;
+            // @HandlerMethodReturnValueCache 没有命中缓存时，复制写出的字节放入缓存
+            ResponseCacheCapture responseCacheCapture = (ResponseCacheCapture) webRequest.getAttribute(ResponseCacheCapture.ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+            if (responseCacheCapture != null) {
+                writeWebRequest = responseCacheCapture.wrap(writeWebRequest);
+            }
+            // 写出时计算 ETag，在 ResponseCacheCapture 的里面，缓存的是 ETag 比较之后写出的字节
+            EtagHttpServletResponse etagResponse = null;
+            if (this.etagBufferBytes > 0) {
+                HttpServletRequest request = writeWebRequest.getNativeRequest(HttpServletRequest.class);
+                HttpServletResponse response = writeWebRequest.getNativeResponse(HttpServletResponse.class);
+                if (request != null && response != null) {
+                    etagResponse = EtagHttpServletResponse.wrapIfApplicable(request, response, this.etagBufferBytes);
+                    if (etagResponse != null) {
+                        writeWebRequest = new ServletWebRequest(request, etagResponse);
+                    }
+                }
+            }
+            long writeStart = startTimer();
+            writeEvent.begin();
+            this.requestResponseBodyMethodProcessor.handleReturnValue(wrappedReturnValue, returnType, mavContainer, writeWebRequest);
+            if (etagResponse != null) {
+                etagResponse.finish();
+            }
+            long responseBytes = countingWebRequest != null ? countingWebRequest.getByteCount() : -1;
+            writeEvent.end(returnType, wrappedReturnValue, responseBytes);
+            if (recordMetrics) {
+                this.metrics.recordWrapped(method, writeStart - factoryStart, System.nanoTime() - writeStart, responseBytes);
+            }
+            if (responseCacheCapture != null) {
+                responseCacheCapture.complete();
+            }
+        } finally {
+            if (countingWebRequest != null) {
+                countingWebRequest.release();
+            }
+        }
+    }
+
+    /**
+     * 信封的内容随 Request Header 选择的列式布局、字段列表变化，响应 Vary，共享缓存按这些 Header 区分。
+     * 字段列表的请求参数在 URL 中，不需要 Vary
+     */
+    public static void addVary(HttpServletResponse response, @Nullable ColumnarLayout columnarLayout, @Nullable FieldProjections fieldProjections) {
+        if (columnarLayout != null) {
+            addVary(response, columnarLayout.getHeaderName());
+        }
+        if (fieldProjections != null) {
+            addVary(response, fieldProjections.getHeaderName());
+        }
+    }
+
+    // 已经有这个 Header 或者 * 时不重复添加
+    public static void addVary(HttpServletResponse response, String headerName) {
+        for (String vary : response.getHeaders(HttpHeaders.VARY)) {
+            for (String value : StringUtils.tokenizeToStringArray(vary, ",")) {
+                if (value.equalsIgnoreCase(headerName) || value.equals("*")) {
+                    return;
+                }
+            }
+        }
+        response.addHeader(HttpHeaders.VARY, headerName);
+    }
+
+    // 没有启用指标时不调用 System.nanoTime()
+    private long startTimer() {
+        return this.metrics == HandlerMethodReturnValueMetrics.NOOP ? 0 : System.nanoTime();
+    }
 }
@@ -1,17 +1,43 @@
 package org.lcm.handlermethodreturnvalue.handler;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lcm.handlermethodreturnvalue.autoconfig.HandlerMethodReturnValueProperties;
 import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.envelope.ParallelChunkedSerializer;
 import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.mapping.HandlerMethodMappingListener;
+import org.lcm.handlermethodreturnvalue.mapping.ObservableRequestMappingHandlerMapping;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMetrics;
 import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlanCompiler;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlans;
+import org.lcm.handlermethodreturnvalue.projection.FieldProjections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitterReturnValueHandler;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,13 +46,43 @@ public class HandlerMethodReturnValueAnnotatedHandlerConfig implements Initializ
     private final RequestMappingHandlerAdapter requestMappingHandlerAdapter;
     // 缓存
     private final HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache;
+    // 与 TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME 相同
+    private static final String APPLICATION_TASK_EXECUTOR_BEAN_NAME = "applicationTaskExecutor";
     private static final Logger logger = LoggerFactory.getLogger(HandlerMethodReturnValueAnnotatedHandlerConfig.class);
 
     private final ReturnValueFactory<? extends ReturnValue> returnValueFactory;
-    public HandlerMethodReturnValueAnnotatedHandlerConfig(RequestMappingHandlerAdapter requestMappingHandlerAdapter,
+    private final HandlerMethodReturnValueProperties properties;
+    private final ApplicationContext applicationContext;
+    // 没有 HandlerMethodReturnValueMetrics Bean 时为 NOOP
+    private final HandlerMethodReturnValueMetrics metrics;
+    // afterPropertiesSet() 之后可用，HandlerMethodReturnValueExceptionHandler 使用
+    @Nullable
+    private WrappingPlans wrappingPlans;
+    @Nullable
+    private DisableHandlerMethodReturnValueHeader disableHeader;
+    @Nullable
+    private ColumnarLayout columnarLayout;
+    @Nullable
+    private FieldProjections fieldProjections;
+    // live-refresh 时为运行时注册的 Handler 方法生成包装计划，不是线程安全的
+    @Nullable
+    private WrappingPlanCompiler wrappingPlanCompiler;
+    // selection-table=false 时为 null
+    @Nullable
+    private HandlerMethodReturnValueHandlerSelectionTable selectionTable;
+    // emitter=false 或者没有 MappingJackson2HttpMessageConverter 时为 null
+    @Nullable
+    private HandlerMethodReturnValueEmitterHandler emitterHandler;
+    public HandlerMethodReturnValueAnnotatedHandlerConfig(ApplicationContext applicationContext,
+                                                          RequestMappingHandlerAdapter requestMappingHandlerAdapter,
                                                           HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache,
-                                                          ReturnValueFactory<? extends ReturnValue> returnValueFactory) {
+                                                          ReturnValueFactory<? extends ReturnValue> returnValueFactory,
+                                                          HandlerMethodReturnValueProperties properties,
+                                                          ObjectProvider<HandlerMethodReturnValueMetrics> metrics) {
         this.returnValueFactory = returnValueFactory;
+        this.metrics = metrics.getIfUnique(() -> HandlerMethodReturnValueMetrics.NOOP);
+        this.properties = properties;
+        this.applicationContext = applicationContext;
         Assert.notNull(requestMappingHandlerAdapter, "RequestMappingHandlerAdapter must not be null.");
         Assert.notNull(handlerMethodReturnValueAnnotatedHandlerMethodCache, "ResponseResultAnnotatedHandlerMethodCache must not be null.");
         this.requestMappingHandlerAdapter = requestMappingHandlerAdapter;
@@ -35,12 +91,50 @@ public class HandlerMethodReturnValueAnnotatedHandlerConfig implements Initializ
 
     @Override
     public void afterPropertiesSet() throws Exception {
+        RequestMappingHandlerMapping mapping = applicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        if (mapping instanceof ObservableRequestMappingHandlerMapping observableMapping) {
+            // 运行时注册、注销 Handler 方法时，同时更新包装计划和 SelectionTable
+            // 在同一个锁中读取已有的方法、生成包装计划和 SelectionTable，再添加监听器，两者之间注册的方法不会漏掉，也不会重复处理
+            observableMapping.addListener(new LiveRefreshListener(observableMapping),
+                    handlerMethods -> initialize(handlerMethods.values()));
+        } else {
+            initialize(mapping.getHandlerMethods().values());
+        }
+    }
+
+    private void initialize(Collection<HandlerMethod> handlerMethods) {
         List<HandlerMethodReturnValueHandler> originalReturnValueHandlers = requestMappingHandlerAdapter.getReturnValueHandlers();
         List<HandlerMethodReturnValueHandler> customAndOriginalReturnValueHandlers = new ArrayList<>();
 
         Assert.notNull(originalReturnValueHandlers, "returnValueHandlers must not be null.");
 
+        // 启动时为每个需要包装的 Handler 方法生成包装计划
+        this.wrappingPlanCompiler = new WrappingPlanCompiler(applicationContext, returnValueFactory, findEnvelopeObjectMapper(),
+                requestMappingHandlerAdapter.getReactiveAdapterRegistry());
+        this.wrappingPlans = wrappingPlanCompiler.compile(handlerMethods);
+        EnvelopeTemplate envelopeTemplate = wrappingPlanCompiler.envelopeTemplateOf(returnValueFactory);
+        this.disableHeader =
+                new DisableHandlerMethodReturnValueHeader(properties.getDisableHeaderName(), properties.isAcceptLegacyDisableHeader());
+        this.columnarLayout = properties.isColumnarLayout() ? new ColumnarLayout(properties.getColumnarLayoutHeaderName()) : null;
+        this.fieldProjections = properties.isSparseFieldsets() ? new FieldProjections(properties.getFieldsParameter(), properties.getFieldsHeader()) : null;
+        boolean emitterEnabled = properties.isEmitter() &&
+                HandlerMethodReturnValueEmitterHandler.findJsonConverter(requestMappingHandlerAdapter.getMessageConverters()) != null;
+
         for (HandlerMethodReturnValueHandler originalHandler : originalReturnValueHandlers){
+            if (originalHandler instanceof ResponseBodyEmitterReturnValueHandler && emitterEnabled) {
+                // 把包装事件的 handler 放在 ResponseBodyEmitterReturnValueHandler 的前面
+                this.emitterHandler = new HandlerMethodReturnValueEmitterHandler(
+                        (ResponseBodyEmitterReturnValueHandler) originalHandler,
+                        handlerMethodReturnValueAnnotatedHandlerMethodCache,
+                        returnValueFactory,
+                        wrappingPlans,
+                        disableHeader,
+                        requestMappingHandlerAdapter.getMessageConverters(),
+                        requestMappingHandlerAdapter.getReactiveAdapterRegistry(),
+                        findAsyncTaskExecutor(),
+                        applicationContext.getBeanProvider(ContentNegotiationManager.class).getIfUnique(ContentNegotiationManager::new));
+                customAndOriginalReturnValueHandlers.add(emitterHandler);
+            }
             if (originalHandler instanceof RequestResponseBodyMethodProcessor) {
                 // 把自定义的 handler 放在 RequestResponseBodyMethodProcessor 的前面
                 // 自定义的 handler 能处理的则优先处理
@@ -48,16 +142,153 @@ public class HandlerMethodReturnValueAnnotatedHandlerConfig implements Initializ
                 customAndOriginalReturnValueHandlers.add(new HandlerMethodReturnValueAnnotatedHandler(
                         (RequestResponseBodyMethodProcessor) originalHandler,
                         handlerMethodReturnValueAnnotatedHandlerMethodCache,
-                        returnValueFactory));
+                        returnValueFactory,
+                        handlerSettings(envelopeTemplate)));
             }
             customAndOriginalReturnValueHandlers.add(originalHandler);
         }
 
         logger.info("HandlerMethodReturnValueHandlers:");
         logger.info(">>> Total: " + customAndOriginalReturnValueHandlers.size());
-        for (int i = 0; i < customAndOriginalReturnValueHandlers.size(); i++){
-            logger.info(String.format("%4d: ", i) + customAndOriginalReturnValueHandlers.get(i).toString());
+        if (logger.isDebugEnabled()) {
+            for (int i = 0; i < customAndOriginalReturnValueHandlers.size(); i++){
+                logger.debug(String.format("%4d: ", i) + customAndOriginalReturnValueHandlers.get(i).toString());
+            }
+        }
+
+        if (properties.isSelectionTable()) {
+            // 启动时为每个 HandlerMethod 确定处理返回值的 handler，请求时只需要查表
+            this.selectionTable =
+                    new HandlerMethodReturnValueHandlerSelectionTable(customAndOriginalReturnValueHandlers, handlerMethods);
+            logger.info("HandlerMethodReturnValueHandlerSelectionTable is enabled: " + selectionTable.size() + " handler methods");
+            requestMappingHandlerAdapter.setReturnValueHandlers(List.of(selectionTable));
+        } else {
+            requestMappingHandlerAdapter.setReturnValueHandlers(Collections.unmodifiableList(customAndOriginalReturnValueHandlers));
+        }
+    }
+
+    // 按 HandlerMethodReturnValueProperties 创建 HandlerMethodReturnValueAnnotatedHandler 的配置
+    private HandlerMethodReturnValueAnnotatedHandlerSettings handlerSettings(@Nullable EnvelopeTemplate envelopeTemplate) {
+        HandlerMethodReturnValueAnnotatedHandlerSettings settings = new HandlerMethodReturnValueAnnotatedHandlerSettings();
+        settings.setEnvelopeTemplate(envelopeTemplate);
+        settings.setWrappingPlans(wrappingPlans);
+        settings.setDisableHeader(disableHeader);
+        settings.setStreamingFlushElements(properties.getStreamingFlushElements());
+        settings.setMetrics(metrics);
+        settings.setEtagBufferBytes(properties.isEtag() ? properties.getEtagBufferSize() : 0);
+        settings.setFieldProjections(fieldProjections);
+        settings.setColumnarLayout(columnarLayout);
+        if (properties.isParallelSerialization()) {
+            // HandlerMethodReturnValueAutoConfigure 创建，线程池随 ApplicationContext 关闭
+            settings.setParallelChunkedSerializer(applicationContext.getBeanProvider(ParallelChunkedSerializer.class).getIfUnique());
+        }
+        return settings;
+    }
+
+    public ReturnValueFactory<? extends ReturnValue> getReturnValueFactory() {
+        return returnValueFactory;
+    }
+
+    public HandlerMethodReturnValueAnnotatedHandlerMethodCache getHandlerMethodReturnValueAnnotatedHandlerMethodCache() {
+        return handlerMethodReturnValueAnnotatedHandlerMethodCache;
+    }
+
+    @Nullable
+    public WrappingPlans getWrappingPlans() {
+        return wrappingPlans;
+    }
+
+    @Nullable
+    public DisableHandlerMethodReturnValueHeader getDisableHeader() {
+        return disableHeader;
+    }
+
+    @Nullable
+    public ColumnarLayout getColumnarLayout() {
+        return columnarLayout;
+    }
+
+    @Nullable
+    public FieldProjections getFieldProjections() {
+        return fieldProjections;
+    }
+
+    // live-refresh：运行时注册的方法生成包装计划、加入 SelectionTable，全部注销后移除，同时移除 Emitter 的 handler
+    private final class LiveRefreshListener implements HandlerMethodMappingListener {
+        private final ObservableRequestMappingHandlerMapping mapping;
+
+        private LiveRefreshListener(ObservableRequestMappingHandlerMapping mapping) {
+            this.mapping = mapping;
+        }
+
+        @Override
+        public void onHandlerMethodRegistered(RequestMappingInfo info, Method method) {
+            HandlerMethod handlerMethod = mapping.getHandlerMethod(info);
+            if (handlerMethod == null) {
+                return;
+            }
+            WrappingPlans plans = wrappingPlans;
+            WrappingPlanCompiler compiler = wrappingPlanCompiler;
+            if (plans != null && compiler != null && WrappingPlanCompiler.isAnnotated(handlerMethod)) {
+                synchronized (compiler) {
+                    plans.put(compiler.compile(handlerMethod));
+                }
+            }
+            if (selectionTable != null) {
+                selectionTable.register(handlerMethod);
+            }
+            if (emitterHandler != null) {
+                // 重新注册的方法使用新的包装计划
+                emitterHandler.remove(method);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Wrapping plan and handler selection refreshed: " + method);
+            }
+        }
+
+        @Override
+        public void onHandlerMethodUnregistered(RequestMappingInfo info, Method method) {
+            if (mapping.isRegistered(method)) {
+                // 还注册在其他 RequestMappingInfo 下
+                return;
+            }
+            if (wrappingPlans != null) {
+                wrappingPlans.remove(method);
+            }
+            if (selectionTable != null) {
+                selectionTable.remove(method);
+            }
+            if (emitterHandler != null) {
+                emitterHandler.remove(method);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Wrapping plan and handler selection evicted: " + method);
+            }
+        }
+    }
+
+    // 与 Spring Boot WebMvcAutoConfiguration 相同，使用 applicationTaskExecutor，没有时使用 Spring MVC 的默认值
+    private TaskExecutor findAsyncTaskExecutor() {
+        if (applicationContext.containsBean(APPLICATION_TASK_EXECUTOR_BEAN_NAME) &&
+                applicationContext.getBean(APPLICATION_TASK_EXECUTOR_BEAN_NAME) instanceof AsyncTaskExecutor asyncTaskExecutor) {
+            return asyncTaskExecutor;
+        }
+        return new SimpleAsyncTaskExecutor("MvcAsync");
+    }
+
+    // 使用与 MappingJackson2HttpMessageConverter 相同的 ObjectMapper 预先编码信封，保证输出一致
+    @Nullable
+    private ObjectMapper findEnvelopeObjectMapper() {
+        if (!properties.isStreamingEnvelope()) {
+            return null;
+        }
+        MappingJackson2HttpMessageConverter jacksonConverter =
+                HandlerMethodReturnValueEmitterHandler.findJsonConverter(requestMappingHandlerAdapter.getMessageConverters());
+        if (jacksonConverter != null) {
+            logger.info("Streaming envelope is enabled");
+            return jacksonConverter.getObjectMapper();
         }
-        requestMappingHandlerAdapter.setReturnValueHandlers(Collections.unmodifiableList(customAndOriginalReturnValueHandlers));
+        logger.warn("Streaming envelope is disabled: MappingJackson2HttpMessageConverter not found");
+        return null;
     }
 }
@@ -0,0 +1,37 @@
+package org.lcm.handlermethodreturnvalue.handler;
+
+import lombok.Data;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.envelope.ParallelChunkedSerializer;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMetrics;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlans;
+import org.lcm.handlermethodreturnvalue.projection.FieldProjections;
+import org.springframework.lang.Nullable;
+
+/**
+ * HandlerMethodReturnValueAnnotatedHandler 的可选配置，默认值与只启用基本包装时相同
+ * 由 HandlerMethodReturnValueAnnotatedHandlerConfig 按 HandlerMethodReturnValueProperties 创建，
+ * Handler 创建时复制每一项，之后修改不影响已经创建的 Handler
+ */
+@Data
+public class HandlerMethodReturnValueAnnotatedHandlerSettings {
+    // 预先编码的信封常量部分，为 null 时不启用，需要 PreEncodableReturnValueFactory
+    @Nullable
+    private EnvelopeTemplate envelopeTemplate;
+    // 启动时生成的包装计划，为 null 或者没有计划的方法使用 returnValueFactory
+    @Nullable
+    private WrappingPlans wrappingPlans;
+    private DisableHandlerMethodReturnValueHeader disableHeader = DisableHandlerMethodReturnValueHeader.DEFAULT;
+    private int streamingFlushElements = HandlerMethodReturnValueAnnotatedHandler.DEFAULT_STREAMING_FLUSH_ELEMENTS;
+    private HandlerMethodReturnValueMetrics metrics = HandlerMethodReturnValueMetrics.NOOP;
+    // 小于等于 0 时不计算 ETag
+    private int etagBufferBytes = 0;
+    @Nullable
+    private FieldProjections fieldProjections;
+    @Nullable
+    private ColumnarLayout columnarLayout;
+    @Nullable
+    private ParallelChunkedSerializer parallelChunkedSerializer;
+}
@@ -0,0 +1,146 @@
+package org.lcm.handlermethodreturnvalue.handler;
+
+import org.lcm.handlermethodreturnvalue.cache.HandlerMethodReturnValueAnnotatedHandlerMethodCache;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeHttpMessageConverter;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlan;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlans;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitterReturnValueHandler;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 包装 ResponseBodyEmitter / SseEmitter / Flux&lt;ServerSentEvent&gt; 等流式返回值中的每一个事件
+ *
+ * ResponseBodyEmitterReturnValueHandler 在 RequestResponseBodyMethodProcessor 的前面，
+ * 流式返回值不会到达 HandlerMethodReturnValueAnnotatedHandler，事件通过它自己的 HttpMessageConverter 列表写出。
+ *
+ * 实现方式
+ *  (1) 放在 ResponseBodyEmitterReturnValueHandler 的前面，只处理有 @HandlerMethodReturnValue 的 Handler 方法
+ *  (2) 每个 Handler 方法创建一个 ResponseBodyEmitterReturnValueHandler，HttpMessageConverter 列表的最前面是
+ *      EnvelopeHttpMessageConverter，使用这个方法的包装计划中的 ReturnValueFactory
+ *  (3) 信封的常量部分每个 ReturnValueFactory 只预先编码一次，所有订阅者的所有事件共用
+ *  (4) Request Header 中有 DISABLE 字段时，交给原来的 ResponseBodyEmitterReturnValueHandler，不包装
+ *  (5) 运行时注销（live-refresh）的 Handler 方法通过 remove() 移除它的 ResponseBodyEmitterReturnValueHandler
+ */
+public class HandlerMethodReturnValueEmitterHandler implements HandlerMethodReturnValueHandler {
+    // 被代理的对象
+    private final ResponseBodyEmitterReturnValueHandler responseBodyEmitterReturnValueHandler;
+    // 缓存
+    private final HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache;
+    private final ReturnValueFactory<? extends ReturnValue> returnValueFactory;
+    // 启动时生成的包装计划，为 null 或者没有计划的方法使用 returnValueFactory
+    @Nullable
+    private final WrappingPlans wrappingPlans;
+    private final DisableHandlerMethodReturnValueHeader disableHeader;
+    private final List<HttpMessageConverter<?>> messageConverters;
+    private final MappingJackson2HttpMessageConverter jsonConverter;
+    private final ReactiveAdapterRegistry reactiveAdapterRegistry;
+    private final TaskExecutor taskExecutor;
+    private final ContentNegotiationManager contentNegotiationManager;
+    // key 为 Handler 方法
+    private final Map<Method, ResponseBodyEmitterReturnValueHandler> emitterReturnValueHandlers = new ConcurrentHashMap<>();
+    // key 为 ReturnValueFactory，不是 PreEncodableReturnValueFactory 时为 empty
+    private final Map<ReturnValueFactory<?>, Optional<EnvelopeTemplate>> envelopeTemplates = new ConcurrentHashMap<>();
+
+    public HandlerMethodReturnValueEmitterHandler(
+            ResponseBodyEmitterReturnValueHandler responseBodyEmitterReturnValueHandler,
+            HandlerMethodReturnValueAnnotatedHandlerMethodCache handlerMethodReturnValueAnnotatedHandlerMethodCache,
+            ReturnValueFactory<? extends ReturnValue> returnValueFactory,
+            @Nullable WrappingPlans wrappingPlans,
+            DisableHandlerMethodReturnValueHeader disableHeader,
+            List<HttpMessageConverter<?>> messageConverters,
+            ReactiveAdapterRegistry reactiveAdapterRegistry,
+            TaskExecutor taskExecutor,
+            ContentNegotiationManager contentNegotiationManager) {
+        Assert.notNull(responseBodyEmitterReturnValueHandler, "ResponseBodyEmitterReturnValueHandler must not be null.");
+        Assert.notNull(handlerMethodReturnValueAnnotatedHandlerMethodCache, "HandlerMethodReturnValueAnnotatedHandlerMethodCache must not be null.");
+        Assert.notNull(returnValueFactory, "ReturnValueFactory must not be null.");
+        Assert.notNull(disableHeader, "DisableHandlerMethodReturnValueHeader must not be null.");
+        Assert.notEmpty(messageConverters, "HttpMessageConverter list must not be empty.");
+        this.responseBodyEmitterReturnValueHandler = responseBodyEmitterReturnValueHandler;
+        this.handlerMethodReturnValueAnnotatedHandlerMethodCache = handlerMethodReturnValueAnnotatedHandlerMethodCache;
+        this.returnValueFactory = returnValueFactory;
+        this.wrappingPlans = wrappingPlans;
+        this.disableHeader = disableHeader;
+        this.messageConverters = List.copyOf(messageConverters);
+        MappingJackson2HttpMessageConverter jsonConverter = findJsonConverter(messageConverters);
+        Assert.notNull(jsonConverter, "MappingJackson2HttpMessageConverter not found.");
+        this.jsonConverter = jsonConverter;
+        this.reactiveAdapterRegistry = reactiveAdapterRegistry;
+        this.taskExecutor = taskExecutor;
+        this.contentNegotiationManager = contentNegotiationManager;
+    }
+
+    // 没有 MappingJackson2HttpMessageConverter 时返回 null，此时不能包装事件
+    // 跳过只用于读取的子类，例如 Spring Data 的 ProjectingJackson2HttpMessageConverter
+    @Nullable
+    public static MappingJackson2HttpMessageConverter findJsonConverter(List<HttpMessageConverter<?>> messageConverters) {
+        for (HttpMessageConverter<?> converter : messageConverters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter jsonConverter &&
+                    jsonConverter.canWrite(Map.class, MediaType.APPLICATION_JSON)) {
+                return jsonConverter;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return this.responseBodyEmitterReturnValueHandler.supportsReturnType(returnType) &&
+                this.handlerMethodReturnValueAnnotatedHandlerMethodCache.contains(returnType.getMethod());
+    }
+
+    @Override
+    public void handleReturnValue(@Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        Method method = returnType.getMethod();
+        if (method == null || this.disableHeader.existsInHttpRequestHeader(webRequest)) {
+            this.responseBodyEmitterReturnValueHandler.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+        this.emitterReturnValueHandlers
+                .computeIfAbsent(method, m -> createEmitterReturnValueHandler(returnType))
+                .handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+    }
+
+    // 运行时注册、注销的 Handler 方法，下次请求时按照新的包装计划重新创建
+    public void remove(Method method) {
+        this.emitterReturnValueHandlers.remove(method);
+    }
+
+    private ResponseBodyEmitterReturnValueHandler createEmitterReturnValueHandler(MethodParameter returnType) {
+        WrappingPlan wrappingPlan = this.wrappingPlans != null ? this.wrappingPlans.get(returnType.getMethod()) : null;
+        ReturnValueFactory<? extends ReturnValue> factory = wrappingPlan != null ? wrappingPlan.getFactory() : this.returnValueFactory;
+        EnvelopeTemplate envelopeTemplate = this.envelopeTemplates.computeIfAbsent(factory, f ->
+                f instanceof PreEncodableReturnValueFactory<?> preEncodableReturnValueFactory ?
+                        Optional.of(EnvelopeTemplate.of(this.jsonConverter.getObjectMapper(), preEncodableReturnValueFactory)) :
+                        Optional.empty()).orElse(null);
+
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(this.messageConverters.size() + 1);
+        converters.add(new EnvelopeHttpMessageConverter(this.jsonConverter, factory, new MethodParameter(returnType), envelopeTemplate));
+        converters.addAll(this.messageConverters);
+        return new ResponseBodyEmitterReturnValueHandler(converters,
+                this.reactiveAdapterRegistry, this.taskExecutor, this.contentNegotiationManager);
+    }
+}
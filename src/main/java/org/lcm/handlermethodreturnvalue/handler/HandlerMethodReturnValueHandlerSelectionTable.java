@@ -0,0 +1,208 @@
+package org.lcm.handlermethodreturnvalue.handler;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 代替 RequestMappingHandlerAdapter 中的 HandlerMethodReturnValueHandler 列表
+ *
+ * HandlerMethodReturnValueHandlerComposite 每次请求都会按顺序调用每个 handler 的 supportsReturnType()，
+ * 直到找到第一个支持的 handler。对于同一个 HandlerMethod，结果是固定的，所以启动时就可以确定。
+ *
+ * 实现方式
+ *  (1) 启动时对每个 HandlerMethod 按照 Composite 相同的顺序找出处理返回值的 handler，储存在 IdentityHashMap 中
+ *  (2) RequestMappingHandlerAdapter 中只保留这一个 handler，请求时只需要一次查表
+ *  (3) HandlerMethodReturnValueHandlerComposite 传入的 returnType 的参数类型是返回值的运行时类型，
+ *      例如声明为 Object 的方法实际返回了 ResponseEntity，需要交给 HttpEntityMethodProcessor 处理。
+ *      运行时类型与声明类型不同时，按照运行时类型查找一次，结果记忆在 ConcurrentHashMap 中
+ *  (4) 异步返回值（AsyncHandlerMethodReturnValueHandler）：Composite 只把异步返回值交给支持这个返回值类型的异步 handler，
+ *      所以启动时（运行时类型不同时第一次遇到时）记录是否有异步 handler 支持这个类型，
+ *      只有可能是异步返回值的方法，请求时才调用 isAsyncReturnValue()
+ *  (5) 异步处理的结果（returnType 不是 HandlerMethod 本身的返回值）以及表中没有的方法，与 Composite 相同，按顺序查找
+ *  (6) supportsReturnType() 不查表，总是返回 true：这个 handler 是 RequestMappingHandlerAdapter 中唯一的 handler，
+ *      每次请求只在 handleReturnValue() 中查找一次，找不到时抛出与 Composite 相同的 IllegalArgumentException
+ *  (7) 表是一个不可变的快照，运行时注册、注销 Handler 方法时（live-refresh）通过 register() / remove() 复制一份新的快照，
+ *      再通过 AtomicReference CAS 整体替换，请求时不加锁
+ *
+ * 按照 Request Header 关闭包装由 HandlerMethodReturnValueAnnotatedHandler.handleReturnValue() 处理
+ */
+public class HandlerMethodReturnValueHandlerSelectionTable implements HandlerMethodReturnValueHandler {
+    private final List<HandlerMethodReturnValueHandler> returnValueHandlers;
+    private final List<AsyncHandlerMethodReturnValueHandler> asyncReturnValueHandlers;
+    private final AtomicReference<Map<Method, Selection>> selections;
+
+    public HandlerMethodReturnValueHandlerSelectionTable(List<HandlerMethodReturnValueHandler> returnValueHandlers,
+                                                         Iterable<HandlerMethod> handlerMethods) {
+        this.returnValueHandlers = List.copyOf(returnValueHandlers);
+        List<AsyncHandlerMethodReturnValueHandler> asyncHandlers = new ArrayList<>();
+        for (HandlerMethodReturnValueHandler handler : returnValueHandlers) {
+            if (handler instanceof AsyncHandlerMethodReturnValueHandler asyncHandler) {
+                asyncHandlers.add(asyncHandler);
+            }
+        }
+        this.asyncReturnValueHandlers = List.copyOf(asyncHandlers);
+
+        Map<Method, Selection> table = new IdentityHashMap<>();
+        for (HandlerMethod handlerMethod : handlerMethods) {
+            Selection selection = selectionOf(handlerMethod);
+            if (selection != null) {
+                table.putIfAbsent(handlerMethod.getMethod(), selection);
+            }
+        }
+        this.selections = new AtomicReference<>(Collections.unmodifiableMap(table));
+    }
+
+    public int size() {
+        return selections.get().size();
+    }
+
+    // 运行时注册的 Handler 方法，已有时替换
+    public void register(HandlerMethod handlerMethod) {
+        Selection selection = selectionOf(handlerMethod);
+        if (selection == null) {
+            return;
+        }
+        selections.updateAndGet(current -> {
+            Map<Method, Selection> next = new IdentityHashMap<>(current);
+            next.put(handlerMethod.getMethod(), selection);
+            return Collections.unmodifiableMap(next);
+        });
+    }
+
+    // 运行时注销的 Handler 方法
+    public void remove(Method method) {
+        selections.updateAndGet(current -> {
+            if (!current.containsKey(method)) {
+                return current;
+            }
+            Map<Method, Selection> next = new IdentityHashMap<>(current);
+            next.remove(method);
+            return Collections.unmodifiableMap(next);
+        });
+    }
+
+    public List<HandlerMethodReturnValueHandler> getReturnValueHandlers() {
+        return returnValueHandlers;
+    }
+
+    // 在 handleReturnValue() 中查找，不重复查表
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return true;
+    }
+
+    @Override
+    public void handleReturnValue(@Nullable Object returnValue, MethodParameter returnType,
+                                  ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        HandlerMethodReturnValueHandler handler = select(returnValue, returnType);
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown return value type: " + returnType.getParameterType().getName());
+        }
+        handler.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+    }
+
+    @Nullable
+    private HandlerMethodReturnValueHandler select(@Nullable Object returnValue, MethodParameter returnType) {
+        Selection selection = selections.get().get(returnType.getMethod());
+        if (selection == null || selection.containingClass != returnType.getContainingClass()) {
+            return scan(returnValue, returnType);
+        }
+        Class<?> parameterType = returnType.getParameterType();
+        TypeSelection typeSelection = parameterType == selection.parameterType ?
+                selection.declared : selection.byRuntimeType.get(parameterType);
+        if (typeSelection == null) {
+            HandlerMethodReturnValueHandler handler = scan(returnType, false);
+            if (handler == null) {
+                return scan(returnValue, returnType);
+            }
+            typeSelection = new TypeSelection(handler, isAsyncCapable(returnType));
+            selection.byRuntimeType.putIfAbsent(parameterType, typeSelection);
+        }
+        if (typeSelection.asyncCapable && isAsyncReturnValue(returnValue, returnType)) {
+            return scan(returnType, true);
+        }
+        return typeSelection.handler;
+    }
+
+    @Nullable
+    private Selection selectionOf(HandlerMethod handlerMethod) {
+        MethodParameter returnType = handlerMethod.getReturnType();
+        HandlerMethodReturnValueHandler handler = scan(returnType, false);
+        if (handler == null) {
+            return null;
+        }
+        return new Selection(returnType.getContainingClass(), returnType.getParameterType(),
+                new TypeSelection(handler, isAsyncCapable(returnType)));
+    }
+
+    // 是否有异步 handler 支持这个返回值类型，没有时这个类型的返回值不可能是异步返回值
+    private boolean isAsyncCapable(MethodParameter returnType) {
+        for (AsyncHandlerMethodReturnValueHandler handler : asyncReturnValueHandlers) {
+            if (handler.supportsReturnType(returnType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAsyncReturnValue(@Nullable Object returnValue, MethodParameter returnType) {
+        for (AsyncHandlerMethodReturnValueHandler handler : asyncReturnValueHandlers) {
+            if (handler.isAsyncReturnValue(returnValue, returnType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 与 HandlerMethodReturnValueHandlerComposite.selectHandler() 相同的顺序
+    @Nullable
+    private HandlerMethodReturnValueHandler scan(@Nullable Object returnValue, MethodParameter returnType) {
+        return scan(returnType, !asyncReturnValueHandlers.isEmpty() && isAsyncReturnValue(returnValue, returnType));
+    }
+
+    @Nullable
+    private HandlerMethodReturnValueHandler scan(MethodParameter returnType, boolean isAsyncValue) {
+        for (HandlerMethodReturnValueHandler handler : returnValueHandlers) {
+            if (isAsyncValue && !(handler instanceof AsyncHandlerMethodReturnValueHandler)) {
+                continue;
+            }
+            if (handler.supportsReturnType(returnType)) {
+                return handler;
+            }
+        }
+        return null;
+    }
+
+    private static final class Selection {
+        private final Class<?> containingClass;
+        // HandlerMethod 声明的返回值类型，以及对应的 handler
+        private final Class<?> parameterType;
+        private final TypeSelection declared;
+        // 运行时类型与声明类型不同时的 handler
+        private final Map<Class<?>, TypeSelection> byRuntimeType = new ConcurrentHashMap<>();
+
+        private Selection(Class<?> containingClass, Class<?> parameterType, TypeSelection declared) {
+            this.containingClass = containingClass;
+            this.parameterType = parameterType;
+            this.declared = declared;
+        }
+    }
+
+    // 一个返回值类型的 handler，asyncCapable 为 false 时不需要检查是否为异步返回值
+    private record TypeSelection(HandlerMethodReturnValueHandler handler, boolean asyncCapable) {
+    }
+}
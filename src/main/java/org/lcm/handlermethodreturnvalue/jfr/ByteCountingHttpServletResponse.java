@@ -0,0 +1,88 @@
+package org.lcm.handlermethodreturnvalue.jfr;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+
+/**
+ * 统计写出到 getOutputStream() 的字节数，用于 ReturnValueWriteEvent 的 payloadSize 以及 HandlerMethodReturnValueMetrics 的 responseBytes
+ *
+ * 只在 ReturnValueWriteEvent 或者指标启用时使用，都不启用时不创建。
+ * 由 ByteCountingWebRequest 在同一个线程的请求之间复用：bind() 指向这个请求的 Response 并清零，不再分配对象。
+ * HttpMessageConverter 都通过 getOutputStream() 写出，getWriter() 不统计
+ */
+public final class ByteCountingHttpServletResponse extends HttpServletResponseWrapper {
+    private final ByteCountingOutputStream outputStream = new ByteCountingOutputStream();
+
+    public ByteCountingHttpServletResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    void bind(HttpServletResponse response) {
+        setResponse(response);
+        outputStream.delegate = null;
+        outputStream.count = 0;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream.delegate == null) {
+            outputStream.delegate = super.getOutputStream();
+        }
+        return outputStream;
+    }
+
+    public long getByteCount() {
+        return outputStream.count;
+    }
+
+    private static final class ByteCountingOutputStream extends ServletOutputStream {
+        @Nullable
+        private ServletOutputStream delegate;
+        private long count;
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate().write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate().write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate().close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate().isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate().setWriteListener(writeListener);
+        }
+
+        private ServletOutputStream delegate() {
+            ServletOutputStream delegate = this.delegate;
+            if (delegate == null) {
+                throw new IllegalStateException("ByteCountingHttpServletResponse is not bound to a response");
+            }
+            return delegate;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.lcm.handlermethodreturnvalue.jfr;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.util.WebUtils;
+
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * getNativeResponse() 返回 ByteCountingHttpServletResponse 的 NativeWebRequest，其他方法都交给原来的 NativeWebRequest
+ *
+ * 每个线程复用同一个对象，不需要为每个请求创建 ServletWebRequest 和 Response 包装：
+ *   ByteCountingWebRequest countingWebRequest = ByteCountingWebRequest.bind(webRequest);
+ *   try { ... countingWebRequest.getByteCount() ... } finally { countingWebRequest.release(); }
+ * 同一个线程中嵌套使用时（例如写出时 include 另一个 Handler 方法），内层创建新的对象
+ */
+public final class ByteCountingWebRequest implements NativeWebRequest {
+    private static final ThreadLocal<ByteCountingWebRequest> CURRENT = new ThreadLocal<>();
+
+    private NativeWebRequest delegate;
+    private final ByteCountingHttpServletResponse response;
+    private boolean bound;
+
+    private ByteCountingWebRequest(NativeWebRequest delegate, HttpServletResponse response) {
+        this.delegate = delegate;
+        this.response = new ByteCountingHttpServletResponse(response);
+        this.bound = true;
+    }
+
+    // 没有 HttpServletResponse 时返回 null
+    @Nullable
+    public static ByteCountingWebRequest bind(NativeWebRequest webRequest) {
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (response == null) {
+            return null;
+        }
+        ByteCountingWebRequest countingWebRequest = CURRENT.get();
+        if (countingWebRequest == null) {
+            countingWebRequest = new ByteCountingWebRequest(webRequest, response);
+            CURRENT.set(countingWebRequest);
+            return countingWebRequest;
+        }
+        if (countingWebRequest.bound) {
+            return new ByteCountingWebRequest(webRequest, response);
+        }
+        countingWebRequest.delegate = webRequest;
+        countingWebRequest.response.bind(response);
+        countingWebRequest.bound = true;
+        return countingWebRequest;
+    }
+
+    // 写出完成之后调用，之后这个线程的下一个请求可以复用
+    public void release() {
+        Assert.state(bound, "ByteCountingWebRequest is not bound");
+        bound = false;
+    }
+
+    public long getByteCount() {
+        return response.getByteCount();
+    }
+
+    @Override
+    public Object getNativeRequest() {
+        return delegate.getNativeRequest();
+    }
+
+    @Override
+    public Object getNativeResponse() {
+        return response;
+    }
+
+    @Override
+    @Nullable
+    public <T> T getNativeRequest(@Nullable Class<T> requiredType) {
+        return delegate.getNativeRequest(requiredType);
+    }
+
+    @Override
+    @Nullable
+    public <T> T getNativeResponse(@Nullable Class<T> requiredType) {
+        return WebUtils.getNativeResponse(response, requiredType);
+    }
+
+    @Override
+    @Nullable
+    public String getHeader(String headerName) {
+        return delegate.getHeader(headerName);
+    }
+
+    @Override
+    @Nullable
+    public String[] getHeaderValues(String headerName) {
+        return delegate.getHeaderValues(headerName);
+    }
+
+    @Override
+    public Iterator<String> getHeaderNames() {
+        return delegate.getHeaderNames();
+    }
+
+    @Override
+    @Nullable
+    public String getParameter(String paramName) {
+        return delegate.getParameter(paramName);
+    }
+
+    @Override
+    @Nullable
+    public String[] getParameterValues(String paramName) {
+        return delegate.getParameterValues(paramName);
+    }
+
+    @Override
+    public Iterator<String> getParameterNames() {
+        return delegate.getParameterNames();
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return delegate.getParameterMap();
+    }
+
+    @Override
+    public Locale getLocale() {
+        return delegate.getLocale();
+    }
+
+    @Override
+    public String getContextPath() {
+        return delegate.getContextPath();
+    }
+
+    @Override
+    @Nullable
+    public String getRemoteUser() {
+        return delegate.getRemoteUser();
+    }
+
+    @Override
+    @Nullable
+    public Principal getUserPrincipal() {
+        return delegate.getUserPrincipal();
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return delegate.isUserInRole(role);
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public boolean checkNotModified(long lastModifiedTimestamp) {
+        return delegate.checkNotModified(lastModifiedTimestamp);
+    }
+
+    @Override
+    public boolean checkNotModified(String etag) {
+        return delegate.checkNotModified(etag);
+    }
+
+    @Override
+    public boolean checkNotModified(@Nullable String etag, long lastModifiedTimestamp) {
+        return delegate.checkNotModified(etag, lastModifiedTimestamp);
+    }
+
+    @Override
+    public String getDescription(boolean includeClientInfo) {
+        return delegate.getDescription(includeClientInfo);
+    }
+
+    @Override
+    @Nullable
+    public Object getAttribute(String name, int scope) {
+        return delegate.getAttribute(name, scope);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope) {
+        delegate.setAttribute(name, value, scope);
+    }
+
+    @Override
+    public void removeAttribute(String name, int scope) {
+        delegate.removeAttribute(name, scope);
+    }
+
+    @Override
+    public String[] getAttributeNames(int scope) {
+        return delegate.getAttributeNames(scope);
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback, int scope) {
+        delegate.registerDestructionCallback(name, callback, scope);
+    }
+
+    @Override
+    @Nullable
+    public Object resolveReference(String key) {
+        return delegate.resolveReference(key);
+    }
+
+    @Override
+    public String getSessionId() {
+        return delegate.getSessionId();
+    }
+
+    @Override
+    public Object getSessionMutex() {
+        return delegate.getSessionMutex();
+    }
+}
@@ -0,0 +1,32 @@
+package org.lcm.handlermethodreturnvalue.jfr;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+
+/**
+ * Java Flight Recorder 事件
+ *
+ *  (1) HandlerSelectionEvent：supportsReturnType()
+ *  (2) ReturnValueFactoryEvent：ReturnValueFactory.create() / createData()
+ *  (3) ReturnValueWriteEvent：RequestResponseBodyMethodProcessor.handleReturnValue()，包含写出的字节数
+ *
+ * 默认不启用（@Enabled(false)），在 .jfc 或者 JFR.start 中启用并设置 threshold，例如
+ *   org.lcm.handlermethodreturnvalue.ReturnValueWrite#enabled=true
+ *   org.lcm.handlermethodreturnvalue.ReturnValueWrite#threshold=10 ms
+ * 不启用时 begin() / end() / shouldCommit() 都是空操作，JIT 可以消除事件对象的分配；
+ * 启用时只有超过 threshold 的事件才会填充字段（方法名等字符串）并提交。
+ * 与 GC、Socket I/O 等 JDK 事件在同一个 recording 中，按线程和时间关联单个慢请求
+ */
+public final class HandlerMethodReturnValueEvents {
+    public static final String PREFIX = "org.lcm.handlermethodreturnvalue.";
+    public static final String CATEGORY = "Handler Method Return Value";
+
+    private HandlerMethodReturnValueEvents() {
+    }
+
+    // 例如 com.example.UserController#getUser，只在提交事件时调用
+    static String nameOf(@Nullable Method method) {
+        return method != null ? method.getDeclaringClass().getName() + "#" + method.getName() : "";
+    }
+}
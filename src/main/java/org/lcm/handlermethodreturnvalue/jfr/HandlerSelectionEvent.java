@@ -0,0 +1,43 @@
+package org.lcm.handlermethodreturnvalue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.core.MethodParameter;
+
+import java.lang.reflect.Method;
+
+/**
+ * HandlerMethodReturnValueAnnotatedHandler.supportsReturnType()
+ */
+@Name(HandlerMethodReturnValueEvents.PREFIX + "HandlerSelection")
+@Label("Handler Selection")
+@Description("HandlerMethodReturnValueAnnotatedHandler.supportsReturnType()")
+@Category(HandlerMethodReturnValueEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public final class HandlerSelectionEvent extends Event {
+    @Label("Handler Method")
+    String handlerMethod;
+
+    @Label("Return Type")
+    Class<?> returnType;
+
+    @Label("Supported")
+    boolean supported;
+
+    public void end(MethodParameter returnType, boolean supported) {
+        end();
+        if (shouldCommit()) {
+            Method method = returnType.getMethod();
+            this.handlerMethod = HandlerMethodReturnValueEvents.nameOf(method);
+            this.returnType = returnType.getParameterType();
+            this.supported = supported;
+            commit();
+        }
+    }
+}
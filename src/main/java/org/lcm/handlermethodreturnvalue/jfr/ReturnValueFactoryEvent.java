@@ -0,0 +1,42 @@
+package org.lcm.handlermethodreturnvalue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.core.MethodParameter;
+import org.springframework.lang.Nullable;
+
+/**
+ * ReturnValueFactory.create() / PreEncodableReturnValueFactory.createData()
+ */
+@Name(HandlerMethodReturnValueEvents.PREFIX + "ReturnValueFactory")
+@Label("Return Value Factory")
+@Description("ReturnValueFactory.create() or PreEncodableReturnValueFactory.createData()")
+@Category(HandlerMethodReturnValueEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public final class ReturnValueFactoryEvent extends Event {
+    @Label("Handler Method")
+    String handlerMethod;
+
+    @Label("Return Type")
+    @Description("Runtime type of the value returned from the handler method")
+    Class<?> returnType;
+
+    @Label("Factory")
+    Class<?> factory;
+
+    public void end(MethodParameter returnType, @Nullable Object returnValue, Object factory) {
+        end();
+        if (shouldCommit()) {
+            this.handlerMethod = HandlerMethodReturnValueEvents.nameOf(returnType.getMethod());
+            this.returnType = returnValue != null ? returnValue.getClass() : returnType.getParameterType();
+            this.factory = factory.getClass();
+            commit();
+        }
+    }
+}
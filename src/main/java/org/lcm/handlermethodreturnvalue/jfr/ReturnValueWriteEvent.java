@@ -0,0 +1,44 @@
+package org.lcm.handlermethodreturnvalue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.core.MethodParameter;
+
+/**
+ * RequestResponseBodyMethodProcessor.handleReturnValue() 写出包装之后的值
+ */
+@Name(HandlerMethodReturnValueEvents.PREFIX + "ReturnValueWrite")
+@Label("Return Value Write")
+@Description("RequestResponseBodyMethodProcessor.handleReturnValue() writing the wrapped value")
+@Category(HandlerMethodReturnValueEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public final class ReturnValueWriteEvent extends Event {
+    @Label("Handler Method")
+    String handlerMethod;
+
+    @Label("Return Type")
+    @Description("Type of the wrapped value, e.g. SimpleReturnValue or PreEncodedEnvelope")
+    Class<?> returnType;
+
+    @Label("Payload Size")
+    @Description("Bytes written to the response body, -1 if unknown")
+    @DataAmount
+    long payloadSize;
+
+    public void end(MethodParameter returnType, Object wrappedReturnValue, long payloadSize) {
+        end();
+        if (shouldCommit()) {
+            this.handlerMethod = HandlerMethodReturnValueEvents.nameOf(returnType.getMethod());
+            this.returnType = wrappedReturnValue.getClass();
+            this.payloadSize = payloadSize;
+            commit();
+        }
+    }
+}
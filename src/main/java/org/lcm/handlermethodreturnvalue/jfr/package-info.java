@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.jfr;
+
+import org.springframework.lang.NonNullApi;
\ No newline at end of file
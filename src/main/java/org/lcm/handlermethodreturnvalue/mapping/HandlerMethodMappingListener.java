@@ -0,0 +1,19 @@
+package org.lcm.handlermethodreturnvalue.mapping;
+
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.lang.reflect.Method;
+
+/**
+ * 监听 ObservableRequestMappingHandlerMapping 中 Handler 方法的注册与注销
+ * 包括启动时扫描到的 Controller 方法，以及运行时通过 registerMapping() / unregisterMapping() 动态注册的方法
+ *
+ * 回调在注册或注销的线程中、ObservableRequestMappingHandlerMapping 的锁中同步执行，按照注册、注销的顺序到达，实现类不能阻塞
+ */
+public interface HandlerMethodMappingListener {
+
+    // method 为 HandlerMethod.getMethod() 持有的同一个 Method 对象
+    void onHandlerMethodRegistered(RequestMappingInfo mapping, Method method);
+
+    void onHandlerMethodUnregistered(RequestMappingInfo mapping, Method method);
+}
@@ -0,0 +1,100 @@
+package org.lcm.handlermethodreturnvalue.mapping;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 可以监听 Handler 方法注册与注销的 RequestMappingHandlerMapping
+ * 通过 WebMvcRegistrations 代替 Spring Boot 默认创建的 RequestMappingHandlerMapping
+ *
+ * 注册有两个入口
+ *  (1) registerHandlerMethod()：启动时扫描 Controller
+ *  (2) registerMapping()：运行时动态注册，例如插件、refresh scope 的 Controller
+ * 注销只有 unregisterMapping()，RequestMappingInfo 对应的 Method 由这里记录
+ *
+ * 注册、注销以及通知监听器在同一个锁中执行：
+ *  (1) 监听器按照注册、注销的顺序收到通知，不会先收到注销、后收到注册
+ *  (2) addListener(listener, initializer) 在锁中读取已经注册的 Handler 方法，再添加监听器，
+ *      监听器不会重复收到 initializer 中已有的方法，也不会漏掉之后注册的方法
+ */
+public class ObservableRequestMappingHandlerMapping extends RequestMappingHandlerMapping {
+    private final List<HandlerMethodMappingListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<RequestMappingInfo, Method> registeredMethods = new ConcurrentHashMap<>();
+    // 注册、注销与通知监听器使用的锁
+    private final Object registrationMonitor = new Object();
+
+    public void addListener(HandlerMethodMappingListener listener) {
+        addListener(listener, handlerMethods -> {});
+    }
+
+    // initializer 在锁中收到当前已经注册的 Handler 方法，返回之后才会收到新的注册、注销
+    public void addListener(HandlerMethodMappingListener listener, Consumer<Map<RequestMappingInfo, HandlerMethod>> initializer) {
+        Assert.notNull(listener, "HandlerMethodMappingListener must not be null.");
+        Assert.notNull(initializer, "initializer must not be null.");
+        synchronized (this.registrationMonitor) {
+            initializer.accept(getHandlerMethods());
+            this.listeners.add(listener);
+        }
+    }
+
+    public void removeListener(HandlerMethodMappingListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    // 注册的 HandlerMethod，getHandlerMethods() 每次复制一份，只在注册、注销时使用
+    @Nullable
+    public HandlerMethod getHandlerMethod(RequestMappingInfo mapping) {
+        return getHandlerMethods().get(mapping);
+    }
+
+    // 是否还有 RequestMappingInfo 对应这个 Method，同一个 Method 可以注册在多个 RequestMappingInfo 下
+    public boolean isRegistered(Method method) {
+        return this.registeredMethods.containsValue(method);
+    }
+
+    @Override
+    protected void registerHandlerMethod(Object handler, Method method, RequestMappingInfo mapping) {
+        synchronized (this.registrationMonitor) {
+            super.registerHandlerMethod(handler, method, mapping);
+            registered(mapping, method);
+        }
+    }
+
+    @Override
+    public void registerMapping(RequestMappingInfo mapping, Object handler, Method method) {
+        synchronized (this.registrationMonitor) {
+            super.registerMapping(mapping, handler, method);
+            registered(mapping, method);
+        }
+    }
+
+    @Override
+    public void unregisterMapping(RequestMappingInfo mapping) {
+        synchronized (this.registrationMonitor) {
+            super.unregisterMapping(mapping);
+            Method method = this.registeredMethods.remove(mapping);
+            if (method != null) {
+                for (HandlerMethodMappingListener listener : this.listeners) {
+                    listener.onHandlerMethodUnregistered(mapping, method);
+                }
+            }
+        }
+    }
+
+    private void registered(RequestMappingInfo mapping, Method method) {
+        this.registeredMethods.put(mapping, method);
+        for (HandlerMethodMappingListener listener : this.listeners) {
+            listener.onHandlerMethodRegistered(mapping, method);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.lcm.handlermethodreturnvalue.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 默认的 HandlerMethodReturnValueMetrics，在内存中按 Handler 方法记录
+ *
+ * 每个方法的 HandlerMethodMetrics 在第一次请求时创建，之后的请求只有一次 ConcurrentHashMap.get()，
+ * 计数器和直方图都是 LongAdder，不加锁，不分配对象。
+ * 可以通过 addListener() 监听新的 HandlerMethodMetrics，例如 HandlerMethodReturnValueMeterBinder 注册到 Micrometer
+ */
+public class DefaultHandlerMethodReturnValueMetrics implements HandlerMethodReturnValueMetrics {
+    // key 为 Handler 方法
+    private final Map<Method, HandlerMethodMetrics> handlerMethodMetrics = new ConcurrentHashMap<>();
+    private final List<Consumer<HandlerMethodMetrics>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void recordWrapped(Method method, long factoryNanos, long writeNanos, long responseBytes) {
+        metricsOf(method).recordWrapped(factoryNanos, writeNanos, responseBytes);
+    }
+
+    @Override
+    public void recordPassthrough(Method method) {
+        metricsOf(method).recordPassthrough();
+    }
+
+    @Override
+    public void recordDisabled(Method method) {
+        metricsOf(method).recordDisabled();
+    }
+
+    public Collection<HandlerMethodMetrics> getHandlerMethodMetrics() {
+        return handlerMethodMetrics.values();
+    }
+
+    // 已经存在的 HandlerMethodMetrics 不会通知，需要通过 getHandlerMethodMetrics() 读取
+    public void addListener(Consumer<HandlerMethodMetrics> listener) {
+        listeners.add(listener);
+    }
+
+    private HandlerMethodMetrics metricsOf(Method method) {
+        HandlerMethodMetrics metrics = handlerMethodMetrics.get(method);
+        if (metrics != null) {
+            return metrics;
+        }
+        // 不在 computeIfAbsent() 中通知，监听器不会持有 ConcurrentHashMap 的锁
+        HandlerMethodMetrics created = new HandlerMethodMetrics(method);
+        HandlerMethodMetrics existing = handlerMethodMetrics.putIfAbsent(method, created);
+        if (existing != null) {
+            return existing;
+        }
+        listeners.forEach(listener -> listener.accept(created));
+        return created;
+    }
+}
@@ -0,0 +1,90 @@
+package org.lcm.handlermethodreturnvalue.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的直方图，第 i 个桶记录 [2^(i-1), 2^i) 范围内的值，第 0 个桶记录 0
+ *
+ * 每个桶是一个 LongAdder，多线程写入时分散到不同的 Cell，不竞争同一个缓存行，不加锁。
+ * 记录一个值只需要一次 numberOfLeadingZeros 和两次 LongAdder.add()，除了 LongAdder 在首次竞争时扩容以外不分配对象。
+ * 百分位数为所在桶的上界，相对误差不超过 2 倍，用来找出代价高的 Handler 方法已经足够
+ */
+public final class FixedBucketHistogram {
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public FixedBucketHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    // 负数按照 0 记录
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        buckets[bucketOf(v)].increment();
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    // percentile 为 0 ~ 1，返回所在桶的上界，没有记录时返回 0
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    // 第 i 个桶的上界（包含）
+    public static long upperBoundOf(int bucket) {
+        return bucket == 0 ? 0 : bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    private static int bucketOf(long value) {
+        return BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+}
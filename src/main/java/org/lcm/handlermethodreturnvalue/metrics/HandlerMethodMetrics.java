@@ -0,0 +1,113 @@
+package org.lcm.handlermethodreturnvalue.metrics;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个 Handler 方法的包装指标
+ *
+ *  (1) wrapped / passthrough / disabled：包装、不包装、被 Request Header 关闭包装的次数
+ *  (2) factoryNanos：ReturnValueFactory 的耗时
+ *  (3) writeNanos：序列化并写出的耗时
+ *  (4) responseBytes：包装之后写出的字节数
+ */
+public final class HandlerMethodMetrics {
+    private final Method method;
+    private final String name;
+    private final LongAdder wrapped = new LongAdder();
+    private final LongAdder passthrough = new LongAdder();
+    private final LongAdder disabled = new LongAdder();
+    private final FixedBucketHistogram factoryNanos = new FixedBucketHistogram();
+    private final FixedBucketHistogram writeNanos = new FixedBucketHistogram();
+    private final FixedBucketHistogram responseBytes = new FixedBucketHistogram();
+
+    public HandlerMethodMetrics(Method method) {
+        this.method = method;
+        this.name = nameOf(method);
+    }
+
+    // 例如 com.example.UserController#getUser(java.lang.Long)，重载的方法、不同包中同名的 Controller 不会重复
+    public static String nameOf(Method method) {
+        StringJoiner parameterTypes = new StringJoiner(",", "(", ")");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            parameterTypes.add(parameterType.getTypeName());
+        }
+        return method.getDeclaringClass().getName() + "#" + method.getName() + parameterTypes;
+    }
+
+    void recordWrapped(long factoryNanos, long writeNanos, long responseBytes) {
+        this.wrapped.increment();
+        this.factoryNanos.record(factoryNanos);
+        this.writeNanos.record(writeNanos);
+        if (responseBytes >= 0) {
+            this.responseBytes.record(responseBytes);
+        }
+    }
+
+    void recordPassthrough() {
+        this.passthrough.increment();
+    }
+
+    void recordDisabled() {
+        this.disabled.increment();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getWrapped() {
+        return wrapped.sum();
+    }
+
+    public long getPassthrough() {
+        return passthrough.sum();
+    }
+
+    public long getDisabled() {
+        return disabled.sum();
+    }
+
+    public FixedBucketHistogram getFactoryNanos() {
+        return factoryNanos;
+    }
+
+    public FixedBucketHistogram getWriteNanos() {
+        return writeNanos;
+    }
+
+    public FixedBucketHistogram getResponseBytes() {
+        return responseBytes;
+    }
+
+    // 用于 Actuator Endpoint，只在读取时分配对象
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("method", method.toGenericString());
+        snapshot.put("wrapped", getWrapped());
+        snapshot.put("passthrough", getPassthrough());
+        snapshot.put("disabled", getDisabled());
+        snapshot.put("factoryNanos", snapshotOf(factoryNanos));
+        snapshot.put("writeNanos", snapshotOf(writeNanos));
+        snapshot.put("responseBytes", snapshotOf(responseBytes));
+        return snapshot;
+    }
+
+    private static Map<String, Object> snapshotOf(FixedBucketHistogram histogram) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", histogram.getCount());
+        snapshot.put("total", histogram.getSum());
+        snapshot.put("mean", histogram.getMean());
+        snapshot.put("p50", histogram.getValueAtPercentile(0.5));
+        snapshot.put("p99", histogram.getValueAtPercentile(0.99));
+        snapshot.put("max", histogram.getMax());
+        return snapshot;
+    }
+}
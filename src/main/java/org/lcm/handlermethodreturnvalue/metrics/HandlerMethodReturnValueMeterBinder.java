@@ -0,0 +1,71 @@
+package org.lcm.handlermethodreturnvalue.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把 DefaultHandlerMethodReturnValueMetrics 注册到 Micrometer
+ *
+ * 使用 FunctionCounter / FunctionTimer / Gauge，抓取时才读取 LongAdder，请求线程不经过 Micrometer。
+ * 每个 Handler 方法一组 Meter，tag method 为 HandlerMethodMetrics.getName()：
+ *  (1) handler.method.return.value.requests：outcome 为 wrapped / passthrough / disabled
+ *  (2) handler.method.return.value.factory / handler.method.return.value.write：耗时
+ *  (3) handler.method.return.value.factory.max / handler.method.return.value.write.max：最大耗时（纳秒）
+ *  (4) handler.method.return.value.response.bytes：包装之后写出的字节数之和
+ */
+public class HandlerMethodReturnValueMeterBinder implements MeterBinder {
+    private static final String PREFIX = "handler.method.return.value";
+
+    private final DefaultHandlerMethodReturnValueMetrics metrics;
+
+    public HandlerMethodReturnValueMeterBinder(DefaultHandlerMethodReturnValueMetrics metrics) {
+        Assert.notNull(metrics, "DefaultHandlerMethodReturnValueMetrics must not be null.");
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // 先监听，再注册已经存在的方法，Micrometer 对同名同 tag 的 Meter 只注册一次
+        metrics.addListener(handlerMethodMetrics -> bindTo(registry, handlerMethodMetrics));
+        metrics.getHandlerMethodMetrics().forEach(handlerMethodMetrics -> bindTo(registry, handlerMethodMetrics));
+    }
+
+    private static void bindTo(MeterRegistry registry, HandlerMethodMetrics metrics) {
+        Tags tags = Tags.of("method", metrics.getName());
+        counter(registry, metrics, tags.and("outcome", "wrapped"), HandlerMethodMetrics::getWrapped);
+        counter(registry, metrics, tags.and("outcome", "passthrough"), HandlerMethodMetrics::getPassthrough);
+        counter(registry, metrics, tags.and("outcome", "disabled"), HandlerMethodMetrics::getDisabled);
+        timer(registry, metrics, tags, "factory", metrics.getFactoryNanos());
+        timer(registry, metrics, tags, "write", metrics.getWriteNanos());
+        FunctionCounter.builder(PREFIX + ".response.bytes", metrics, m -> m.getResponseBytes().getSum())
+                .tags(tags)
+                .baseUnit("bytes")
+                .description("Bytes of the wrapped response body written")
+                .register(registry);
+    }
+
+    private static void counter(MeterRegistry registry, HandlerMethodMetrics metrics, Tags tags, ToDoubleFunction<HandlerMethodMetrics> count) {
+        FunctionCounter.builder(PREFIX + ".requests", metrics, count)
+                .tags(tags)
+                .description("Return values handled by HandlerMethodReturnValueAnnotatedHandler")
+                .register(registry);
+    }
+
+    private static void timer(MeterRegistry registry, HandlerMethodMetrics metrics, Tags tags, String name, FixedBucketHistogram histogram) {
+        FunctionTimer.builder(PREFIX + "." + name, metrics, m -> histogram.getCount(), m -> histogram.getSum(), TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(PREFIX + "." + name + ".max", metrics, m -> histogram.getMax())
+                .tags(tags)
+                .baseUnit("nanoseconds")
+                .register(registry);
+    }
+}
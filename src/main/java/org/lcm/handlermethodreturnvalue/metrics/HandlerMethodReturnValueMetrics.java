@@ -0,0 +1,40 @@
+package org.lcm.handlermethodreturnvalue.metrics;
+
+import java.lang.reflect.Method;
+
+/**
+ * 包装的指标 SPI，HandlerMethodReturnValueAnnotatedHandler 在每次请求时调用
+ *
+ * 实现必须是线程安全的，并且不应该在请求线程中分配对象、加锁或者阻塞，
+ * 所有参数都是基本类型，调用本身不会装箱。
+ * 默认实现为 DefaultHandlerMethodReturnValueMetrics，可以注册自己的 Bean 代替
+ */
+public interface HandlerMethodReturnValueMetrics {
+
+    // 不记录，HandlerMethodReturnValueAnnotatedHandler 看到 NOOP 时也不会调用 System.nanoTime()
+    HandlerMethodReturnValueMetrics NOOP = new HandlerMethodReturnValueMetrics() {
+        @Override
+        public void recordWrapped(Method method, long factoryNanos, long writeNanos, long responseBytes) {
+        }
+
+        @Override
+        public void recordPassthrough(Method method) {
+        }
+
+        @Override
+        public void recordDisabled(Method method) {
+        }
+    };
+
+    // 包装之后写出
+    // factoryNanos：ReturnValueFactory 创建 ReturnValue 或者 data 的时间
+    // writeNanos：RequestResponseBodyMethodProcessor 序列化并写出的时间
+    // responseBytes：实际写出到 Response 的字节数（信封和 data），ETag 相同响应 304 时为 0，无法统计时为 -1
+    void recordWrapped(Method method, long factoryNanos, long writeNanos, long responseBytes);
+
+    // 不包装，例如 ReturnValue、Resource / byte[] / InputStream、包装计划为 PASSTHROUGH
+    void recordPassthrough(Method method);
+
+    // Request Header 中有 DISABLE 字段，不包装
+    void recordDisabled(Method method);
+}
@@ -0,0 +1,34 @@
+package org.lcm.handlermethodreturnvalue.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.util.Assert;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator Endpoint：/actuator/handlermethodreturnvalue
+ *
+ * 按 Handler 方法列出包装指标，按 ReturnValueFactory 与写出的总耗时从高到低排序，排在前面的就是包装代价最高的方法
+ */
+@Endpoint(id = "handlermethodreturnvalue")
+public class HandlerMethodReturnValueMetricsEndpoint {
+    private final DefaultHandlerMethodReturnValueMetrics metrics;
+
+    public HandlerMethodReturnValueMetricsEndpoint(DefaultHandlerMethodReturnValueMetrics metrics) {
+        Assert.notNull(metrics, "DefaultHandlerMethodReturnValueMetrics must not be null.");
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> handlerMethods() {
+        Map<String, Object> handlerMethods = new LinkedHashMap<>();
+        metrics.getHandlerMethodMetrics().stream()
+                .sorted(Comparator.comparingLong((HandlerMethodMetrics m) ->
+                        m.getFactoryNanos().getSum() + m.getWriteNanos().getSum()).reversed())
+                .forEach(m -> handlerMethods.put(m.getName(), m.snapshot()));
+        return handlerMethods;
+    }
+}
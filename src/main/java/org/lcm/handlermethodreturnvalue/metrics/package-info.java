@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.metrics;
+
+import org.springframework.lang.NonNullApi;
\ No newline at end of file
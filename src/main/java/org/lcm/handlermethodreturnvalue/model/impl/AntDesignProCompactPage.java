@@ -0,0 +1,29 @@
+package org.lcm.handlermethodreturnvalue.model.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * 紧凑的分页，只包含 Ant Design Pro 表格需要的 list / current / pageSize / total
+ * 不重复写出 Spring Data Page 的 number / size / totalElements，也不序列化 Pageable 与 Sort
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AntDesignProCompactPage {
+    private List<?> list;
+    private int current;
+    private int pageSize;
+    private long total;
+
+    public AntDesignProCompactPage(Page<?> page){
+        this.list = page.getContent();
+        this.current = page.getNumber();
+        this.pageSize = page.getSize();
+        this.total = page.getTotalElements();
+    }
+}
@@ -1,5 +1,6 @@
 package org.lcm.handlermethodreturnvalue.model.impl;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,6 +20,13 @@ public class AntDesignProReturnValue  implements ReturnValue {
     private Object data;
     private Integer code;
     private String status;
+    // 失败时的说明，Ant Design Pro 的 errorHandler 读取 errorMessage，成功时为 null，不写出
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String errorMessage;
+
+    public AntDesignProReturnValue(Boolean success, Object data, Integer code, String status) {
+        this(success, data, code, status, null);
+    }
 
     public void setPage(Page<?> page){
         this.data = new AntDesignProPage(page);
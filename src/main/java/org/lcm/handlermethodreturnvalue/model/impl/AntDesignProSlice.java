@@ -0,0 +1,33 @@
+package org.lcm.handlermethodreturnvalue.model.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * Spring Data Slice 的分页，查询时不需要 COUNT
+ *
+ * Slice 没有总数，total 为已经读到的元素个数，还有下一页时再加 1，
+ * Ant Design Pro 的表格按 total 显示"下一页"，翻到最后一页时 total 为真实的总数
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AntDesignProSlice {
+    private List<?> list;
+    private int current;
+    private int pageSize;
+    private long total;
+    private boolean hasNext;
+
+    public AntDesignProSlice(Slice<?> slice){
+        this.list = slice.getContent();
+        this.current = slice.getNumber();
+        this.pageSize = slice.getSize();
+        this.hasNext = slice.hasNext();
+        this.total = (long) slice.getNumber() * slice.getSize() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+    }
+}
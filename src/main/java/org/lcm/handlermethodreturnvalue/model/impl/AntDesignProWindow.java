@@ -0,0 +1,46 @@
+package org.lcm.handlermethodreturnvalue.model.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.OffsetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+
+/**
+ * Spring Data Window（keyset / offset 滚动查询）的分页，查询时不需要 COUNT
+ *
+ * cursor 为最后一个元素的位置，用于查询下一页，没有下一页时为 null
+ *  (1) KeysetScrollPosition - keyset 的属性与值
+ *  (2) OffsetScrollPosition - offset
+ * Ant Design Pro 的表格使用 list，"加载更多"按 hasNext 判断
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AntDesignProWindow {
+    private List<?> list;
+    private boolean hasNext;
+    private Object cursor;
+
+    public AntDesignProWindow(Window<?> window){
+        this.list = window.getContent();
+        this.hasNext = window.hasNext();
+        if (window.hasNext() && !window.isEmpty()) {
+            this.cursor = cursorOf(window.positionAt(window.size() - 1));
+        }
+    }
+
+    private static Object cursorOf(ScrollPosition position) {
+        if (position instanceof KeysetScrollPosition keyset) {
+            return keyset.getKeys();
+        }
+        if (position instanceof OffsetScrollPosition offset) {
+            return offset.getOffset();
+        }
+        return position;
+    }
+}
@@ -1,5 +1,6 @@
 package org.lcm.handlermethodreturnvalue.model.impl;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,4 +19,11 @@ public class SimpleReturnValue implements ReturnValue {
     private Object data;
     private Integer code;
     private String status;
+    // 失败时的说明，成功时为 null，不写出
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String message;
+
+    public SimpleReturnValue(Boolean success, Object data, Integer code, String status) {
+        this(success, data, code, status, null);
+    }
 }
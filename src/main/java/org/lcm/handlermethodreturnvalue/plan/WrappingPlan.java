@@ -0,0 +1,56 @@
+package org.lcm.handlermethodreturnvalue.plan;
+
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+
+/**
+ * 一个 Handler 方法的包装计划，启动时由 WrappingPlanCompiler 生成，之后只读
+ *
+ *  (1) factory：使用哪个 ReturnValueFactory
+ *  (2) strategy：不包装、包装为 data、还是包装为分页
+ *  (3) envelopeTemplate：factory 对应的预先编码的信封，未启用时为 null
+ */
+public final class WrappingPlan {
+    private final Method method;
+    private final ReturnValueFactory<? extends ReturnValue> factory;
+    private final WrappingStrategy strategy;
+    @Nullable
+    private final EnvelopeTemplate envelopeTemplate;
+
+    public WrappingPlan(Method method,
+                        ReturnValueFactory<? extends ReturnValue> factory,
+                        WrappingStrategy strategy,
+                        @Nullable EnvelopeTemplate envelopeTemplate) {
+        this.method = method;
+        this.factory = factory;
+        this.strategy = strategy;
+        this.envelopeTemplate = envelopeTemplate;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public ReturnValueFactory<? extends ReturnValue> getFactory() {
+        return factory;
+    }
+
+    public WrappingStrategy getStrategy() {
+        return strategy;
+    }
+
+    @Nullable
+    public EnvelopeTemplate getEnvelopeTemplate() {
+        return envelopeTemplate;
+    }
+
+    @Override
+    public String toString() {
+        return strategy + " " + factory.getClass().getSimpleName() + " " + method;
+    }
+}
@@ -0,0 +1,198 @@
+package org.lcm.handlermethodreturnvalue.plan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+
+import java.io.InputStream;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 启动时为每个需要包装的 Handler 方法生成 WrappingPlan
+ *
+ * 对于同一个 Handler 方法，使用哪个 ReturnValueFactory、如何包装都是固定的，
+ * 在启动时确定下来，请求时 HandlerMethodReturnValueAnnotatedHandler 直接执行计划，不需要再判断。
+ *
+ * 按照注解判断哪些 Handler 方法需要计划（isAnnotated()），不依赖 HandlerMethodReturnValueAnnotatedHandlerMethodCache：
+ * 有的缓存在请求时才填充（例如 V3 / V4），启动时 contains() 为 false，factory 也要生效。
+ * 缓存判断为不需要包装的方法不会到达 HandlerMethodReturnValueAnnotatedHandler，多出的计划不会被使用。
+ *
+ * ReturnValueFactory 的选择
+ *  (1) 方法上的 @HandlerMethodReturnValue(factory = ...)
+ *  (2) 类上的 @HandlerMethodReturnValue(factory = ...)
+ *  (3) 默认，容器中的 ReturnValueFactory Bean
+ *  factory 指定的类型如果在容器中有唯一的 Bean，则使用该 Bean，否则使用无参构造器创建
+ */
+public class WrappingPlanCompiler {
+    private final BeanFactory beanFactory;
+    private final ReturnValueFactory<? extends ReturnValue> defaultReturnValueFactory;
+    // 为 null 时不预先编码信封
+    @Nullable
+    private final ObjectMapper envelopeObjectMapper;
+    // 识别 Mono / Flux / Publisher 等 Reactive 类型，使用应用配置的 ReactiveAdapterRegistry
+    private final ReactiveAdapterRegistry reactiveAdapterRegistry;
+    private final Map<Class<?>, ReturnValueFactory<? extends ReturnValue>> returnValueFactories = new HashMap<>();
+    private final Map<ReturnValueFactory<?>, Optional<EnvelopeTemplate>> envelopeTemplates = new IdentityHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(WrappingPlanCompiler.class);
+    // 由 CallableMethodReturnValueHandler / DeferredResultMethodReturnValueHandler / AsyncTaskMethodReturnValueHandler 处理的类型，Reactive 类型由 reactiveAdapterRegistry 识别
+    private static final List<Class<?>> ASYNC_TYPES = List.of(CompletionStage.class, DeferredResult.class, Callable.class, WebAsyncTask.class);
+    // WebFlux 应用中没有 spring-webmvc，为 null
+    @Nullable
+    private static final Class<?> STREAMING_RESPONSE_BODY = ClassUtils.isPresent(
+            "org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody", WrappingPlanCompiler.class.getClassLoader()) ?
+            ClassUtils.resolveClassName("org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody", WrappingPlanCompiler.class.getClassLoader()) :
+            null;
+
+    public WrappingPlanCompiler(BeanFactory beanFactory,
+                                ReturnValueFactory<? extends ReturnValue> defaultReturnValueFactory,
+                                @Nullable ObjectMapper envelopeObjectMapper) {
+        this(beanFactory, defaultReturnValueFactory, envelopeObjectMapper, ReactiveAdapterRegistry.getSharedInstance());
+    }
+
+    public WrappingPlanCompiler(BeanFactory beanFactory,
+                                ReturnValueFactory<? extends ReturnValue> defaultReturnValueFactory,
+                                @Nullable ObjectMapper envelopeObjectMapper,
+                                ReactiveAdapterRegistry reactiveAdapterRegistry) {
+        Assert.notNull(reactiveAdapterRegistry, "ReactiveAdapterRegistry must not be null.");
+        this.reactiveAdapterRegistry = reactiveAdapterRegistry;
+        this.beanFactory = beanFactory;
+        this.defaultReturnValueFactory = defaultReturnValueFactory;
+        this.envelopeObjectMapper = envelopeObjectMapper;
+    }
+
+    public WrappingPlans compile(Iterable<HandlerMethod> handlerMethods) {
+        Map<Method, WrappingPlan> plans = new IdentityHashMap<>();
+        for (HandlerMethod handlerMethod : handlerMethods) {
+            Method method = handlerMethod.getMethod();
+            if (isAnnotated(handlerMethod) && !plans.containsKey(method)) {
+                plans.put(method, compile(handlerMethod));
+            }
+        }
+        logger.info("Wrapping plans compiled: " + plans.size());
+        return new WrappingPlans(plans);
+    }
+
+    public WrappingPlan compile(HandlerMethod handlerMethod) {
+        MethodParameter returnType = asyncResultTypeOf(handlerMethod.getReturnType());
+        ReturnValueFactory<? extends ReturnValue> factory = resolveReturnValueFactory(handlerMethod);
+        WrappingStrategy strategy = resolveStrategy(factory, returnType);
+        return new WrappingPlan(handlerMethod.getMethod(), factory, strategy, envelopeTemplateOf(factory));
+    }
+
+    // 有 @ResponseBody（包括 @RestController）和 @HandlerMethodReturnValue，方法上或者类上
+    public static boolean isAnnotated(HandlerMethod handlerMethod) {
+        Method method = handlerMethod.getMethod();
+        Class<?> beanType = handlerMethod.getBeanType();
+        return (AnnotatedElementUtils.hasAnnotation(method, ResponseBody.class) ||
+                AnnotatedElementUtils.hasAnnotation(beanType, ResponseBody.class)) &&
+                (AnnotatedElementUtils.hasAnnotation(method, HandlerMethodReturnValue.class) ||
+                        AnnotatedElementUtils.hasAnnotation(beanType, HandlerMethodReturnValue.class));
+    }
+
+    // 每个 ReturnValueFactory 只预先编码一次
+    @Nullable
+    public EnvelopeTemplate envelopeTemplateOf(ReturnValueFactory<? extends ReturnValue> factory) {
+        if (envelopeObjectMapper == null) {
+            return null;
+        }
+        return envelopeTemplates.computeIfAbsent(factory, f -> {
+            if (f instanceof PreEncodableReturnValueFactory<?> preEncodableReturnValueFactory) {
+                return Optional.of(EnvelopeTemplate.of(envelopeObjectMapper, preEncodableReturnValueFactory));
+            }
+            logger.warn("Streaming envelope is disabled for " + f.getClass().getName() + ": not a PreEncodableReturnValueFactory");
+            return Optional.empty();
+        }).orElse(null);
+    }
+
+    private ReturnValueFactory<? extends ReturnValue> resolveReturnValueFactory(HandlerMethod handlerMethod) {
+        Class<?> factoryType = factoryTypeOf(handlerMethod.getMethod());
+        if (factoryType == null) {
+            factoryType = factoryTypeOf(handlerMethod.getBeanType());
+        }
+        if (factoryType == null) {
+            factoryType = factoryTypeOf(handlerMethod.getMethod().getDeclaringClass());
+        }
+        if (factoryType == null) {
+            return defaultReturnValueFactory;
+        }
+        return returnValueFactories.computeIfAbsent(factoryType, this::instantiateReturnValueFactory);
+    }
+
+    // 没有注解，或者注解没有指定 factory 时返回 null
+    @Nullable
+    private static Class<?> factoryTypeOf(AnnotatedElement element) {
+        HandlerMethodReturnValue annotation = AnnotatedElementUtils.findMergedAnnotation(element, HandlerMethodReturnValue.class);
+        if (annotation == null || annotation.factory() == ReturnValueFactory.class) {
+            return null;
+        }
+        return annotation.factory();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReturnValueFactory<? extends ReturnValue> instantiateReturnValueFactory(Class<?> type) {
+        Class<ReturnValueFactory<? extends ReturnValue>> factoryType = (Class<ReturnValueFactory<? extends ReturnValue>>) type;
+        return beanFactory.getBeanProvider(factoryType).getIfUnique(() -> BeanUtils.instantiateClass(factoryType));
+    }
+
+    // 异步返回值的结果类型，非异步返回值返回 returnType 本身
+    // Mono / Flux 等 Reactive 类型按照泛型参数生成计划，例如 Mono<Page<T>> 为 Page<T>，Flux<T> 为 T，
+    // WebFlux 中由 HandlerMethodReturnValueResultHandler 执行，Spring MVC 中由 ReactiveTypeHandler 完成之后再次分派执行
+    private MethodParameter asyncResultTypeOf(MethodParameter returnType) {
+        Class<?> type = returnType.getParameterType();
+        for (Class<?> asyncType : ASYNC_TYPES) {
+            if (asyncType.isAssignableFrom(type)) {
+                return returnType.nested();
+            }
+        }
+        if (reactiveAdapterRegistry.getAdapter(type) != null) {
+            return returnType.nested();
+        }
+        return returnType;
+    }
+
+    private static WrappingStrategy resolveStrategy(ReturnValueFactory<? extends ReturnValue> factory, MethodParameter returnType) {
+        Class<?> type = returnType.getNestedParameterType();
+        if (ReturnValue.class.isAssignableFrom(type) || isBinaryType(type)) {
+            // 已经是 ReturnValue，或者是二进制数据，不包装
+            return WrappingStrategy.PASSTHROUGH;
+        }
+        return factory.resolveStrategy(returnType);
+    }
+
+    // Resource / byte[] / InputStream，以及由其他 HandlerMethodReturnValueHandler 处理的 ResponseEntity / StreamingResponseBody
+    private static boolean isBinaryType(Class<?> type) {
+        return Resource.class.isAssignableFrom(type) ||
+                type == byte[].class ||
+                InputStream.class.isAssignableFrom(type) ||
+                HttpEntity.class.isAssignableFrom(type) ||
+                (STREAMING_RESPONSE_BODY != null && STREAMING_RESPONSE_BODY.isAssignableFrom(type));
+    }
+}
@@ -0,0 +1,59 @@
+package org.lcm.handlermethodreturnvalue.plan;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 所有 Handler 方法的包装计划
+ * key 为 HandlerMethod 持有的 Method 对象本身，使用 IdentityHashMap
+ *
+ * 当前状态是一个不可变的快照，运行时注册、注销 Handler 方法时（live-refresh）复制一份新的快照，
+ * 再通过 AtomicReference CAS 整体替换。读取只有一次 volatile 读和一次 IdentityHashMap 查找，不加锁
+ */
+public final class WrappingPlans {
+    private final AtomicReference<Map<Method, WrappingPlan>> plans;
+
+    WrappingPlans(Map<Method, WrappingPlan> plans) {
+        this.plans = new AtomicReference<>(Collections.unmodifiableMap(plans));
+    }
+
+    @Nullable
+    public WrappingPlan get(@Nullable Method method) {
+        return plans.get().get(method);
+    }
+
+    public int size() {
+        return plans.get().size();
+    }
+
+    public Collection<WrappingPlan> values() {
+        return plans.get().values();
+    }
+
+    // 运行时注册的 Handler 方法，已有计划时替换
+    public void put(WrappingPlan plan) {
+        plans.updateAndGet(current -> {
+            Map<Method, WrappingPlan> next = new IdentityHashMap<>(current);
+            next.put(plan.getMethod(), plan);
+            return Collections.unmodifiableMap(next);
+        });
+    }
+
+    // 运行时注销的 Handler 方法
+    public void remove(Method method) {
+        plans.updateAndGet(current -> {
+            if (!current.containsKey(method)) {
+                return current;
+            }
+            Map<Method, WrappingPlan> next = new IdentityHashMap<>(current);
+            next.remove(method);
+            return Collections.unmodifiableMap(next);
+        });
+    }
+}
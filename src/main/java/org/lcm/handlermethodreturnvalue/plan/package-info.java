@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.plan;
+
+import org.springframework.lang.NonNullApi;
@@ -0,0 +1,178 @@
+package org.lcm.handlermethodreturnvalue.projection;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import org.lcm.handlermethodreturnvalue.envelope.BeanPropertyWriters;
+import org.lcm.handlermethodreturnvalue.envelope.PreEncodedEnvelope;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译之后的字段投影树，例如 fields=id,name,owner.name 编译为
+ *   {id: LEAF, name: LEAF, owner: {name: LEAF}}
+ * LEAF 表示完整地序列化这个属性
+ *
+ * 路径相对于 data 中的每一个元素：data 为集合、数组时作用于每一个元素，
+ * data 为分页（AntDesignProPage、Spring Data Slice 等）时作用于 list / content 中的每一个元素，其他分页属性完整序列化
+ *
+ * 每个节点缓存每个 BeanSerializer 中需要写出的 BeanPropertyWriter，之后的请求直接遍历，不再匹配属性名。
+ * 投影只会减少属性：当前 @JsonView 隐藏的属性即使在字段列表中也不写出；
+ * 有 @JsonFilter、@JsonAnyGetter、@JsonTypeInfo 的 Bean 无法逐个属性写出而不改变内容，不投影，完整序列化
+ */
+public final class FieldProjection {
+    static final FieldProjection LEAF = new FieldProjection(Collections.emptyMap(), false);
+
+    // 分页中被投影的集合属性
+    private static final String[] PAGE_CONTENT_PROPERTIES = {"list", "content"};
+
+    private final Map<String, FieldProjection> children;
+    // 为 true 时，children 以外的属性完整序列化，用于信封与分页本身
+    private final boolean includeOthers;
+    // key 为 BeanSerializer 与 @JsonView，不同的 ObjectMapper（JSON、CBOR）各自缓存
+    private final Map<PropertiesKey, Optional<ProjectedProperty[]>> properties = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile FieldProjection envelopeProjection;
+    @Nullable
+    private volatile FieldProjection pageProjection;
+
+    private FieldProjection(Map<String, FieldProjection> children, boolean includeOthers) {
+        this.children = children;
+        this.includeOthers = includeOthers;
+    }
+
+    // 返回 null 表示没有有效的字段
+    @Nullable
+    public static FieldProjection parse(String fields) {
+        Map<String, Object> tree = new HashMap<>();
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> node = tree;
+            String[] names = field.split("\\.");
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].trim();
+                if (name.isEmpty()) {
+                    break;
+                }
+                Object child = node.get(name);
+                if (child == LEAF) {
+                    // 已经完整序列化，例如 fields=owner,owner.name
+                    break;
+                }
+                if (i == names.length - 1) {
+                    node.put(name, LEAF);
+                    break;
+                }
+                if (child == null) {
+                    child = new HashMap<String, Object>();
+                    node.put(name, child);
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> next = (Map<String, Object>) child;
+                node = next;
+            }
+        }
+        return tree.isEmpty() ? null : compile(tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FieldProjection compile(Map<String, Object> tree) {
+        Map<String, FieldProjection> children = new HashMap<>(tree.size() * 2);
+        for (Map.Entry<String, Object> entry : tree.entrySet()) {
+            Object child = entry.getValue();
+            children.put(entry.getKey(), child == LEAF ? LEAF : compile((Map<String, Object>) child));
+        }
+        return new FieldProjection(Map.copyOf(children), false);
+    }
+
+    /**
+     * 投影写出的信封中的 data
+     *  (1) PreEncodedEnvelope - 常量部分不变，只投影 data
+     *  (2) ReturnValue - data 以外的属性完整序列化
+     */
+    public Object project(Object envelope) {
+        if (envelope instanceof PreEncodedEnvelope preEncodedEnvelope) {
+            return new PreEncodedEnvelope(preEncodedEnvelope.getTemplate(), new ProjectedData(preEncodedEnvelope.getData(), this));
+        }
+        return new ProjectedData(envelope, envelopeProjection());
+    }
+
+    boolean isLeaf() {
+        return this == LEAF;
+    }
+
+    @Nullable
+    FieldProjection child(String name) {
+        FieldProjection child = children.get(name);
+        return child != null || !includeOthers ? child : LEAF;
+    }
+
+    private FieldProjection envelopeProjection() {
+        FieldProjection projection = this.envelopeProjection;
+        if (projection == null) {
+            projection = new FieldProjection(Map.of("data", this), true);
+            this.envelopeProjection = projection;
+        }
+        return projection;
+    }
+
+    // 分页本身完整序列化，list / content 中的元素使用这个投影
+    FieldProjection pageProjection() {
+        FieldProjection projection = this.pageProjection;
+        if (projection == null) {
+            Map<String, FieldProjection> pageChildren = new HashMap<>();
+            for (String name : PAGE_CONTENT_PROPERTIES) {
+                pageChildren.put(name, this);
+            }
+            projection = new FieldProjection(Map.copyOf(pageChildren), true);
+            this.pageProjection = projection;
+        }
+        return projection;
+    }
+
+    /**
+     * 按 BeanSerializer 中属性的顺序，只保留当前 @JsonView 下会写出、并且在投影中的属性。
+     * Bean 有 @JsonFilter、@JsonAnyGetter、@JsonTypeInfo 等时返回 null，完整序列化（BeanPropertyWriters）
+     */
+    @Nullable
+    ProjectedProperty[] propertiesOf(BeanSerializerBase serializer, SerializerProvider serializers) throws JsonMappingException {
+        PropertiesKey key = new PropertiesKey(serializer, serializers.getActiveView());
+        Optional<ProjectedProperty[]> projected = properties.get(key);
+        if (projected != null) {
+            return projected.orElse(null);
+        }
+        BeanPropertyWriter[] visible = BeanPropertyWriters.of(serializer, serializers);
+        if (visible == null) {
+            projected = Optional.empty();
+        } else {
+            List<ProjectedProperty> list = new ArrayList<>();
+            for (BeanPropertyWriter writer : visible) {
+                FieldProjection child = child(writer.getName());
+                if (child != null) {
+                    list.add(new ProjectedProperty(writer, child));
+                }
+            }
+            projected = Optional.of(list.toArray(new ProjectedProperty[0]));
+        }
+        properties.putIfAbsent(key, projected);
+        return projected.orElse(null);
+    }
+
+    record ProjectedProperty(BeanPropertyWriter writer, FieldProjection projection) {
+    }
+
+    private record PropertiesKey(JsonSerializer<?> serializer, @Nullable Class<?> view) {
+    }
+}
@@ -0,0 +1,83 @@
+package org.lcm.handlermethodreturnvalue.projection;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 从请求参数或者 Request Header 中读取字段列表，例如 ?fields=id,name,owner.name
+ * 请求参数优先，没有时读取 Request Header
+ *
+ * 每个 Handler 方法、每个字段列表只编译一次 FieldProjection。
+ * 字段列表来自客户端，最多缓存 maxSize 个，超过之后每次编译，不再缓存
+ */
+public class FieldProjections {
+    public static final String DEFAULT_PARAMETER_NAME = "fields";
+    public static final String DEFAULT_HEADER_NAME = "X-HMRV-Fields";
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final String parameterName;
+    private final String headerName;
+    private final int maxSize;
+    private final Map<Key, Optional<FieldProjection>> projections = new ConcurrentHashMap<>();
+
+    public FieldProjections() {
+        this(DEFAULT_PARAMETER_NAME, DEFAULT_HEADER_NAME);
+    }
+
+    public FieldProjections(String parameterName, String headerName) {
+        this(parameterName, headerName, DEFAULT_MAX_SIZE);
+    }
+
+    public FieldProjections(String parameterName, String headerName, int maxSize) {
+        Assert.hasText(parameterName, "parameterName must not be empty.");
+        Assert.hasText(headerName, "headerName must not be empty.");
+        this.parameterName = parameterName;
+        this.headerName = headerName;
+        this.maxSize = maxSize;
+    }
+
+    // 没有字段列表时返回 null，完整序列化
+    @Nullable
+    public FieldProjection resolve(NativeWebRequest webRequest, Method method) {
+        String fields = webRequest.getParameter(parameterName);
+        if (!StringUtils.hasText(fields)) {
+            fields = webRequest.getHeader(headerName);
+            if (!StringUtils.hasText(fields)) {
+                return null;
+            }
+        }
+        Key key = new Key(method, fields);
+        Optional<FieldProjection> projection = projections.get(key);
+        if (projection == null) {
+            projection = Optional.ofNullable(FieldProjection.parse(fields));
+            if (projections.size() < maxSize) {
+                projections.putIfAbsent(key, projection);
+            }
+        }
+        return projection.orElse(null);
+    }
+
+    // 请求参数或者 Request Header 中有字段列表
+    public boolean isRequested(HttpServletRequest request) {
+        return StringUtils.hasText(request.getParameter(parameterName)) || StringUtils.hasText(request.getHeader(headerName));
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    private record Key(Method method, String fields) {
+    }
+}
@@ -0,0 +1,135 @@
+package org.lcm.handlermethodreturnvalue.projection;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProCompactPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProPage;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProSlice;
+import org.lcm.handlermethodreturnvalue.model.impl.AntDesignProWindow;
+import org.springframework.data.domain.Slice;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 按 FieldProjection 序列化 data
+ *
+ * 直接使用 Jackson 为每个类创建的 BeanSerializer 中的 BeanPropertyWriter，只写出投影中的属性，
+ * 不创建中间的 Map，@JsonInclude、命名策略、属性的自定义序列化器仍然生效。
+ *  (1) 集合、数组 - 每个元素使用同一个投影
+ *  (2) Map - 按 key 投影
+ *  (3) 分页 - list / content 中的元素使用投影，其他属性完整序列化
+ *  (4) 其他不是 BeanSerializer 的值，例如 String、数字、日期，完整序列化
+ *  (5) 有 @JsonFilter、@JsonAnyGetter、@JsonTypeInfo 的 Bean 完整序列化；@JsonView 隐藏的属性不写出
+ * Stream / Iterator / Streamable 逐个元素写出的 data、ResponseBodyEmitter / SseEmitter 不投影
+ */
+public final class ProjectedData implements JsonSerializable {
+    private final Object value;
+    private final FieldProjection projection;
+
+    public ProjectedData(Object value, FieldProjection projection) {
+        this.value = value;
+        this.projection = projection;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        write(value, projection, gen, serializers);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+    private static void write(@Nullable Object value, FieldProjection projection, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (value == null) {
+            serializers.defaultSerializeNull(gen);
+            return;
+        }
+        if (projection.isLeaf()) {
+            serializers.defaultSerializeValue(value, gen);
+            return;
+        }
+        if (isPage(value)) {
+            writeBean(value, projection.pageProjection(), gen, serializers);
+            return;
+        }
+        if (value instanceof Collection<?> collection) {
+            gen.writeStartArray(collection, collection.size());
+            for (Object element : collection) {
+                write(element, projection, gen, serializers);
+            }
+            gen.writeEndArray();
+            return;
+        }
+        if (value instanceof Object[] array) {
+            gen.writeStartArray(array, array.length);
+            for (Object element : array) {
+                write(element, projection, gen, serializers);
+            }
+            gen.writeEndArray();
+            return;
+        }
+        if (value instanceof Map<?, ?> map) {
+            gen.writeStartObject(map);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String name = String.valueOf(entry.getKey());
+                FieldProjection child = projection.child(name);
+                if (child != null) {
+                    gen.writeFieldName(name);
+                    write(entry.getValue(), child, gen, serializers);
+                }
+            }
+            gen.writeEndObject();
+            return;
+        }
+        writeBean(value, projection, gen, serializers);
+    }
+
+    private static void writeBean(Object value, FieldProjection projection, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        JsonSerializer<Object> serializer = serializers.findValueSerializer(value.getClass());
+        if (!(serializer instanceof BeanSerializerBase beanSerializer)) {
+            serializer.serialize(value, gen, serializers);
+            return;
+        }
+        FieldProjection.ProjectedProperty[] properties = projection.propertiesOf(beanSerializer, serializers);
+        if (properties == null) {
+            serializer.serialize(value, gen, serializers);
+            return;
+        }
+        gen.writeStartObject(value);
+        for (FieldProjection.ProjectedProperty property : properties) {
+            try {
+                if (property.projection().isLeaf()) {
+                    property.writer().serializeAsField(value, gen, serializers);
+                } else {
+                    Object propertyValue = property.writer().get(value);
+                    gen.writeFieldName(property.writer().getSerializedName());
+                    write(propertyValue, property.projection(), gen, serializers);
+                }
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw JsonMappingException.from(gen, "Can not project property " + property.writer().getName(), e);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static boolean isPage(Object value) {
+        return value instanceof AntDesignProPage || value instanceof AntDesignProCompactPage ||
+                value instanceof AntDesignProSlice || value instanceof AntDesignProWindow || value instanceof Slice;
+    }
+}
@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.projection;
+
+import org.springframework.lang.NonNullApi;
@@ -0,0 +1,281 @@
+package org.lcm.handlermethodreturnvalue.reactive;
+
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.envelope.EnvelopeTemplate;
+import org.lcm.handlermethodreturnvalue.envelope.PreEncodedEnvelope;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlan;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlanCompiler;
+import org.reactivestreams.Publisher;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerResult;
+import org.springframework.web.reactive.accept.RequestedContentTypeResolver;
+import org.springframework.web.reactive.result.method.annotation.ResponseBodyResultHandler;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebFlux 版本的 HandlerMethodReturnValueAnnotatedHandler
+ *
+ * 继承 ResponseBodyResultHandler，排在它的前面（order = DEFAULT_ORDER），只处理有 @HandlerMethodReturnValue 的 Handler 方法，
+ * 与 Servlet 版本使用相同的 ReturnValueFactory、WrappingPlanCompiler 和 DisableHandlerMethodReturnValueHeader。
+ *
+ * 不阻塞，按照返回值的类型
+ *  (1) 非 Reactive 类型：包装后写出
+ *  (2) Mono：map 为包装后的值，空的 Mono 与 void 相同，包装为 data 为 null 的信封
+ *  (3) Flux，流式的 MediaType（text/event-stream、application/x-ndjson）：每个元素分别包装，
+ *      ServerSentEvent 只包装其中的 data，保留 id、event 等字段
+ *  (4) Flux，其他 MediaType：Jackson2JsonEncoder 逐个元素编码为 JSON 数组，
+ *      在前后写出预先编码的信封 prefix / suffix 字节，不收集为 List，背压由下游的请求数量控制。
+ *      ReturnValueFactory 不是 PreEncodableReturnValueFactory，或者 createData() 不是原样返回（isIdentityData() 为 false）时，
+ *      只能收集为 List 再包装，保证与 create() 的结果相同
+ *  (5) ReturnValue / Resource / byte[]，以及包装计划为 PASSTHROUGH 的方法：交给 ResponseBodyResultHandler，不包装
+ *
+ * Request Header 中有 DISABLE 字段时，交给 ResponseBodyResultHandler，不包装
+ */
+public class HandlerMethodReturnValueResultHandler extends ResponseBodyResultHandler {
+    // ResponseBodyResultHandler 的默认 order 为 100
+    public static final int DEFAULT_ORDER = 99;
+
+    private static final MethodParameter OBJECT_RETURN_TYPE = returnTypeOf("objectReturnType");
+    private static final MethodParameter MONO_RETURN_TYPE = returnTypeOf("monoReturnType");
+    private static final MethodParameter FLUX_RETURN_TYPE = returnTypeOf("fluxReturnType");
+    private static final MethodParameter SERVER_SENT_EVENT_RETURN_TYPE = returnTypeOf("serverSentEventReturnType");
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON);
+
+    private final WrappingPlanCompiler wrappingPlanCompiler;
+    private final DisableHandlerMethodReturnValueHeader disableHeader;
+    // 第一次请求时生成，key 为 Handler 方法
+    private final Map<Method, WrappingPlan> wrappingPlans = new ConcurrentHashMap<>();
+    // key 为 Handler 方法，value 为是否有 @HandlerMethodReturnValue
+    private final Map<Method, Boolean> annotatedHandlerMethods = new ConcurrentHashMap<>();
+
+    public HandlerMethodReturnValueResultHandler(List<HttpMessageWriter<?>> writers,
+                                                 RequestedContentTypeResolver resolver,
+                                                 ReactiveAdapterRegistry registry,
+                                                 WrappingPlanCompiler wrappingPlanCompiler,
+                                                 DisableHandlerMethodReturnValueHeader disableHeader) {
+        super(writers, resolver, registry);
+        Assert.notNull(wrappingPlanCompiler, "WrappingPlanCompiler must not be null.");
+        Assert.notNull(disableHeader, "DisableHandlerMethodReturnValueHeader must not be null.");
+        this.wrappingPlanCompiler = wrappingPlanCompiler;
+        this.disableHeader = disableHeader;
+        setOrder(DEFAULT_ORDER);
+    }
+
+    @Override
+    public boolean supports(HandlerResult result) {
+        // super.supports() 检查 @ResponseBody / @RestController
+        return result.getHandler() instanceof HandlerMethod handlerMethod &&
+                isAnnotatedHandlerMethod(handlerMethod) &&
+                super.supports(result);
+    }
+
+    @Override
+    public Mono<Void> handleResult(ServerWebExchange exchange, HandlerResult result) {
+        if (this.disableHeader.existsInHttpRequestHeader(exchange)) {
+            return super.handleResult(exchange, result);
+        }
+        WrappingPlan wrappingPlan = wrappingPlanOf((HandlerMethod) result.getHandler());
+        Object body = result.getReturnValue();
+        MethodParameter bodyParameter = result.getReturnTypeSource();
+        ReactiveAdapter adapter = getAdapter(result);
+        if (wrappingPlan.getStrategy() == WrappingStrategy.PASSTHROUGH || isPassthroughValue(body)) {
+            return super.handleResult(exchange, result);
+        }
+        if (adapter == null) {
+            return writeBody(wrap(wrappingPlan, body, bodyParameter), OBJECT_RETURN_TYPE, exchange);
+        }
+        // 与 Servlet 版本的异步返回值相同，ReturnValueFactory 看到的是元素类型
+        MethodParameter returnType = bodyParameter.nested();
+        if (body == null) {
+            return writeBody(wrap(wrappingPlan, null, returnType), OBJECT_RETURN_TYPE, exchange);
+        }
+        if (!adapter.isMultiValue()) {
+            Mono<Object> mono = Mono.from(adapter.toPublisher(body))
+                    .map(value -> wrap(wrappingPlan, value, returnType))
+                    .switchIfEmpty(Mono.fromSupplier(() -> wrap(wrappingPlan, null, returnType)));
+            return writeBody(mono, MONO_RETURN_TYPE, exchange);
+        }
+
+        Flux<?> flux = Flux.from(adapter.toPublisher(body));
+        ResolvableType elementType = ResolvableType.forMethodParameter(returnType);
+        if (ServerSentEvent.class.isAssignableFrom(elementType.toClass())) {
+            Flux<ServerSentEvent<Object>> events = flux.map(event -> wrapEvent(wrappingPlan, (ServerSentEvent<?>) event, returnType));
+            return writeBody(events, SERVER_SENT_EVENT_RETURN_TYPE, exchange);
+        }
+        MediaType mediaType = selectMediaType(exchange, () -> getProducibleMediaTypes(elementType));
+        if (mediaType != null && isStreamingMediaType(mediaType)) {
+            return writeBody(flux.map(value -> wrap(wrappingPlan, value, returnType)), FLUX_RETURN_TYPE, exchange);
+        }
+
+        EnvelopeTemplate envelopeTemplate = wrappingPlan.getEnvelopeTemplate();
+        if (envelopeTemplate == null || wrappingPlan.getStrategy() != WrappingStrategy.DATA ||
+                !((PreEncodableReturnValueFactory<?>) wrappingPlan.getFactory()).isIdentityData(WrappingStrategy.DATA)) {
+            Mono<Object> mono = flux.collectList().map(list -> wrap(wrappingPlan, list, returnType));
+            return writeBody(mono, MONO_RETURN_TYPE, exchange);
+        }
+        ServerWebExchange envelopeExchange = exchange.mutate()
+                .response(new EnvelopeServerHttpResponse(exchange, envelopeTemplate))
+                .build();
+        return writeBody(flux, bodyParameter, envelopeExchange);
+    }
+
+    private Object wrap(WrappingPlan wrappingPlan, @Nullable Object value, MethodParameter returnType) {
+        if (value instanceof ReturnValue) {
+            return value;
+        }
+        EnvelopeTemplate envelopeTemplate = wrappingPlan.getEnvelopeTemplate();
+        if (envelopeTemplate != null && value != null) {
+            Object data = ((PreEncodableReturnValueFactory<?>) wrappingPlan.getFactory()).createData(value, returnType, wrappingPlan.getStrategy());
+            return new PreEncodedEnvelope(envelopeTemplate, data);
+        }
+        return wrappingPlan.getFactory().create(value, returnType, wrappingPlan.getStrategy());
+    }
+
+    private ServerSentEvent<Object> wrapEvent(WrappingPlan wrappingPlan, ServerSentEvent<?> event, MethodParameter returnType) {
+        ServerSentEvent.Builder<Object> builder = ServerSentEvent.builder();
+        if (event.id() != null) {
+            builder.id(event.id());
+        }
+        if (event.event() != null) {
+            builder.event(event.event());
+        }
+        if (event.retry() != null) {
+            builder.retry(event.retry());
+        }
+        if (event.comment() != null) {
+            builder.comment(event.comment());
+        }
+        if (event.data() != null) {
+            builder.data(wrap(wrappingPlan, event.data(), returnType));
+        }
+        return builder.build();
+    }
+
+    private WrappingPlan wrappingPlanOf(HandlerMethod handlerMethod) {
+        WrappingPlan wrappingPlan = this.wrappingPlans.get(handlerMethod.getMethod());
+        if (wrappingPlan == null) {
+            // WrappingPlanCompiler 不是线程安全的，每个方法只生成一次
+            synchronized (this.wrappingPlanCompiler) {
+                wrappingPlan = this.wrappingPlans.computeIfAbsent(handlerMethod.getMethod(), method -> this.wrappingPlanCompiler.compile(handlerMethod));
+            }
+        }
+        return wrappingPlan;
+    }
+
+    // 与 Servlet 版本相同，方法上或者类上有 @HandlerMethodReturnValue
+    private boolean isAnnotatedHandlerMethod(HandlerMethod handlerMethod) {
+        return this.annotatedHandlerMethods.computeIfAbsent(handlerMethod.getMethod(), method ->
+                AnnotatedElementUtils.hasAnnotation(method, HandlerMethodReturnValue.class) ||
+                        AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), HandlerMethodReturnValue.class));
+    }
+
+    private static boolean isPassthroughValue(@Nullable Object body) {
+        return body instanceof ReturnValue || body instanceof Resource || body instanceof byte[];
+    }
+
+    private static boolean isStreamingMediaType(MediaType mediaType) {
+        for (MediaType streamingMediaType : STREAMING_MEDIA_TYPES) {
+            if (streamingMediaType.isCompatibleWith(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<MediaType> getProducibleMediaTypes(ResolvableType elementType) {
+        List<MediaType> mediaTypes = new ArrayList<>();
+        for (HttpMessageWriter<?> writer : getMessageWriters()) {
+            if (writer.canWrite(elementType, null)) {
+                mediaTypes.addAll(writer.getWritableMediaTypes(elementType));
+            }
+        }
+        return mediaTypes;
+    }
+
+    private static MethodParameter returnTypeOf(String methodName) {
+        Method method = ReflectionUtils.findMethod(HandlerMethodReturnValueResultHandler.class, methodName);
+        Assert.state(method != null, "Method not found: " + methodName);
+        return new MethodParameter(method, -1);
+    }
+
+    // 包装之后写出时使用的返回值类型
+    @Nullable
+    private static Object objectReturnType() {
+        return null;
+    }
+
+    @Nullable
+    private static Mono<Object> monoReturnType() {
+        return null;
+    }
+
+    @Nullable
+    private static Flux<Object> fluxReturnType() {
+        return null;
+    }
+
+    @Nullable
+    private static Flux<ServerSentEvent<Object>> serverSentEventReturnType() {
+        return null;
+    }
+
+    // JSON 数组的前后写出信封的 prefix / suffix，其他 Content-Type 原样写出
+    private static final class EnvelopeServerHttpResponse extends ServerHttpResponseDecorator {
+        private final byte[] prefix;
+        private final byte[] suffix;
+
+        private EnvelopeServerHttpResponse(ServerWebExchange exchange, EnvelopeTemplate envelopeTemplate) {
+            super(exchange.getResponse());
+            this.prefix = envelopeTemplate.getPrefix().asUnquotedUTF8();
+            this.suffix = envelopeTemplate.getSuffix().asUnquotedUTF8();
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            MediaType contentType = getHeaders().getContentType();
+            if (contentType == null || !(MediaType.APPLICATION_JSON.isCompatibleWith(contentType) ||
+                    "json".equals(contentType.getSubtypeSuffix()))) {
+                return super.writeWith(body);
+            }
+            // 与 Jackson2JsonEncoder 写出 [ 的方式相同，prefix 与第一个 DataBuffer 一起写出：
+            // 第一个元素之前上游出错时响应还没有提交，仍然可以由异常处理响应错误，不会写出被截断的 200
+            DataBufferFactory bufferFactory = bufferFactory();
+            return super.writeWith(Flux.<DataBuffer>from(body).switchOnFirst((first, buffers) -> {
+                if (!first.hasValue()) {
+                    return buffers;
+                }
+                return Flux.concat(
+                        Mono.fromSupplier(() -> bufferFactory.wrap(this.prefix)),
+                        buffers,
+                        Mono.fromSupplier(() -> bufferFactory.wrap(this.suffix)));
+            }));
+        }
+    }
+}
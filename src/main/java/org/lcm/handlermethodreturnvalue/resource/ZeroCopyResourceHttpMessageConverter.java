@@ -0,0 +1,89 @@
+package org.lcm.handlermethodreturnvalue.resource;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tomcat 支持 sendfile 时，文件类型的 Resource 由 sendfile 零拷贝写出
+ *
+ * ResourceHttpMessageConverter 通过 InputStream.transferTo() 把文件内容复制到 heap 中的 byte[]，再写入 Response。
+ * Servlet 的 OutputStream 只能写入 byte[]，不使用 sendfile 时没有零拷贝的写法，
+ * 例如 FileChannel.transferTo() 写入 Channels.newChannel(OutputStream) 同样经过 heap 中的 byte[]
+ *
+ * 实现方式
+ *  (1) Tomcat 支持 sendfile 时（request attribute org.apache.tomcat.sendfile.support 为 true），
+ *      只设置 sendfile 的 request attribute，Response 提交时由 Tomcat 调用 sendfile 发送文件，不经过 JVM。
+ *      与 Tomcat DefaultServlet 相同，只有 Request / Response 是没有被包装的 RequestFacade / ResponseFacade 时才使用 sendfile：
+ *      Filter 包装的 Request / Response（例如 ETag、压缩、ContentCachingResponseWrapper）需要看到写出的内容，
+ *      sendfile 会绕过它们
+ *  (2) 其他情况（不支持 sendfile、Request / Response 被包装、不是文件的 Resource 例如 classpath 中 jar 包里的资源、
+ *      InputStreamResource），与 ResourceHttpMessageConverter 相同
+ *
+ * Range 请求由 ResourceRegionHttpMessageConverter 处理，不经过这里
+ */
+public class ZeroCopyResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+    static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    // 按名称匹配，不需要依赖 Tomcat
+    static final String TOMCAT_REQUEST_FACADE = "org.apache.catalina.connector.RequestFacade";
+    static final String TOMCAT_RESPONSE_FACADE = "org.apache.catalina.connector.ResponseFacade";
+
+    public ZeroCopyResourceHttpMessageConverter() {
+        super();
+    }
+
+    public ZeroCopyResourceHttpMessageConverter(boolean supportsReadStreaming) {
+        super(supportsReadStreaming);
+    }
+
+    @Override
+    protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        if (!(outputMessage instanceof ServletServerHttpResponse) || !resource.isFile()) {
+            super.writeContent(resource, outputMessage);
+            return;
+        }
+        File file = resource.getFile();
+        long length = file.length();
+
+        HttpServletRequest request = currentRequest();
+        if (request != null && length > 0 && isSendfilePossible(request, ((ServletServerHttpResponse) outputMessage).getServletResponse())) {
+            // 必须在 Response 提交之前设置，Content-Length 已经由 getContentLength() 设置
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, length);
+            return;
+        }
+
+        super.writeContent(resource, outputMessage);
+    }
+
+    // 与 Tomcat DefaultServlet.checkSendfile() 相同
+    static boolean isSendfilePossible(HttpServletRequest request, HttpServletResponse response) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE)) &&
+                request.getClass().getName().equals(TOMCAT_REQUEST_FACADE) &&
+                response.getClass().getName().equals(TOMCAT_RESPONSE_FACADE);
+    }
+
+    @Nullable
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes instanceof ServletRequestAttributes servletRequestAttributes) {
+            return servletRequestAttributes.getRequest();
+        }
+        return null;
+    }
+}
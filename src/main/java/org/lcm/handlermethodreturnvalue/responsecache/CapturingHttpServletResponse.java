@@ -0,0 +1,96 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 写出到 getOutputStream() 的字节同时复制一份，用于填充响应缓存
+ *
+ * 仍然直接写出到原来的响应，不延迟、不改变流式写出的行为。
+ * 超过 maxBytes 时放弃复制，这个响应不缓存
+ */
+final class CapturingHttpServletResponse extends HttpServletResponseWrapper {
+    private final int maxBytes;
+    private CapturingOutputStream outputStream;
+
+    CapturingHttpServletResponse(HttpServletResponse response, int maxBytes) {
+        super(response);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream(), maxBytes);
+        }
+        return outputStream;
+    }
+
+    // 没有写出或者超过 maxBytes 时返回 null
+    @Nullable
+    byte[] getCapturedBytes() {
+        return outputStream != null && outputStream.copy != null ? outputStream.copy.toByteArray() : null;
+    }
+
+    private static final class CapturingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private final int maxBytes;
+        @Nullable
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(ServletOutputStream delegate, int maxBytes) {
+            this.delegate = delegate;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        private void checkSize() {
+            if (copy != null && copy.size() > maxBytes) {
+                copy = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 缓存没有命中时，由 ResponseCacheInterceptor 保存在 request attribute ATTRIBUTE_NAME 中，
+ * HandlerMethodReturnValueAnnotatedHandler 写出信封时复制写出的字节，写出之后放入 ResponseCacheStore
+ */
+public final class ResponseCacheCapture {
+    public static final String ATTRIBUTE_NAME = ResponseCacheCapture.class.getName();
+    // 超过的响应不缓存
+    static final int MAX_BODY_BYTES = 1024 * 1024;
+    // 命中时由缓存的内容重新计算的 Header，忽略大小写
+    private static final Set<String> EXCLUDED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        EXCLUDED_HEADERS.addAll(List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_ENCODING,
+                HttpHeaders.TRANSFER_ENCODING, HttpHeaders.ETAG, HttpHeaders.DATE));
+    }
+
+    private final ResponseCacheStore store;
+    private final Object key;
+    private final long ttlNanos;
+    private final boolean gzip;
+    @Nullable
+    private CapturingHttpServletResponse capturingResponse;
+
+    ResponseCacheCapture(ResponseCacheStore store, Object key, long ttlNanos, boolean gzip) {
+        this.store = store;
+        this.key = key;
+        this.ttlNanos = ttlNanos;
+        this.gzip = gzip;
+    }
+
+    // 返回写出时复制字节的 NativeWebRequest
+    public NativeWebRequest wrap(NativeWebRequest webRequest) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (request == null || response == null) {
+            return webRequest;
+        }
+        this.capturingResponse = new CapturingHttpServletResponse(response, MAX_BODY_BYTES);
+        return new ServletWebRequest(request, this.capturingResponse);
+    }
+
+    /**
+     * 写出之后调用，只缓存 JSON 格式、状态码为 200、没有 Content-Encoding 的响应。
+     * 有 Set-Cookie 的响应不缓存，Cookie 属于这一个客户端，不能写给其他请求
+     */
+    public void complete() {
+        CapturingHttpServletResponse response = this.capturingResponse;
+        if (response == null || response.getStatus() != HttpStatus.OK.value() ||
+                response.getHeader(HttpHeaders.CONTENT_ENCODING) != null || response.getHeader(HttpHeaders.SET_COOKIE) != null) {
+            return;
+        }
+        String contentType = response.getContentType();
+        byte[] body = response.getCapturedBytes();
+        if (contentType == null || body == null || !MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType))) {
+            return;
+        }
+        this.store.put(this.key, new ResponseCacheEntry(contentType, body, gzip ? gzip(body) : null,
+                response.getHeader(HttpHeaders.ETAG), headersOf(response), System.nanoTime() + this.ttlNanos));
+    }
+
+    // Handler 方法、ResponseCacheInterceptor 之前的过滤器设置的 Response Header，命中时写出的 Header 由 ResponseCacheInterceptor 设置
+    private static HttpHeaders headersOf(HttpServletResponse response) {
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : response.getHeaderNames()) {
+            if (!EXCLUDED_HEADERS.contains(name)) {
+                headers.addAll(name, List.copyOf(response.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 32);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bytes)) {
+            gzipOutputStream.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
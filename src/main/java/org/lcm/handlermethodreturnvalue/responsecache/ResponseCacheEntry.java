@@ -0,0 +1,65 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
+
+/**
+ * 缓存的响应：Content-Type、信封字节，以及可选的 gzip 压缩之后的字节、ETag，
+ * 和 Handler 方法设置的其他 Response Header（例如 Cache-Control、自定义的 Header），命中时原样写出
+ */
+public final class ResponseCacheEntry {
+    private final String contentType;
+    private final byte[] body;
+    @Nullable
+    private final byte[] gzipBody;
+    @Nullable
+    private final String etag;
+    private final HttpHeaders headers;
+    private final long expiresAtNanos;
+
+    public ResponseCacheEntry(String contentType, byte[] body, @Nullable byte[] gzipBody, long expiresAtNanos) {
+        this(contentType, body, gzipBody, null, expiresAtNanos);
+    }
+
+    public ResponseCacheEntry(String contentType, byte[] body, @Nullable byte[] gzipBody, @Nullable String etag, long expiresAtNanos) {
+        this(contentType, body, gzipBody, etag, HttpHeaders.EMPTY, expiresAtNanos);
+    }
+
+    public ResponseCacheEntry(String contentType, byte[] body, @Nullable byte[] gzipBody, @Nullable String etag,
+                              HttpHeaders headers, long expiresAtNanos) {
+        this.contentType = contentType;
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.etag = etag;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Nullable
+    public byte[] getGzipBody() {
+        return gzipBody;
+    }
+
+    @Nullable
+    public String getEtag() {
+        return etag;
+    }
+
+    // 不包括 Content-Type、Content-Length、Content-Encoding、ETag
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    // 与 System.nanoTime() 比较，nanoTime 可能溢出，按差值判断
+    public boolean isExpired(long nowNanos) {
+        return nowNanos - expiresAtNanos >= 0;
+    }
+}
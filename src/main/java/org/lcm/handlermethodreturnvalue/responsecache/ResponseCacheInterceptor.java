@@ -0,0 +1,260 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValueCache;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandler;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandlerConfig;
+import org.lcm.handlermethodreturnvalue.projection.FieldProjections;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @HandlerMethodReturnValueCache 的响应缓存
+ *
+ * preHandle() 在调用 Handler 方法之前查找缓存
+ *  (1) 命中 - 直接写出缓存的字节，返回 false，不调用 Handler 方法
+ *  (2) 没有命中 - 在 request attribute 中保存 ResponseCacheCapture，
+ *      HandlerMethodReturnValueAnnotatedHandler 写出信封时复制字节，写出之后放入缓存
+ *  (3) 缓存的响应有 ETag 时（handler-method-return-value.etag），命中时与 If-None-Match 相同则响应 304
+ *
+ * 以下请求不使用缓存：不是 GET、Request Header 关闭了包装、Accept 优先的不是 JSON、要求列式布局、
+ * 请求参数或者 Request Header 中有字段列表（sparse-fieldsets）、Handler 方法没有 @HandlerMethodReturnValue。
+ * 缓存的是完整的、按行写出的响应，命中时与没有命中时一样响应 Vary: X-HMRV-Layout、X-HMRV-Fields，
+ * 并写出缓存时 Handler 方法设置的 Response Header（ResponseCacheEntry.getHeaders()）；有 Set-Cookie 的响应不缓存
+ *
+ * 通过 WebMvcConfigurer 注册，创建时 RequestMappingHandlerAdapter 还没有创建，
+ * HandlerMethodReturnValueAnnotatedHandlerConfig 在第一次请求时从 ObjectProvider 获取
+ */
+public class ResponseCacheInterceptor implements HandlerInterceptor {
+    private final ResponseCacheStore store;
+    private final ObjectProvider<HandlerMethodReturnValueAnnotatedHandlerConfig> handlerConfigProvider;
+    @Nullable
+    private volatile HandlerMethodReturnValueAnnotatedHandlerConfig handlerConfig;
+    // 每个 Handler 方法只解析一次注解
+    private final Map<Method, Optional<ResponseCachePlan>> plans = new ConcurrentHashMap<>();
+
+    public ResponseCacheInterceptor(ResponseCacheStore store, ObjectProvider<HandlerMethodReturnValueAnnotatedHandlerConfig> handlerConfigProvider) {
+        Assert.notNull(store, "ResponseCacheStore must not be null.");
+        Assert.notNull(handlerConfigProvider, "HandlerMethodReturnValueAnnotatedHandlerConfig provider must not be null.");
+        this.store = store;
+        this.handlerConfigProvider = handlerConfigProvider;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod handlerMethod) || !HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        ResponseCachePlan plan = planOf(handlerMethod.getMethod());
+        if (plan == null || !acceptsJson(request)) {
+            return true;
+        }
+        DisableHandlerMethodReturnValueHeader disableHeader = handlerConfig().getDisableHeader();
+        if (disableHeader != null && disableHeader.existsInHttpRequestHeader(new ServletWebRequest(request, response))) {
+            return true;
+        }
+        ColumnarLayout columnarLayout = handlerConfig().getColumnarLayout();
+        if (columnarLayout != null && columnarLayout.isRequested(request)) {
+            return true;
+        }
+        FieldProjections fieldProjections = handlerConfig().getFieldProjections();
+        if (fieldProjections != null && fieldProjections.isRequested(request)) {
+            return true;
+        }
+        ResponseCacheKey key = plan.keyOf(request);
+        ResponseCacheEntry entry = store.get(key);
+        if (entry == null) {
+            if (plan.gzip) {
+                // 与命中时的响应相同
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            request.setAttribute(ResponseCacheCapture.ATTRIBUTE_NAME, new ResponseCacheCapture(store, key, plan.ttlNanos, plan.gzip));
+            return true;
+        }
+        HandlerMethodReturnValueAnnotatedHandler.addVary(response, columnarLayout, fieldProjections);
+        write(entry, request, response);
+        return false;
+    }
+
+    public ResponseCacheStore getStore() {
+        return store;
+    }
+
+    @Nullable
+    private ResponseCachePlan planOf(Method method) {
+        return plans.computeIfAbsent(method, m -> {
+            HandlerMethodReturnValueCache annotation = AnnotatedElementUtils.findMergedAnnotation(m, HandlerMethodReturnValueCache.class);
+            if (annotation == null || !handlerConfig().getHandlerMethodReturnValueAnnotatedHandlerMethodCache().contains(m)) {
+                return Optional.empty();
+            }
+            return Optional.of(new ResponseCachePlan(m, annotation));
+        }).orElse(null);
+    }
+
+    private HandlerMethodReturnValueAnnotatedHandlerConfig handlerConfig() {
+        HandlerMethodReturnValueAnnotatedHandlerConfig config = this.handlerConfig;
+        if (config == null) {
+            config = this.handlerConfigProvider.getObject();
+            this.handlerConfig = config;
+        }
+        return config;
+    }
+
+    static void write(ResponseCacheEntry entry, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        // 缓存时 Handler 方法设置的 Header，例如 Cache-Control；过滤器在这个请求中已经设置的 Header 不重复写出
+        entry.getHeaders().forEach((name, values) -> {
+            if (HttpHeaders.VARY.equalsIgnoreCase(name)) {
+                for (String value : values) {
+                    for (String token : StringUtils.tokenizeToStringArray(value, ",")) {
+                        HandlerMethodReturnValueAnnotatedHandler.addVary(response, token);
+                    }
+                }
+            } else if (!response.containsHeader(name)) {
+                values.forEach(value -> response.addHeader(name, value));
+            }
+        });
+        // 缓存时有 ETag，与 If-None-Match 相同时响应 304
+        if (entry.getEtag() != null && new ServletWebRequest(request, response).checkNotModified(entry.getEtag())) {
+            return;
+        }
+        byte[] body = entry.getBody();
+        if (entry.getGzipBody() != null) {
+            HandlerMethodReturnValueAnnotatedHandler.addVary(response, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                body = entry.getGzipBody();
+            }
+        }
+        response.setContentType(entry.getContentType());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.flushBuffer();
+    }
+
+    /**
+     * Accept-Encoding 是否接受 gzip：gzip（或者 x-gzip）的 q 大于 0；没有列出 gzip 时看 * 的 q。
+     * 例如 "gzip;q=0" 与 "*;q=0" 不接受，"br, *" 接受
+     */
+    static boolean acceptsGzip(@Nullable String acceptEncoding) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return false;
+        }
+        Boolean gzip = null;
+        boolean wildcard = false;
+        for (String coding : StringUtils.tokenizeToStringArray(acceptEncoding, ",")) {
+            String[] parts = StringUtils.tokenizeToStringArray(coding, ";");
+            if (parts.length == 0) {
+                continue;
+            }
+            boolean accepted = qualityOf(parts) > 0;
+            if (parts[0].equalsIgnoreCase("gzip") || parts[0].equalsIgnoreCase("x-gzip")) {
+                gzip = accepted;
+            } else if (parts[0].equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return gzip != null ? gzip : wildcard;
+    }
+
+    // 没有 q 参数时为 1，不合法时为 0
+    private static double qualityOf(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i];
+            if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q') && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // 没有 Accept，或者 quality 最高的类型与 JSON 兼容，例如 */*
+    private static boolean acceptsJson(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (!StringUtils.hasText(accept)) {
+            return true;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MediaType preferred = null;
+            for (MediaType mediaType : mediaTypes) {
+                if (preferred == null || mediaType.getQualityValue() > preferred.getQualityValue()) {
+                    preferred = mediaType;
+                }
+            }
+            return preferred == null || preferred.isCompatibleWith(MediaType.APPLICATION_JSON);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    // 一个 Handler 方法的缓存配置
+    private static final class ResponseCachePlan {
+        private final Method method;
+        private final long ttlNanos;
+        private final String[] params;
+        private final String[] headers;
+        private final boolean gzip;
+
+        private ResponseCachePlan(Method method, HandlerMethodReturnValueCache annotation) {
+            this.method = method;
+            this.ttlNanos = annotation.timeUnit().toNanos(annotation.ttl());
+            this.params = annotation.params();
+            this.headers = annotation.headers();
+            this.gzip = annotation.gzip();
+        }
+
+        private ResponseCacheKey keyOf(HttpServletRequest request) {
+            StringBuilder variant = new StringBuilder();
+            if (params.length == 0) {
+                String queryString = request.getQueryString();
+                if (queryString != null) {
+                    variant.append(queryString);
+                }
+            } else {
+                for (String param : params) {
+                    String[] values = request.getParameterValues(param);
+                    // 参数值可能包含任意字符，使用 \0 分隔
+                    variant.append(param).append('=');
+                    if (values != null) {
+                        variant.append(String.join("\0", values));
+                    }
+                    variant.append('\0');
+                }
+            }
+            for (String header : headers) {
+                variant.append('\n').append(header).append(':');
+                String value = request.getHeader(header);
+                if (value != null) {
+                    variant.append(value);
+                }
+            }
+            return new ResponseCacheKey(method, request.getRequestURI(), variant.toString());
+        }
+    }
+
+    private record ResponseCacheKey(Method method, String path, String variant) {
+    }
+}
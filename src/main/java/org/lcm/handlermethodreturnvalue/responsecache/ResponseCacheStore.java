@@ -0,0 +1,112 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 进程内的响应缓存，按条数与有效时间限制
+ *
+ * 分为 SEGMENTS 个段，每段是一个按访问顺序的 LinkedHashMap（LRU），各自加锁，
+ * 按 key 的 hash 选择段，并发的读取分散在不同的锁上。
+ * 每段最多 maxSize / SEGMENTS 条，超过时淘汰该段最久没有访问的条目；过期的条目在读取时删除
+ */
+public class ResponseCacheStore {
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public ResponseCacheStore() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ResponseCacheStore(int maxSize) {
+        Assert.isTrue(maxSize > 0, "maxSize must be greater than 0.");
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    @Nullable
+    public ResponseCacheEntry get(Object key) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            ResponseCacheEntry entry = segment.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                segment.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    public void put(Object key, ResponseCacheEntry entry) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentOf(Object key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    // 组合按访问顺序的 LinkedHashMap，由调用方对 Segment 加锁
+    private static final class Segment {
+        private final LinkedHashMap<Object, ResponseCacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Nullable
+        private ResponseCacheEntry get(Object key) {
+            return entries.get(key);
+        }
+
+        private void put(Object key, ResponseCacheEntry entry) {
+            entries.put(key, entry);
+            if (entries.size() > maxSize) {
+                Iterator<ResponseCacheEntry> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        private void remove(Object key) {
+            entries.remove(key);
+        }
+
+        private void clear() {
+            entries.clear();
+        }
+
+        private int size() {
+            return entries.size();
+        }
+    }
+}
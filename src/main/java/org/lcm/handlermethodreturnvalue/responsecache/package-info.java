@@ -0,0 +1,3 @@
+@NonNullApi package org.lcm.handlermethodreturnvalue.responsecache;
+
+import org.springframework.lang.NonNullApi;
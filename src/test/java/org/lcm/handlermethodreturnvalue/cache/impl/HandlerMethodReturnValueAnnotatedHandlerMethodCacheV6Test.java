@@ -0,0 +1,80 @@
+package org.lcm.handlermethodreturnvalue.cache.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6Test {
+    @RestController
+    @HandlerMethodReturnValue
+    static class Controller {
+        public String text(int id, String[] names) {
+            return "text";
+        }
+    }
+
+    @Test
+    void keyOfMatchesProcessorFormat() throws Exception {
+        assertThat(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.keyOf(text()))
+                .isEqualTo(Controller.class.getName() + "#text(int,java.lang.String[])");
+    }
+
+    @Test
+    void classNotCoveredByAnyIndexFallsBackToReflection(@TempDir Path otherModule) throws Exception {
+        // 另一个模块的索引，不覆盖 Controller
+        Path indexFile = otherModule.resolve(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.INDEX_LOCATION);
+        Files.createDirectories(indexFile.getParent());
+        Files.writeString(indexFile, "# Generated by HandlerMethodReturnValueIndexProcessor\norg.example.OtherController\norg.example.OtherController#page()\n");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{otherModule.toUri().toURL()}, getClass().getClassLoader())) {
+            HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.AnnotationIndex index =
+                    HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.loadAnnotationIndex(classLoader);
+            assertThat(index).isNotNull();
+            assertThat(index.covers(Controller.class)).isFalse();
+            assertThat(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.isAnnotatedHandlerMethod(index, text())).isTrue();
+        }
+    }
+
+    @Test
+    void classCoveredByIndexUsesIndexOnly() throws Exception {
+        HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.AnnotationIndex index =
+                new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.AnnotationIndex(Set.of(), Set.of(Controller.class.getName()));
+        assertThat(index.covers(Controller.class)).isTrue();
+        // 索引覆盖了这个类，但是没有这个方法，不再反射扫描注解
+        assertThat(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.isAnnotatedHandlerMethod(index, text())).isFalse();
+
+        index = new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.AnnotationIndex(
+                Set.of(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.keyOf(text())), Set.of(Controller.class.getName()));
+        assertThat(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.isAnnotatedHandlerMethod(index, text())).isTrue();
+    }
+
+    @Test
+    void coverageIsReadFromTheIndexNotFromClassFiles(@TempDir Path module) throws Exception {
+        // 索引所在的目录中没有 Controller 的 .class 文件，与 native-image 中相同
+        Path indexFile = module.resolve(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.INDEX_LOCATION);
+        Files.createDirectories(indexFile.getParent());
+        Files.writeString(indexFile, "# Generated by HandlerMethodReturnValueIndexProcessor\n" + Controller.class.getName() + "\n");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{module.toUri().toURL()}, getClass().getClassLoader())) {
+            HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.AnnotationIndex index =
+                    HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.loadAnnotationIndex(classLoader);
+            assertThat(index).isNotNull();
+            assertThat(index.covers(Controller.class)).isTrue();
+            assertThat(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV6.isAnnotatedHandlerMethod(index, text())).isFalse();
+        }
+    }
+
+    private static Method text() throws NoSuchMethodException {
+        return Controller.class.getMethod("text", int.class, String[].class);
+    }
+}
@@ -0,0 +1,79 @@
+package org.lcm.handlermethodreturnvalue.columnar;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.model.impl.SimpleReturnValue;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarLayoutTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ColumnarLayout columnarLayout = new ColumnarLayout();
+
+    @Test
+    void beansOfOneClassAreWrittenAsColumnsAndRows() throws Exception {
+        SimpleReturnValue envelope = new SimpleReturnValue(true, List.of(new Sku(1, "a"), new Sku(2, null)), 200, "OK");
+
+        assertThat(objectMapper.writeValueAsString(columnarLayout.apply(envelope))).isEqualTo(
+                "{\"success\":true,\"data\":{\"columns\":[\"id\",\"name\"],\"rows\":[[1,\"a\"],[2,null]]},\"code\":200,\"status\":\"OK\"}");
+    }
+
+    @Test
+    void mixedElementsAreWrittenAsObjects() throws Exception {
+        SimpleReturnValue envelope = new SimpleReturnValue(true, List.of(new Sku(1, "a"), "b"), 200, "OK");
+
+        assertThat(objectMapper.writeValueAsString(columnarLayout.apply(envelope)))
+                .isEqualTo(objectMapper.writeValueAsString(envelope));
+    }
+
+    @Test
+    void propertiesHiddenByTheActiveViewAreNotWritten() throws Exception {
+        SimpleReturnValue envelope = new SimpleReturnValue(true, List.of(new Account(1, "s3cr3t"), new Account(2, "hunter2")), 200, "OK");
+
+        assertThat(objectMapper.writerWithView(Public.class).writeValueAsString(columnarLayout.apply(envelope))).isEqualTo(
+                "{\"success\":true,\"data\":{\"columns\":[\"id\"],\"rows\":[[1],[2]]},\"code\":200,\"status\":\"OK\"}");
+        assertThat(objectMapper.writerWithView(Internal.class).writeValueAsString(columnarLayout.apply(envelope))).contains(
+                "{\"columns\":[\"id\",\"secret\"],\"rows\":[[1,\"s3cr3t\"],[2,\"hunter2\"]]}");
+    }
+
+    @Test
+    void filteredBeansAreWrittenAsObjects() throws Exception {
+        ObjectMapper filtering = new ObjectMapper().setFilterProvider(
+                new SimpleFilterProvider().addFilter("public", SimpleBeanPropertyFilter.serializeAllExcept("secret")));
+        SimpleReturnValue envelope = new SimpleReturnValue(true, List.of(new Filtered(1, "s3cr3t")), 200, "OK");
+
+        assertThat(filtering.writeValueAsString(columnarLayout.apply(envelope))).isEqualTo(filtering.writeValueAsString(envelope));
+    }
+
+    @Test
+    void columnarLayoutIsSelectedByTheHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/skus");
+        assertThat(columnarLayout.isRequested(request)).isFalse();
+
+        request.addHeader(ColumnarLayout.DEFAULT_HEADER_NAME, "Columnar");
+        assertThat(columnarLayout.isRequested(request)).isTrue();
+    }
+
+    record Sku(int id, String name) {
+    }
+
+    interface Public {
+    }
+
+    interface Internal extends Public {
+    }
+
+    record Account(@JsonView(Public.class) int id, @JsonView(Internal.class) String secret) {
+    }
+
+    @JsonFilter("public")
+    record Filtered(int id, String secret) {
+    }
+}
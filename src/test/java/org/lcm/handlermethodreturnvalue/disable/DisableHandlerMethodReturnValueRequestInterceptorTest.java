@@ -0,0 +1,28 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import feign.RequestTemplate;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DisableHandlerMethodReturnValueRequestInterceptorTest {
+
+    @Test
+    void shortAndLegacyHeadersAreSentByDefault() {
+        RequestTemplate template = new RequestTemplate();
+        new DisableHandlerMethodReturnValueRequestInterceptor().apply(template);
+
+        assertThat(template.headers().get(DisableHandlerMethodReturnValueHeader.DEFAULT_HEADER_NAME))
+                .containsExactly(DisableHandlerMethodReturnValueHeader.TOKEN);
+        assertThat(template.headers()).containsKey(DisableHandlerMethodReturnValue.HEADER_NAME);
+    }
+
+    @Test
+    void legacyHeaderCanBeTurnedOff() {
+        RequestTemplate template = new RequestTemplate();
+        new DisableHandlerMethodReturnValueRequestInterceptor("X-Raw", false).apply(template);
+
+        assertThat(template.headers().get("X-Raw")).containsExactly(DisableHandlerMethodReturnValueHeader.TOKEN);
+        assertThat(template.headers()).doesNotContainKey(DisableHandlerMethodReturnValue.HEADER_NAME);
+    }
+}
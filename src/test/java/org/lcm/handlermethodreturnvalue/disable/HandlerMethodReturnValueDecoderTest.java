@@ -0,0 +1,115 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import feign.Request;
+import feign.Response;
+import feign.codec.DecodeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HandlerMethodReturnValueDecoderTest {
+    public record Sku(String code, String name) {
+    }
+
+    public record Account(String status) {
+    }
+
+    public record Counter(int code, String name) {
+    }
+
+    // 记录绑定 data 时使用的 JsonParser
+    @JsonDeserialize(using = ParserRecordingDeserializer.class)
+    public record Recorded(boolean buffered) {
+    }
+
+    static class ParserRecordingDeserializer extends JsonDeserializer<Recorded> {
+        @Override
+        public Recorded deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            parser.skipChildren();
+            return new Recorded(parser.getClass().getEnclosingClass() == TokenBuffer.class);
+        }
+    }
+
+    private final HandlerMethodReturnValueDecoder decoder = new HandlerMethodReturnValueDecoder(new ObjectMapper());
+
+    @Test
+    void envelopeIsUnwrapped() throws Exception {
+        Object sku = decode("{\"success\":true,\"data\":{\"code\":\"SKU-1\",\"name\":\"pen\"},\"code\":200,\"status\":\"OK\"}", Sku.class);
+        assertThat(sku).isEqualTo(new Sku("SKU-1", "pen"));
+    }
+
+    @Test
+    void envelopeIsRecognizedWhateverTheFieldOrder() throws Exception {
+        // data 在前面，没有 success
+        Object sku = decode("{\"data\":{\"code\":\"SKU-1\",\"name\":\"pen\"},\"code\":200}", Sku.class);
+        assertThat(sku).isEqualTo(new Sku("SKU-1", "pen"));
+    }
+
+    @Test
+    void dataAfterSuccessIsBoundFromTheResponseStream() throws Exception {
+        Object recorded = decode("{\"success\":true,\"code\":200,\"data\":{\"a\":[1,2]},\"status\":\"OK\"}", Recorded.class);
+        assertThat(((Recorded) recorded).buffered()).isFalse();
+        // data 在前面时先缓冲
+        recorded = decode("{\"data\":{\"a\":[1,2]},\"success\":true}", Recorded.class);
+        assertThat(((Recorded) recorded).buffered()).isTrue();
+    }
+
+    @Test
+    void fieldsAfterDataAreIgnoredUnlessTheyFailTheEnvelope() throws Exception {
+        assertThat(decode("{\"success\":true,\"data\":{\"code\":\"SKU-1\",\"name\":\"pen\"},\"traceId\":\"t-1\"}", Sku.class))
+                .isEqualTo(new Sku("SKU-1", "pen"));
+        assertThatThrownBy(() -> decode("{\"code\":200,\"data\":null,\"success\":false,\"message\":\"boom\"}", Sku.class))
+                .isInstanceOf(DecodeException.class)
+                .hasMessageContaining("boom");
+    }
+
+    @Test
+    void unwrappedObjectStartingWithAnEnvelopeFieldIsNotAnEnvelope() throws Exception {
+        // code 不是整数
+        assertThat(decode("{\"code\":\"SKU-1\",\"name\":\"pen\"}", Sku.class)).isEqualTo(new Sku("SKU-1", "pen"));
+        // 没有 success / code
+        assertThat(decode("{\"status\":\"ACTIVE\"}", Account.class)).isEqualTo(new Account("ACTIVE"));
+        // 有信封以外的属性
+        assertThat(decode("{\"code\":7,\"name\":\"visits\"}", Counter.class)).isEqualTo(new Counter(7, "visits"));
+    }
+
+    @Test
+    void failedEnvelopeThrows() {
+        assertThatThrownBy(() -> decode("{\"success\":false,\"data\":null,\"code\":500,\"status\":\"INTERNAL_SERVER_ERROR\",\"message\":\"boom\"}", Sku.class))
+                .isInstanceOf(DecodeException.class)
+                .hasMessageContaining("boom");
+    }
+
+    @Test
+    void columnarDataIsRestoredToObjects() throws Exception {
+        Object skus = decode("{\"success\":true,\"data\":{\"columns\":[\"code\",\"name\"],\"rows\":[[\"SKU-1\",\"pen\"],[\"SKU-2\",null]]},\"code\":200,\"status\":\"OK\"}",
+                new TypeReference<List<Sku>>() {
+                }.getType());
+        assertThat(skus).isEqualTo(List.of(new Sku("SKU-1", "pen"), new Sku("SKU-2", null)));
+    }
+
+    private Object decode(String body, Type type) throws Exception {
+        Request request = Request.create(Request.HttpMethod.GET, "http://product-service/sku", Map.of(), null, StandardCharsets.UTF_8, null);
+        Response response = Response.builder()
+                .status(200)
+                .request(request)
+                .headers(Map.of())
+                .body(body, StandardCharsets.UTF_8)
+                .build();
+        return decoder.decode(response, type);
+    }
+}
@@ -0,0 +1,61 @@
+package org.lcm.handlermethodreturnvalue.disable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HandlerMethodReturnValueErrorDecoderTest {
+    private final HandlerMethodReturnValueErrorDecoder errorDecoder =
+            new HandlerMethodReturnValueErrorDecoder(new HandlerMethodReturnValueDecoder(new ObjectMapper()));
+
+    @Test
+    void errorEnvelopeIsReported() {
+        Exception exception = decode(404, "{\"success\":false,\"data\":null,\"code\":404,\"status\":\"NOT_FOUND\",\"message\":\"product not found\"}", Map.of());
+
+        assertThat(exception).isInstanceOf(HandlerMethodReturnValueFeignException.class)
+                .hasMessageContaining("product not found")
+                .hasCauseInstanceOf(FeignException.NotFound.class);
+        HandlerMethodReturnValueFeignException feignException = (HandlerMethodReturnValueFeignException) exception;
+        assertThat(feignException.status()).isEqualTo(404);
+        assertThat(feignException.getCode()).isEqualTo(404);
+        assertThat(feignException.getStatus()).isEqualTo("NOT_FOUND");
+        assertThat(feignException.getEnvelopeMessage()).isEqualTo("product not found");
+        assertThat(feignException.contentUTF8()).contains("product not found");
+    }
+
+    @Test
+    void otherBodiesUseTheDefaultErrorDecoder() {
+        Exception exception = decode(500, "{\"timestamp\":\"2024-01-01\",\"error\":\"Internal Server Error\"}", Map.of());
+        assertThat(exception).isExactlyInstanceOf(FeignException.InternalServerError.class);
+        assertThat(((FeignException) exception).contentUTF8()).contains("Internal Server Error");
+    }
+
+    @Test
+    void retryAfterIsStillRetryable() {
+        Exception exception = decode(503, "{\"success\":false,\"code\":503,\"status\":\"SERVICE_UNAVAILABLE\"}",
+                Map.of(HttpHeaders.RETRY_AFTER, List.of("1")));
+        assertThat(exception).isInstanceOf(RetryableException.class);
+    }
+
+    private Exception decode(int status, String body, Map<String, Collection<String>> headers) {
+        Request request = Request.create(Request.HttpMethod.GET, "http://product-service/sku", Map.of(), null, StandardCharsets.UTF_8, null);
+        Response response = Response.builder()
+                .status(status)
+                .request(request)
+                .headers(headers)
+                .body(body, StandardCharsets.UTF_8)
+                .build();
+        return errorDecoder.decode("ProductClient#sku()", response);
+    }
+}
@@ -0,0 +1,89 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelChunkedSerializerTest {
+    record Item(long id, String name) {
+    }
+
+    // 序列化时读取 LocaleContextHolder
+    record LocalizedItem(long id) {
+        public String getLocale() {
+            return LocaleContextHolder.getLocale().toLanguageTag();
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleReturnValueFactory factory = new SimpleReturnValueFactory();
+    private final AtomicInteger submittedChunks = new AtomicInteger();
+    // 单核的环境中也按并行度 4 分块
+    private final ParallelChunkedSerializer serializer = new ParallelChunkedSerializer(10, 3, task -> {
+        submittedChunks.incrementAndGet();
+        ForkJoinPool.commonPool().execute(task);
+    }, 4);
+
+    @Test
+    void chunksAreWrittenInOrderWithTheSameBytes() throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(new Item(i, "item \"" + i + "\" é"));
+        }
+        PreEncodedEnvelope envelope = new PreEncodedEnvelope(EnvelopeTemplate.of(objectMapper, factory), items);
+
+        byte[] parallel = objectMapper.writeValueAsBytes(serializer.apply(envelope));
+
+        assertThat(new String(parallel)).isEqualTo(new String(objectMapper.writeValueAsBytes(factory.create(items, null))));
+        assertThat(submittedChunks.get()).isEqualTo(34);
+    }
+
+    @Test
+    void listsBelowTheThresholdAreNotWrapped() {
+        PreEncodedEnvelope envelope = new PreEncodedEnvelope(EnvelopeTemplate.of(objectMapper, factory), List.of(new Item(1, "a")));
+
+        assertThat(serializer.apply(envelope)).isSameAs(envelope);
+    }
+
+    @Test
+    void requestLocaleIsVisibleInTheDedicatedThreads() throws Exception {
+        ParallelChunkedSerializer dedicated = new ParallelChunkedSerializer(10, 3, 4, 2, ParallelChunkedSerializer.DEFAULT_MAX_POOLED_BYTES, null);
+        List<LocalizedItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(new LocalizedItem(i));
+        }
+        LocaleContextHolder.setLocale(Locale.FRANCE);
+        try {
+            byte[] parallel = objectMapper.writeValueAsBytes(
+                    dedicated.apply(new PreEncodedEnvelope(EnvelopeTemplate.of(objectMapper, factory), items)));
+
+            assertThat(new String(parallel)).isEqualTo(new String(objectMapper.writeValueAsBytes(factory.create(items, null))));
+            assertThat(new String(parallel)).contains("fr-FR").doesNotContain(Locale.getDefault().toLanguageTag() + "\"");
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
+            dedicated.destroy();
+        }
+    }
+
+    @Test
+    void pooledBuffersStayWithinTheLimit() throws Exception {
+        // 只够保留一个 8 KiB 的缓冲区
+        ParallelChunkedSerializer bounded = new ParallelChunkedSerializer(10, 3, ForkJoinPool.commonPool(), 4, 8192);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(new Item(i, "item " + i));
+        }
+        objectMapper.writeValueAsBytes(bounded.apply(new PreEncodedEnvelope(EnvelopeTemplate.of(objectMapper, factory), items)));
+
+        assertThat(bounded.getPooledBytes()).isEqualTo(8192);
+    }
+}
@@ -0,0 +1,68 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.factory.PreEncodableReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.AntDesignProReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreEncodedEnvelopeTest {
+    record Item(long id, String name) {
+    }
+
+    static List<Item> handler() {
+        return null;
+    }
+
+    private static final MethodParameter RETURN_TYPE;
+
+    static {
+        try {
+            RETURN_TYPE = new MethodParameter(PreEncodedEnvelopeTest.class.getDeclaredMethod("handler"), -1);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final List<Object> VALUES = Arrays.asList(
+            "text with \"quotes\" and é",
+            42,
+            List.of(new Item(1, "a"), new Item(2, "b\n")),
+            Map.of("key", "value"),
+            new PageImpl<>(List.of(new Item(3, "c")), PageRequest.of(0, 10), 1));
+
+    @Test
+    void simpleFactoryWritesSameBytesAsReturnValue() throws Exception {
+        assertSameBytes(new ObjectMapper(), new SimpleReturnValueFactory());
+    }
+
+    @Test
+    void antDesignProFactoryWritesSameBytesAsReturnValue() throws Exception {
+        assertSameBytes(new ObjectMapper(), new AntDesignProReturnValueFactory());
+        assertSameBytes(new ObjectMapper(), new AntDesignProReturnValueFactory(true));
+    }
+
+    @Test
+    void indentedOutputWritesSameBytesAsReturnValue() throws Exception {
+        assertSameBytes(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT), new SimpleReturnValueFactory());
+    }
+
+    private static void assertSameBytes(ObjectMapper objectMapper, PreEncodableReturnValueFactory<?> factory) throws Exception {
+        EnvelopeTemplate template = EnvelopeTemplate.of(objectMapper, factory);
+        for (Object value : VALUES) {
+            byte[] expected = objectMapper.writeValueAsBytes(factory.create(value, RETURN_TYPE));
+            byte[] actual = objectMapper.writeValueAsBytes(new PreEncodedEnvelope(template, factory.createData(value, RETURN_TYPE)));
+            assertThat(new String(actual)).isEqualTo(new String(expected));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.lcm.handlermethodreturnvalue.envelope;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingDataArrayTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 序列化时抛出异常的元素
+    static class Broken {
+        public String getValue() {
+            throw new IllegalArgumentException("broken element");
+        }
+    }
+
+    @Test
+    void closeFailureDoesNotReplaceTheSerializationFailure() {
+        AtomicInteger closes = new AtomicInteger();
+        Stream<Object> stream = Stream.<Object>of(new Broken()).onClose(() -> {
+            closes.incrementAndGet();
+            throw new IllegalStateException("cursor already closed");
+        });
+
+        assertThatThrownBy(() -> {
+            try (StreamingDataArray data = StreamingDataArray.of(stream, 0)) {
+                objectMapper.writeValueAsString(data);
+            }
+        }).isInstanceOf(JsonMappingException.class)
+                .hasMessageContaining("broken element")
+                .hasNoSuppressedExceptions();
+        assertThat(closes.get()).isEqualTo(1);
+    }
+
+    @Test
+    void elementsAreWrittenAndTheSourceIsClosed() throws Exception {
+        AtomicInteger closes = new AtomicInteger();
+        try (StreamingDataArray data = StreamingDataArray.of(Stream.of(1, 2, 3).onClose(closes::incrementAndGet), 2)) {
+            assertThat(objectMapper.writeValueAsString(data)).isEqualTo("[1,2,3]");
+        }
+        assertThat(closes.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,43 @@
+package org.lcm.handlermethodreturnvalue.error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorEnvelopeCacheTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleReturnValueFactory factory = new SimpleReturnValueFactory();
+
+    @Test
+    void leastRecentlyUsedEnvelopeIsEvicted() {
+        ErrorEnvelopeCache cache = new ErrorEnvelopeCache(objectMapper, 2);
+        byte[] notFound = cache.get(factory, 404, "NOT_FOUND", "product not found");
+        cache.get(factory, 400, "BAD_REQUEST", "invalid sku");
+        // 访问之后 404 是最近使用的，超过 maxSize 时淘汰 400
+        assertThat(cache.get(factory, 404, "NOT_FOUND", "product not found")).isSameAs(notFound);
+        cache.get(factory, 503, "SERVICE_UNAVAILABLE", "inventory unavailable");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(factory, 404, "NOT_FOUND", "product not found")).isSameAs(notFound);
+    }
+
+    @Test
+    void serializedEnvelopesAreNotCached() throws Exception {
+        ErrorEnvelopeCache cache = new ErrorEnvelopeCache(objectMapper);
+        byte[] envelope = cache.serialize(factory, 400, "BAD_REQUEST", "sku 42 is invalid");
+
+        assertThat(cache.size()).isZero();
+        assertThat(envelope).isEqualTo(objectMapper.writeValueAsBytes(factory.createError(400, "BAD_REQUEST", "sku 42 is invalid")));
+    }
+
+    @Test
+    void nonPositiveMaxSizeDisablesCaching() {
+        ErrorEnvelopeCache cache = new ErrorEnvelopeCache(objectMapper, 0);
+        byte[] first = cache.get(factory, 404, "NOT_FOUND", "product not found");
+
+        assertThat(cache.get(factory, 404, "NOT_FOUND", "product not found")).isNotSameAs(first).isEqualTo(first);
+        assertThat(cache.size()).isZero();
+    }
+}
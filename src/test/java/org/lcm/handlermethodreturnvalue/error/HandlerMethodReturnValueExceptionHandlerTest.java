@@ -0,0 +1,37 @@
+package org.lcm.handlermethodreturnvalue.error;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HandlerMethodReturnValueExceptionHandlerTest {
+
+    private static boolean isJsonPreferred(String... accept) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/product");
+        for (String value : accept) {
+            request.addHeader(HttpHeaders.ACCEPT, value);
+        }
+        return HandlerMethodReturnValueExceptionHandler.isJsonPreferred(new ServletWebRequest(request));
+    }
+
+    @Test
+    void cachedJsonIsUsedWhenJsonIsPreferred() {
+        assertThat(isJsonPreferred()).isTrue();
+        assertThat(isJsonPreferred("*/*")).isTrue();
+        assertThat(isJsonPreferred("application/json")).isTrue();
+        assertThat(isJsonPreferred("application/cbor;q=0.5, application/json")).isTrue();
+    }
+
+    @Test
+    void otherFormatsAreNegotiatedByTheMessageConverters() {
+        assertThat(isJsonPreferred("application/cbor")).isFalse();
+        assertThat(isJsonPreferred("application/x-jackson-smile, */*;q=0.1")).isFalse();
+        assertThat(isJsonPreferred("application/cbor, application/json")).isFalse();
+        assertThat(isJsonPreferred("*/*, application/json;q=0")).isFalse();
+        assertThat(isJsonPreferred("text/html")).isFalse();
+        assertThat(isJsonPreferred("not a media type")).isFalse();
+    }
+}
@@ -0,0 +1,81 @@
+package org.lcm.handlermethodreturnvalue.etag;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EtagHttpServletResponseTest {
+    private static final byte[] ENVELOPE = "{\"success\":true,\"data\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void matchingIfNoneMatchIsAnsweredWith304() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        write(new MockHttpServletRequest("GET", "/item"), first, 1024, ENVELOPE);
+        String etag = first.getHeader(HttpHeaders.ETAG);
+
+        assertThat(etag).matches("\"[0-9a-f]{16}\"");
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(first.getContentLength()).isEqualTo(ENVELOPE.length);
+        assertThat(first.getContentAsByteArray()).isEqualTo(ENVELOPE);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/item");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        write(request, second, 1024, ENVELOPE);
+
+        assertThat(second.getStatus()).isEqualTo(304);
+        assertThat(second.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void differentBodiesHaveDifferentEtags() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        write(new MockHttpServletRequest("GET", "/item"), first, 1024, ENVELOPE);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/item");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, first.getHeader(HttpHeaders.ETAG));
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        byte[] changed = "{\"success\":true,\"data\":{\"id\":2}}".getBytes(StandardCharsets.UTF_8);
+        write(request, second, 1024, changed);
+
+        assertThat(second.getStatus()).isEqualTo(200);
+        assertThat(second.getHeader(HttpHeaders.ETAG)).isNotEqualTo(first.getHeader(HttpHeaders.ETAG));
+        assertThat(second.getContentAsByteArray()).isEqualTo(changed);
+    }
+
+    @Test
+    void responseLargerThanTheBufferIsWrittenWithoutEtag() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        write(new MockHttpServletRequest("GET", "/item"), response, ENVELOPE.length - 1, ENVELOPE);
+
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(ENVELOPE);
+    }
+
+    @Test
+    void onlyGetAndHeadWithoutEtagAreWrapped() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(EtagHttpServletResponse.wrapIfApplicable(new MockHttpServletRequest("POST", "/item"), response, 1024)).isNull();
+        assertThat(EtagHttpServletResponse.wrapIfApplicable(new MockHttpServletRequest("HEAD", "/item"), response, 1024)).isNotNull();
+        assertThat(EtagHttpServletResponse.wrapIfApplicable(new MockHttpServletRequest("GET", "/item"), response, 0)).isNull();
+
+        // Handler 方法已经设置了 ETag
+        response.setHeader(HttpHeaders.ETAG, "\"v1\"");
+        assertThat(EtagHttpServletResponse.wrapIfApplicable(new MockHttpServletRequest("GET", "/item"), response, 1024)).isNull();
+    }
+
+    private static void write(MockHttpServletRequest request, MockHttpServletResponse response, int maxBufferBytes, byte[] body) throws Exception {
+        EtagHttpServletResponse etagResponse = EtagHttpServletResponse.wrapIfApplicable(request, response, maxBufferBytes);
+        assertThat(etagResponse).isNotNull();
+        // 分两次写出，中间 flush 不提交响应
+        etagResponse.getOutputStream().write(body, 0, 10);
+        etagResponse.flushBuffer();
+        assertThat(response.isCommitted()).isFalse();
+        etagResponse.getOutputStream().write(body, 10, body.length - 10);
+        etagResponse.finish();
+    }
+}
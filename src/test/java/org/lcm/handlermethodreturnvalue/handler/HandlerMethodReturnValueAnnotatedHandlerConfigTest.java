@@ -0,0 +1,134 @@
+package org.lcm.handlermethodreturnvalue.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.autoconfig.HandlerMethodReturnValueProperties;
+import org.lcm.handlermethodreturnvalue.cache.impl.HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.mapping.ObservableRequestMappingHandlerMapping;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodReturnValueMetrics;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlans;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.GenericWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HandlerMethodReturnValueAnnotatedHandlerConfigTest {
+    public record Item(int id) {
+    }
+
+    @RestController
+    @HandlerMethodReturnValue
+    static class StartupController {
+        @GetMapping("/startup")
+        public Item startup() {
+            return new Item(1);
+        }
+    }
+
+    // 不是 Bean，运行时通过 registerMapping() 注册
+    @RestController
+    @HandlerMethodReturnValue
+    static class RuntimeController {
+        public Item runtime() {
+            return new Item(2);
+        }
+    }
+
+    private final GenericWebApplicationContext context = new GenericWebApplicationContext(new MockServletContext());
+    private ObservableRequestMappingHandlerMapping mapping;
+    private HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7 cache;
+    private HandlerMethodReturnValueAnnotatedHandlerConfig config;
+    private HandlerMethodReturnValueHandlerSelectionTable selectionTable;
+
+    @BeforeEach
+    void refresh() {
+        HandlerMethodReturnValueProperties properties = new HandlerMethodReturnValueProperties();
+        properties.setSelectionTable(true);
+        properties.setLiveRefresh(true);
+        context.registerBean("requestMappingHandlerMapping", ObservableRequestMappingHandlerMapping.class);
+        context.registerBean(RequestMappingHandlerAdapter.class, () -> {
+            RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+            adapter.setMessageConverters(List.of(new MappingJackson2HttpMessageConverter()));
+            return adapter;
+        });
+        context.registerBean(StartupController.class);
+        context.registerBean(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7.class,
+                () -> new HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7(context));
+        context.registerBean(HandlerMethodReturnValueAnnotatedHandlerConfig.class, () -> new HandlerMethodReturnValueAnnotatedHandlerConfig(
+                context, context.getBean(RequestMappingHandlerAdapter.class), context.getBean(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7.class),
+                new SimpleReturnValueFactory(), properties, context.getBeanProvider(HandlerMethodReturnValueMetrics.class)));
+        context.refresh();
+
+        mapping = context.getBean(ObservableRequestMappingHandlerMapping.class);
+        cache = context.getBean(HandlerMethodReturnValueAnnotatedHandlerMethodCacheV7.class);
+        config = context.getBean(HandlerMethodReturnValueAnnotatedHandlerConfig.class);
+        selectionTable = (HandlerMethodReturnValueHandlerSelectionTable)
+                context.getBean(RequestMappingHandlerAdapter.class).getReturnValueHandlers().get(0);
+    }
+
+    @AfterEach
+    void close() {
+        context.close();
+    }
+
+    private RequestMappingInfo register(String path, Method method) {
+        RequestMappingInfo info = RequestMappingInfo.paths(path).options(mapping.getBuilderConfiguration()).build();
+        mapping.registerMapping(info, new RuntimeController(), method);
+        return info;
+    }
+
+    @Test
+    void runtimeMappingsRefreshPlansAndTheSelectionTable() throws Exception {
+        Method runtime = RuntimeController.class.getMethod("runtime");
+        WrappingPlans plans = config.getWrappingPlans();
+        assertThat(plans).isNotNull();
+        int startupSize = selectionTable.size();
+
+        // 同一个 Method 注册在两个 RequestMappingInfo 下，全部注销后才移除
+        RequestMappingInfo first = register("/runtime", runtime);
+        RequestMappingInfo second = register("/runtime/v2", runtime);
+        assertThat(plans.get(runtime)).isNotNull();
+        assertThat(selectionTable.size()).isEqualTo(startupSize + 1);
+        assertThat(cache.contains(runtime)).isTrue();
+
+        mapping.unregisterMapping(first);
+        assertThat(plans.get(runtime)).isNotNull();
+        assertThat(selectionTable.size()).isEqualTo(startupSize + 1);
+
+        mapping.unregisterMapping(second);
+        assertThat(plans.get(runtime)).isNull();
+        assertThat(selectionTable.size()).isEqualTo(startupSize);
+        assertThat(cache.isIndexed(runtime)).isFalse();
+    }
+
+    @Test
+    void startupMethodsAreIndexedOnce() {
+        // 快照的 key 为 HandlerMethod 持有的 Method 对象本身
+        Map.Entry<RequestMappingInfo, HandlerMethod> registration = mapping.getHandlerMethods().entrySet().stream()
+                .filter(entry -> entry.getValue().getMethod().getDeclaringClass() == StartupController.class)
+                .findFirst()
+                .orElseThrow();
+        Method startup = registration.getValue().getMethod();
+        assertThat(config.getWrappingPlans().get(startup)).isNotNull();
+        assertThat(cache.isIndexed(startup)).isTrue();
+
+        mapping.unregisterMapping(registration.getKey());
+
+        // 启动时读取的方法与监听器没有重复计数，注销一次即从快照中移除
+        assertThat(cache.isIndexed(startup)).isFalse();
+        assertThat(config.getWrappingPlans().get(startup)).isNull();
+    }
+}
@@ -0,0 +1,131 @@
+package org.lcm.handlermethodreturnvalue.handler;
+
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.metrics.DefaultHandlerMethodReturnValueMetrics;
+import org.lcm.handlermethodreturnvalue.metrics.HandlerMethodMetrics;
+import org.lcm.handlermethodreturnvalue.resource.ZeroCopyResourceHttpMessageConverter;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HandlerMethodReturnValueAnnotatedHandlerTest {
+    public record Item(int id) {
+    }
+
+    @RestController
+    @HandlerMethodReturnValue
+    static class Controller {
+        public Item item() {
+            return new Item(1);
+        }
+
+        public Item item(int id) {
+            return new Item(id);
+        }
+
+        // 按照运行时的值判断是否包装
+        public Object download() {
+            return new byte[0];
+        }
+    }
+
+    private final DefaultHandlerMethodReturnValueMetrics metrics = new DefaultHandlerMethodReturnValueMetrics();
+
+    private HandlerMethodReturnValueAnnotatedHandler handler(int etagBufferBytes) {
+        HandlerMethodReturnValueAnnotatedHandlerSettings settings = new HandlerMethodReturnValueAnnotatedHandlerSettings();
+        settings.setMetrics(metrics);
+        settings.setEtagBufferBytes(etagBufferBytes);
+        return new HandlerMethodReturnValueAnnotatedHandler(
+                new RequestResponseBodyMethodProcessor(List.of(new ByteArrayHttpMessageConverter(),
+                        new ZeroCopyResourceHttpMessageConverter(), new MappingJackson2HttpMessageConverter())),
+                null, new SimpleReturnValueFactory(), settings);
+    }
+
+    private static MethodParameter returnType(Class<?>... parameterTypes) throws NoSuchMethodException {
+        return new HandlerMethod(new Controller(), Controller.class.getMethod("item", parameterTypes)).getReturnType();
+    }
+
+    private static MockHttpServletResponse handle(HandlerMethodReturnValueAnnotatedHandler handler, Object returnValue,
+                                                  MethodParameter returnType, MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleReturnValue(returnValue, returnType, new ModelAndViewContainer(), new ServletWebRequest(request, response));
+        return response;
+    }
+
+    private HandlerMethodMetrics metricsOf(MethodParameter returnType) {
+        return metrics.getHandlerMethodMetrics().stream()
+                .filter(m -> m.getMethod().equals(returnType.getMethod()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void responseBytesAreTheBytesActuallyWritten() throws Exception {
+        HandlerMethodReturnValueAnnotatedHandler handler = handler(1024);
+        MethodParameter returnType = returnType();
+        MockHttpServletResponse first = handle(handler, new Item(1), returnType, new MockHttpServletRequest("GET", "/item"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/item");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, first.getHeader(HttpHeaders.ETAG));
+        MockHttpServletResponse second = handle(handler, new Item(1), returnType, request);
+
+        assertThat(second.getStatus()).isEqualTo(304);
+        HandlerMethodMetrics itemMetrics = metricsOf(returnType);
+        assertThat(itemMetrics.getWrapped()).isEqualTo(2);
+        // 304 丢弃的字节不计入
+        assertThat(itemMetrics.getResponseBytes().getSum()).isEqualTo(first.getContentAsByteArray().length);
+        assertThat(itemMetrics.getResponseBytes().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void overloadedMethodsHaveDistinctMetrics() throws Exception {
+        HandlerMethodReturnValueAnnotatedHandler handler = handler(0);
+        MethodParameter noArgs = returnType();
+        MethodParameter withId = returnType(int.class);
+        handle(handler, new Item(1), noArgs, new MockHttpServletRequest("GET", "/item"));
+        handle(handler, new Item(2), withId, new MockHttpServletRequest("GET", "/item/2"));
+
+        assertThat(metricsOf(noArgs).getName()).isEqualTo(Controller.class.getName() + "#item()");
+        assertThat(metricsOf(withId).getName()).isEqualTo(Controller.class.getName() + "#item(int)");
+        assertThat(metricsOf(noArgs).getWrapped()).isEqualTo(1);
+        assertThat(metricsOf(withId).getWrapped()).isEqualTo(1);
+    }
+
+    @Test
+    void binaryReturnValuesAreWrittenWithoutWrapping(@TempDir Path dir) throws Exception {
+        HandlerMethodReturnValueAnnotatedHandler handler = handler(0);
+        MethodParameter returnType = new HandlerMethod(new Controller(), Controller.class.getMethod("download")).getReturnType();
+        Path file = Files.writeString(dir.resolve("report.txt"), "resource");
+
+        MockHttpServletResponse resource = handle(handler, new FileSystemResource(file), returnType, new MockHttpServletRequest("GET", "/download"));
+        MockHttpServletResponse bytes = handle(handler, "bytes".getBytes(StandardCharsets.UTF_8), returnType, new MockHttpServletRequest("GET", "/download"));
+        MockHttpServletResponse stream = handle(handler, new ByteArrayInputStream("stream".getBytes(StandardCharsets.UTF_8)), returnType,
+                new MockHttpServletRequest("GET", "/download"));
+
+        assertThat(resource.getContentAsString()).isEqualTo("resource");
+        assertThat(bytes.getContentAsString()).isEqualTo("bytes");
+        assertThat(stream.getContentAsString()).isEqualTo("stream");
+        assertThat(metricsOf(returnType).getPassthrough()).isEqualTo(3);
+        assertThat(metricsOf(returnType).getWrapped()).isZero();
+    }
+}
@@ -0,0 +1,160 @@
+package org.lcm.handlermethodreturnvalue.handler;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HandlerMethodReturnValueHandlerSelectionTableTest {
+    static class Controller {
+        public String text() {
+            return "text";
+        }
+
+        public CompletableFuture<String> future() {
+            return CompletableFuture.completedFuture("text");
+        }
+
+        public Object any() {
+            return "text";
+        }
+    }
+
+    // 只支持 CompletableFuture 的异步 handler，记录 isAsyncReturnValue() 的调用次数
+    static class FutureHandler implements AsyncHandlerMethodReturnValueHandler {
+        final AtomicInteger asyncChecks = new AtomicInteger();
+        final AtomicInteger handled = new AtomicInteger();
+
+        @Override
+        public boolean isAsyncReturnValue(@Nullable Object returnValue, MethodParameter returnType) {
+            asyncChecks.incrementAndGet();
+            return returnValue instanceof CompletableFuture;
+        }
+
+        @Override
+        public boolean supportsReturnType(MethodParameter returnType) {
+            return CompletableFuture.class.isAssignableFrom(returnType.getParameterType());
+        }
+
+        @Override
+        public void handleReturnValue(@Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) {
+            handled.incrementAndGet();
+        }
+    }
+
+    static class AnyHandler implements HandlerMethodReturnValueHandler {
+        final AtomicInteger handled = new AtomicInteger();
+
+        @Override
+        public boolean supportsReturnType(MethodParameter returnType) {
+            return true;
+        }
+
+        @Override
+        public void handleReturnValue(@Nullable Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) {
+            handled.incrementAndGet();
+        }
+    }
+
+    private final FutureHandler futureHandler = new FutureHandler();
+    private final AnyHandler anyHandler = new AnyHandler();
+
+    private HandlerMethodReturnValueHandlerSelectionTable table(HandlerMethod... handlerMethods) {
+        return new HandlerMethodReturnValueHandlerSelectionTable(List.of(futureHandler, anyHandler), List.of(handlerMethods));
+    }
+
+    private static HandlerMethod handlerMethod(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Controller(), Controller.class.getMethod(name));
+    }
+
+    private static void handle(HandlerMethodReturnValueHandlerSelectionTable table, @Nullable Object returnValue,
+                               MethodParameter returnType) throws Exception {
+        table.handleReturnValue(returnValue, returnType, new ModelAndViewContainer(), null);
+    }
+
+    @Test
+    void methodsThatCanNotBeAsyncSkipTheAsyncCheck() throws Exception {
+        HandlerMethod text = handlerMethod("text");
+        HandlerMethodReturnValueHandlerSelectionTable table = table(text);
+        futureHandler.asyncChecks.set(0);
+
+        handle(table, "text", text.getReturnType());
+        assertThat(anyHandler.handled).hasValue(1);
+        assertThat(futureHandler.asyncChecks).hasValue(0);
+    }
+
+    @Test
+    void supportsReturnTypeDoesNotResolveTheHandler() throws Exception {
+        HandlerMethod text = handlerMethod("text");
+        HandlerMethodReturnValueHandlerSelectionTable table =
+                new HandlerMethodReturnValueHandlerSelectionTable(List.of(futureHandler), List.of(text));
+        futureHandler.asyncChecks.set(0);
+
+        assertThat(table.supportsReturnType(text.getReturnType())).isTrue();
+        assertThat(futureHandler.asyncChecks).hasValue(0);
+        // 没有 handler 支持时，与 HandlerMethodReturnValueHandlerComposite 相同
+        assertThatThrownBy(() -> handle(table, "text", text.getReturnType()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown return value type");
+    }
+
+    @Test
+    void asyncValuesStillGoToTheAsyncHandler() throws Exception {
+        HandlerMethod future = handlerMethod("future");
+        HandlerMethodReturnValueHandlerSelectionTable table = table(future);
+
+        handle(table, CompletableFuture.completedFuture("text"), future.getReturnType());
+        assertThat(futureHandler.asyncChecks.get()).isPositive();
+        assertThat(futureHandler.handled).hasValue(1);
+    }
+
+    @Test
+    void runtimeTypesAreCheckedForAsyncOnlyWhenAnAsyncHandlerSupportsThem() throws Exception {
+        HandlerMethod any = handlerMethod("any");
+        HandlerMethodReturnValueHandlerSelectionTable table = table(any);
+        futureHandler.asyncChecks.set(0);
+
+        String text = "text";
+        MethodParameter runtimeTextType = any.getReturnValueType(text);
+        for (int i = 0; i < 3; i++) {
+            handle(table, text, runtimeTextType);
+        }
+        assertThat(anyHandler.handled).hasValue(3);
+        assertThat(futureHandler.asyncChecks).hasValue(0);
+
+        CompletableFuture<String> future = CompletableFuture.completedFuture(text);
+        handle(table, future, any.getReturnValueType(future));
+        assertThat(futureHandler.asyncChecks.get()).isPositive();
+        assertThat(futureHandler.handled).hasValue(1);
+    }
+
+    @Test
+    void methodsRegisteredAtRuntimeAreSelectedUntilRemoved() throws Exception {
+        HandlerMethod text = handlerMethod("text");
+        HandlerMethodReturnValueHandlerSelectionTable table = table();
+        assertThat(table.size()).isZero();
+
+        table.register(text);
+        assertThat(table.size()).isEqualTo(1);
+        futureHandler.asyncChecks.set(0);
+        handle(table, "text", text.getReturnType());
+        assertThat(futureHandler.asyncChecks).hasValue(0);
+
+        table.remove(text.getMethod());
+        assertThat(table.size()).isZero();
+        // 表中没有的方法与 Composite 相同，按顺序查找
+        handle(table, "text", text.getReturnType());
+        assertThat(anyHandler.handled).hasValue(2);
+    }
+}
@@ -0,0 +1,89 @@
+package org.lcm.handlermethodreturnvalue.mapping;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObservableRequestMappingHandlerMappingTest {
+    static class Controller {
+        public String a() {
+            return "a";
+        }
+
+        public String b() {
+            return "b";
+        }
+    }
+
+    // 按到达顺序记录通知
+    static class RecordingListener implements HandlerMethodMappingListener {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onHandlerMethodRegistered(RequestMappingInfo mapping, Method method) {
+            events.add("registered " + method.getName());
+        }
+
+        @Override
+        public void onHandlerMethodUnregistered(RequestMappingInfo mapping, Method method) {
+            events.add("unregistered " + method.getName());
+        }
+    }
+
+    private final ObservableRequestMappingHandlerMapping mapping = new ObservableRequestMappingHandlerMapping();
+
+    private RequestMappingInfo register(String name) throws NoSuchMethodException {
+        RequestMappingInfo info = RequestMappingInfo.paths("/" + name).build();
+        mapping.registerMapping(info, new Controller(), Controller.class.getMethod(name));
+        return info;
+    }
+
+    @Test
+    void existingMethodsAreReadOnceAndLaterChangesArriveInOrder() throws Exception {
+        RequestMappingInfo a = register("a");
+        RecordingListener listener = new RecordingListener();
+        mapping.addListener(listener, handlerMethods ->
+                handlerMethods.values().forEach(handlerMethod -> listener.events.add("existing " + handlerMethod.getMethod().getName())));
+
+        register("b");
+        mapping.unregisterMapping(a);
+
+        assertThat(listener.events).containsExactly("existing a", "registered b", "unregistered a");
+        assertThat(mapping.isRegistered(Controller.class.getMethod("a"))).isFalse();
+        assertThat(mapping.isRegistered(Controller.class.getMethod("b"))).isTrue();
+    }
+
+    @Test
+    void registrationDuringTheInitializerWaitsForTheListener() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        AtomicBoolean blocked = new AtomicBoolean();
+        Thread registration = new Thread(() -> {
+            try {
+                register("b");
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        mapping.addListener(listener, handlerMethods -> {
+            registration.start();
+            try {
+                registration.join(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            blocked.set(registration.isAlive());
+            listener.events.add("existing " + handlerMethods.size());
+        });
+        registration.join();
+
+        // 初始化完成之前注册的线程一直等待，之后监听器收到一次通知
+        assertThat(blocked).isTrue();
+        assertThat(listener.events).containsExactly("existing 0", "registered b");
+    }
+}
@@ -0,0 +1,90 @@
+package org.lcm.handlermethodreturnvalue.plan;
+
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.factory.impl.AntDesignProReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WrappingPlanCompilerTest {
+    private final WrappingPlanCompiler compiler =
+            new WrappingPlanCompiler(new DefaultListableBeanFactory(), new AntDesignProReturnValueFactory(), null, new ReactiveAdapterRegistry());
+
+    @Test
+    void asyncAndReactiveResultsArePlannedByTheirResultType() throws Exception {
+        assertThat(strategyOf("page")).isEqualTo(WrappingStrategy.PAGE);
+        assertThat(strategyOf("monoPage")).isEqualTo(WrappingStrategy.PAGE);
+        assertThat(strategyOf("futureSlice")).isEqualTo(WrappingStrategy.SLICE);
+        assertThat(strategyOf("fluxItems")).isEqualTo(WrappingStrategy.DATA);
+        assertThat(strategyOf("monoBytes")).isEqualTo(WrappingStrategy.PASSTHROUGH);
+    }
+
+    @Test
+    void plansAreCompiledFromTheAnnotation() throws Exception {
+        HandlerMethod annotated = new HandlerMethod(new AnnotatedController(), AnnotatedController.class.getMethod("list"));
+        HandlerMethod plain = new HandlerMethod(new Controller(), Controller.class.getMethod("list"));
+
+        WrappingPlans plans = compiler.compile(List.of(annotated, plain));
+
+        // 不依赖缓存的 contains()，factory 按照注解生效
+        assertThat(plans.size()).isEqualTo(1);
+        WrappingPlan plan = plans.get(annotated.getMethod());
+        assertThat(plan).isNotNull();
+        assertThat(plan.getFactory()).isInstanceOf(SimpleReturnValueFactory.class);
+        assertThat(plans.get(plain.getMethod())).isNull();
+    }
+
+    private WrappingStrategy strategyOf(String name) throws Exception {
+        return compiler.compile(new HandlerMethod(new Controller(), Controller.class.getMethod(name))).getStrategy();
+    }
+
+    record Item(int id) {
+    }
+
+    static class Controller {
+        public Page<Item> page() {
+            return Page.empty();
+        }
+
+        public Mono<Page<Item>> monoPage() {
+            return Mono.empty();
+        }
+
+        public CompletableFuture<Slice<Item>> futureSlice() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        public Flux<Item> fluxItems() {
+            return Flux.empty();
+        }
+
+        public Mono<byte[]> monoBytes() {
+            return Mono.empty();
+        }
+
+        public List<Item> list() {
+            return List.of();
+        }
+    }
+
+    @RestController
+    @HandlerMethodReturnValue(factory = SimpleReturnValueFactory.class)
+    static class AnnotatedController {
+        public List<Item> list() {
+            return List.of();
+        }
+    }
+}
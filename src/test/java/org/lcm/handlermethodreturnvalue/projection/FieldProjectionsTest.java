@@ -0,0 +1,124 @@
+package org.lcm.handlermethodreturnvalue.projection;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.columnar.ColumnarLayout;
+import org.lcm.handlermethodreturnvalue.handler.HandlerMethodReturnValueAnnotatedHandler;
+import org.lcm.handlermethodreturnvalue.model.impl.SimpleReturnValue;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldProjectionsTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void onlyRequestedFieldsOfEachElementAreSerialized() throws Exception {
+        FieldProjection projection = FieldProjection.parse("id, owner.name");
+        SimpleReturnValue envelope = new SimpleReturnValue(true,
+                List.of(new Sku(1, "a", new Owner("o1", "o1@example.com")), new Sku(2, "b", null)), 200, "OK");
+
+        assertThat(objectMapper.writeValueAsString(projection.project(envelope))).isEqualTo(
+                "{\"success\":true,\"data\":[{\"id\":1,\"owner\":{\"name\":\"o1\"}},{\"id\":2,\"owner\":null}],\"code\":200,\"status\":\"OK\"}");
+    }
+
+    @Test
+    void fieldsHiddenByTheActiveViewAreNotWritten() throws Exception {
+        FieldProjection projection = FieldProjection.parse("id,secret");
+        SimpleReturnValue envelope = new SimpleReturnValue(true, List.of(new Account(1, "s3cr3t", "a")), 200, "OK");
+
+        assertThat(objectMapper.writerWithView(Public.class).writeValueAsString(projection.project(envelope)))
+                .isEqualTo("{\"success\":true,\"data\":[{\"id\":1}],\"code\":200,\"status\":\"OK\"}");
+        assertThat(objectMapper.writerWithView(Internal.class).writeValueAsString(projection.project(envelope)))
+                .contains("[{\"id\":1,\"secret\":\"s3cr3t\"}]");
+    }
+
+    @Test
+    void filteredAndAnyGetterBeansAreNotProjected() throws Exception {
+        ObjectMapper filtering = new ObjectMapper().setFilterProvider(
+                new SimpleFilterProvider().addFilter("public", SimpleBeanPropertyFilter.serializeAllExcept("secret")));
+        FieldProjection projection = FieldProjection.parse("id,secret");
+
+        SimpleReturnValue filtered = new SimpleReturnValue(true, List.of(new Filtered(1, "s3cr3t")), 200, "OK");
+        assertThat(filtering.writeValueAsString(projection.project(filtered))).isEqualTo(filtering.writeValueAsString(filtered));
+
+        SimpleReturnValue extensible = new SimpleReturnValue(true, List.of(new Extensible(1)), 200, "OK");
+        assertThat(objectMapper.writeValueAsString(projection.project(extensible))).isEqualTo(objectMapper.writeValueAsString(extensible));
+    }
+
+    @Test
+    void blankFieldListsAreIgnored() {
+        assertThat(FieldProjection.parse(" , ")).isNull();
+    }
+
+    @Test
+    void fieldListIsReadFromTheParameterOrTheHeader() {
+        FieldProjections fieldProjections = new FieldProjections();
+        assertThat(fieldProjections.isRequested(new MockHttpServletRequest("GET", "/skus"))).isFalse();
+
+        MockHttpServletRequest parameter = new MockHttpServletRequest("GET", "/skus");
+        parameter.setParameter(FieldProjections.DEFAULT_PARAMETER_NAME, "id");
+        assertThat(fieldProjections.isRequested(parameter)).isTrue();
+
+        MockHttpServletRequest header = new MockHttpServletRequest("GET", "/skus");
+        header.addHeader(FieldProjections.DEFAULT_HEADER_NAME, "id,name");
+        assertThat(fieldProjections.isRequested(header)).isTrue();
+    }
+
+    @Test
+    void varyListsTheSelectingHeadersOnce() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        HandlerMethodReturnValueAnnotatedHandler.addVary(response, new ColumnarLayout(), new FieldProjections());
+        HandlerMethodReturnValueAnnotatedHandler.addVary(response, new ColumnarLayout(), new FieldProjections());
+
+        assertThat(response.getHeaders(HttpHeaders.VARY))
+                .containsExactly(HttpHeaders.ACCEPT_ENCODING, ColumnarLayout.DEFAULT_HEADER_NAME, FieldProjections.DEFAULT_HEADER_NAME);
+    }
+
+    record Owner(String name, String email) {
+    }
+
+    record Sku(int id, String name, Owner owner) {
+    }
+
+    interface Public {
+    }
+
+    interface Internal extends Public {
+    }
+
+    record Account(@JsonView(Public.class) int id, @JsonView(Internal.class) String secret, @JsonView(Public.class) String name) {
+    }
+
+    @JsonFilter("public")
+    record Filtered(int id, String secret) {
+    }
+
+    public static class Extensible {
+        private final int id;
+
+        Extensible(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        @JsonAnyGetter
+        public Map<String, Object> getExtensions() {
+            return Map.of("tier", "gold");
+        }
+    }
+}
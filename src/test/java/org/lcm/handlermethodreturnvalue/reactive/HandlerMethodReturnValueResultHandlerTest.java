@@ -0,0 +1,116 @@
+package org.lcm.handlermethodreturnvalue.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.lcm.handlermethodreturnvalue.annotation.HandlerMethodReturnValue;
+import org.lcm.handlermethodreturnvalue.disable.DisableHandlerMethodReturnValueHeader;
+import org.lcm.handlermethodreturnvalue.factory.ReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.factory.WrappingStrategy;
+import org.lcm.handlermethodreturnvalue.factory.impl.SimpleReturnValueFactory;
+import org.lcm.handlermethodreturnvalue.model.ReturnValue;
+import org.lcm.handlermethodreturnvalue.plan.WrappingPlanCompiler;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.HandlerResult;
+import org.springframework.web.reactive.accept.RequestedContentTypeResolverBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HandlerMethodReturnValueResultHandlerTest {
+    public record Item(int id) {
+    }
+
+    @RestController
+    @HandlerMethodReturnValue
+    static class Controller {
+        public Flux<Item> items() {
+            return Flux.just(new Item(1), new Item(2));
+        }
+
+        public Flux<Item> failing() {
+            return Flux.error(new IllegalStateException("upstream failed"));
+        }
+    }
+
+    // createData() 不是原样返回：把列表包装为 {"count":..,"items":[..]}
+    static class CountingReturnValueFactory extends SimpleReturnValueFactory {
+        @Override
+        public Object createData(Object valueReturnedFromHandlerMethod, MethodParameter returnType) {
+            if (valueReturnedFromHandlerMethod instanceof List<?> list) {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("count", list.size());
+                data.put("items", list);
+                return data;
+            }
+            return valueReturnedFromHandlerMethod;
+        }
+
+        @Override
+        public boolean isIdentityData(WrappingStrategy strategy) {
+            return false;
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void identityDataFactoryStreamsFluxElementsIntoTheEnvelope() throws Exception {
+        assertThat(handle(new SimpleReturnValueFactory()))
+                .isEqualTo(objectMapper.writeValueAsString(new SimpleReturnValueFactory().create(List.of(new Item(1), new Item(2)), null)));
+    }
+
+    @Test
+    void otherFactoriesSeeTheCollectedListInCreateData() throws Exception {
+        assertThat(handle(new CountingReturnValueFactory()))
+                .isEqualTo("{\"success\":true,\"data\":{\"count\":2,\"items\":[{\"id\":1},{\"id\":2}]},\"code\":200,\"status\":\"OK\"}");
+    }
+
+    @Test
+    void upstreamErrorBeforeTheFirstElementLeavesTheResponseUncommitted() throws Exception {
+        HandlerMethodReturnValueResultHandler resultHandler = resultHandler(new SimpleReturnValueFactory());
+        Controller controller = new Controller();
+        HandlerMethod handlerMethod = new HandlerMethod(controller, Controller.class.getMethod("failing"));
+        HandlerResult result = new HandlerResult(handlerMethod, controller.failing(), handlerMethod.getReturnType(), new BindingContext());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/failing"));
+
+        assertThatThrownBy(() -> resultHandler.handleResult(exchange, result).block())
+                .hasMessageContaining("upstream failed");
+        // 没有写出信封的 prefix，异常处理仍然可以设置状态码与响应体
+        assertThat(exchange.getResponse().isCommitted()).isFalse();
+    }
+
+    private String handle(ReturnValueFactory<? extends ReturnValue> factory) throws Exception {
+        HandlerMethodReturnValueResultHandler resultHandler = resultHandler(factory);
+        Controller controller = new Controller();
+        HandlerMethod handlerMethod = new HandlerMethod(controller, Controller.class.getMethod("items"));
+        HandlerResult result = new HandlerResult(handlerMethod, controller.items(), handlerMethod.getReturnType(), new BindingContext());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/items"));
+
+        assertThat(resultHandler.supports(result)).isTrue();
+        resultHandler.handleResult(exchange, result).block();
+        return exchange.getResponse().getBodyAsString().block();
+    }
+
+    private HandlerMethodReturnValueResultHandler resultHandler(ReturnValueFactory<? extends ReturnValue> factory) {
+        return new HandlerMethodReturnValueResultHandler(
+                List.of(new EncoderHttpMessageWriter<>(new Jackson2JsonEncoder(objectMapper))),
+                new RequestedContentTypeResolverBuilder().build(),
+                ReactiveAdapterRegistry.getSharedInstance(),
+                new WrappingPlanCompiler(new DefaultListableBeanFactory(), factory, objectMapper),
+                DisableHandlerMethodReturnValueHeader.DEFAULT);
+    }
+}
@@ -0,0 +1,41 @@
+package org.lcm.handlermethodreturnvalue.resource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ZeroCopyResourceHttpMessageConverterTest {
+
+    @AfterEach
+    void resetRequestAttributes() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void wrappedRequestOrResponseIsWrittenLikeResourceHttpMessageConverter(@TempDir Path dir) throws Exception {
+        Path file = Files.writeString(dir.resolve("report.txt"), "zero copy");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        // Connector 支持 sendfile，但是 Request / Response 不是 Tomcat 的 RequestFacade / ResponseFacade
+        request.setAttribute(ZeroCopyResourceHttpMessageConverter.SENDFILE_SUPPORTED_ATTRIBUTE, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+
+        assertThat(ZeroCopyResourceHttpMessageConverter.isSendfilePossible(request, response)).isFalse();
+
+        new ZeroCopyResourceHttpMessageConverter().write(new FileSystemResource(file), MediaType.TEXT_PLAIN, new ServletServerHttpResponse(response));
+        assertThat(request.getAttribute(ZeroCopyResourceHttpMessageConverter.SENDFILE_FILENAME_ATTRIBUTE)).isNull();
+        assertThat(response.getContentAsString()).isEqualTo("zero copy");
+    }
+}
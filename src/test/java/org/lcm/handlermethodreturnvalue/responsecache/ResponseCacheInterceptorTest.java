@@ -0,0 +1,74 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheInterceptorTest {
+    private static final byte[] ENVELOPE = "{\"success\":true,\"data\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void gzipIsOnlyWrittenWhenItsQualityIsAboveZero() {
+        assertThat(ResponseCacheInterceptor.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(ResponseCacheInterceptor.acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(ResponseCacheInterceptor.acceptsGzip("br, *")).isTrue();
+        assertThat(ResponseCacheInterceptor.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(ResponseCacheInterceptor.acceptsGzip("gzip;q=0.000, *")).isFalse();
+        assertThat(ResponseCacheInterceptor.acceptsGzip("*;q=0")).isFalse();
+        assertThat(ResponseCacheInterceptor.acceptsGzip("identity")).isFalse();
+        assertThat(ResponseCacheInterceptor.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    void headersSetByTheHandlerAreWrittenOnHits() throws Exception {
+        ResponseCacheStore store = new ResponseCacheStore();
+        MockHttpServletResponse miss = new MockHttpServletResponse();
+        capture(store, miss, response -> {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60");
+            response.addHeader("X-Catalog-Version", "42");
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE);
+        });
+
+        ResponseCacheEntry entry = store.get("key");
+        assertThat(entry).isNotNull();
+        assertThat(entry.getHeaders().containsKey(HttpHeaders.CONTENT_TYPE)).isFalse();
+
+        MockHttpServletResponse hit = new MockHttpServletResponse();
+        // 过滤器在这个请求中已经设置的 Header 不重复
+        hit.addHeader("X-Catalog-Version", "43");
+        ResponseCacheInterceptor.write(entry, new MockHttpServletRequest("GET", "/catalog"), hit);
+
+        assertThat(hit.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("max-age=60");
+        assertThat(hit.getHeaders("X-Catalog-Version")).containsExactly("43");
+        assertThat(hit.getHeaders(HttpHeaders.VARY)).containsExactly(HttpHeaders.ACCEPT_LANGUAGE);
+        assertThat(hit.getContentAsByteArray()).isEqualTo(ENVELOPE);
+    }
+
+    @Test
+    void responsesWithCookiesAreNotCached() throws Exception {
+        ResponseCacheStore store = new ResponseCacheStore();
+        capture(store, new MockHttpServletResponse(), response -> response.addHeader(HttpHeaders.SET_COOKIE, "session=1"));
+        assertThat(store.get("key")).isNull();
+    }
+
+    // 没有命中时 Handler 方法设置 Header，之后写出信封
+    private static void capture(ResponseCacheStore store, MockHttpServletResponse response, Consumer<MockHttpServletResponse> handler) throws Exception {
+        ResponseCacheCapture capture = new ResponseCacheCapture(store, "key", TimeUnit.MINUTES.toNanos(1), false);
+        handler.accept(response);
+        NativeWebRequest webRequest = capture.wrap(new ServletWebRequest(new MockHttpServletRequest("GET", "/catalog"), response));
+        HttpServletResponse writeResponse = webRequest.getNativeResponse(HttpServletResponse.class);
+        writeResponse.setContentType("application/json");
+        writeResponse.getOutputStream().write(ENVELOPE);
+        capture.complete();
+    }
+}
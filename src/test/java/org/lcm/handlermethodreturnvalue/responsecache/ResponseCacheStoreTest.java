@@ -0,0 +1,51 @@
+package org.lcm.handlermethodreturnvalue.responsecache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheStoreTest {
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedPerSegment() {
+        // 16 个段，每段 1 条
+        ResponseCacheStore store = new ResponseCacheStore(16);
+        // hashCode 相同的 key 落在同一个段
+        Key first = new Key("first");
+        Key second = new Key("second");
+        store.put(first, entry("first", TimeUnit.MINUTES.toNanos(1)));
+        store.put(second, entry("second", TimeUnit.MINUTES.toNanos(1)));
+
+        assertThat(store.get(first)).isNull();
+        assertThat(store.get(second)).isNotNull();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredEntryIsRemovedOnRead() {
+        ResponseCacheStore store = new ResponseCacheStore();
+        store.put("expired", entry("expired", 0));
+        store.put("live", entry("live", TimeUnit.MINUTES.toNanos(1)));
+
+        assertThat(store.get("expired")).isNull();
+        assertThat(store.get("live").getBody()).isEqualTo("live".getBytes(StandardCharsets.UTF_8));
+        assertThat(store.size()).isEqualTo(1);
+
+        store.clear();
+        assertThat(store.size()).isZero();
+    }
+
+    private static ResponseCacheEntry entry(String body, long ttlNanos) {
+        return new ResponseCacheEntry("application/json", body.getBytes(StandardCharsets.UTF_8), null, System.nanoTime() + ttlNanos);
+    }
+
+    private record Key(String name) {
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}